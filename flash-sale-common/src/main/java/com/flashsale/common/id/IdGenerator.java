@@ -0,0 +1,23 @@
+package com.flashsale.common.id;
+
+/**
+ * 分布式ID生成器接口
+ * @author 21311
+ */
+public interface IdGenerator {
+
+    /**
+     * 生成全局唯一、按时间递增的64位ID
+     *
+     * @return ID
+     */
+    long nextId();
+
+    /**
+     * 生成面向用户的业务编号（订单号、支付单号等）：前缀 + 定长编码的ID，按字典序即按时间排序
+     *
+     * @param prefix 业务前缀，如 FS、PAY
+     * @return 业务编号
+     */
+    String nextNo(String prefix);
+}
@@ -0,0 +1,135 @@
+package com.flashsale.common.id;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法ID生成器
+ * 布局：1位符号 + 41位毫秒时间戳（自2024-01-01起，约69年） + 10位节点ID + 12位序列号，单节点每毫秒4096个
+ * 时间戳与序列号打包在一个AtomicLong中CAS推进，无锁、无对象分配；同一毫秒序列号用尽或时钟小幅回拨时借用下一毫秒，
+ * 借用最多领先系统时钟 {@link #MAX_AHEAD_MILLIS} 毫秒，超过后自旋等待时钟追上，持续超出每毫秒4096个的需求只会被限速而不会报错
+ * 节点ID优先取配置 flashsale.id.worker-id，未配置时通过Redis自增分配，Redis不可用时按进程信息哈希
+ * 业务编号使用Crockford Base32定长13位编码（不含I、L、O、U，避免人工识别错误）
+ * @author 21311
+ */
+@Slf4j
+@Component
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    /**
+     * 起始时间 2024-01-01 00:00:00 UTC
+     */
+    private static final long EPOCH = 1704067200000L;
+
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_BITS + SEQUENCE_BITS;
+
+    /**
+     * 允许借用的最大未来时间，时钟回拨超过该值时拒绝生成
+     */
+    private static final long MAX_BORROW_MILLIS = 5_000;
+
+    /**
+     * 序列号用尽时借用下一毫秒的最大领先量，须小于 {@link #MAX_BORROW_MILLIS}，
+     * 保证超过回拨阈值的只可能是真实的时钟回拨
+     */
+    private static final long MAX_AHEAD_MILLIS = 1_000;
+
+    private static final String WORKER_SEQUENCE_KEY = "id:worker:sequence";
+
+    private static final char[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${flashsale.id.worker-id:-1}")
+    private long configuredWorkerId;
+
+    private long workerId;
+
+    // 高位为相对EPOCH的时间戳，低12位为序列号
+    private final AtomicLong state = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        workerId = resolveWorkerId();
+        log.info("ID生成器初始化完成: workerId={}", workerId);
+    }
+
+    @Override
+    public long nextId() {
+        while (true) {
+            long now = System.currentTimeMillis() - EPOCH;
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                if (lastTimestamp - now > MAX_BORROW_MILLIS) {
+                    throw new IllegalStateException("系统时钟回拨过大，拒绝生成ID: " + (lastTimestamp - now) + "ms");
+                }
+                if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                    // 同一毫秒内递增序列号
+                    next = last + 1;
+                } else if (lastTimestamp - now < MAX_AHEAD_MILLIS) {
+                    // 序列号用尽，进位到下一毫秒
+                    next = (lastTimestamp + 1) << SEQUENCE_BITS;
+                } else {
+                    // 已领先时钟太多，等待时钟追上
+                    Thread.onSpinWait();
+                    continue;
+                }
+            }
+
+            if (state.compareAndSet(last, next)) {
+                return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT) | (workerId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    @Override
+    public String nextNo(String prefix) {
+        long id = nextId();
+        char[] chars = new char[prefix.length() + ENCODED_LENGTH];
+        prefix.getChars(0, prefix.length(), chars, 0);
+        for (int i = chars.length - 1; i >= prefix.length(); i--) {
+            chars[i] = ENCODING[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private long resolveWorkerId() {
+        if (configuredWorkerId >= 0) {
+            if (configuredWorkerId > MAX_WORKER_ID) {
+                throw new IllegalArgumentException("flashsale.id.worker-id 超出范围[0, " + MAX_WORKER_ID + "]: " + configuredWorkerId);
+            }
+            return configuredWorkerId;
+        }
+
+        if (redisTemplate != null) {
+            try {
+                Long sequence = redisTemplate.opsForValue().increment(WORKER_SEQUENCE_KEY);
+                if (sequence != null) {
+                    return sequence & MAX_WORKER_ID;
+                }
+            } catch (Exception e) {
+                log.warn("通过Redis分配ID生成器节点ID失败，改用进程信息哈希", e);
+            }
+        }
+        return ManagementFactory.getRuntimeMXBean().getName().hashCode() & MAX_WORKER_ID;
+    }
+}
@@ -0,0 +1,117 @@
+package com.flashsale.common.lock;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 本地锁 + 分布式锁的两级锁
+ * 同一JVM内同一个key先竞争本地锁，只有拿到本地锁的线程才去竞争Redis锁，其余线程在本地排队，
+ * Redis上每个key每个节点最多只有一个竞争者
+ * @author 21311
+ */
+@Slf4j
+@Primary
+@Service
+public class LocalFirstDistributedLockService implements DistributedLockService {
+
+    @Autowired
+    private WatchdogRedisLockService remoteLockService;
+
+    // 本地锁：锁key -> 本地锁（按使用中的线程数引用计数，无人使用时移除）
+    private final Map<String, LocalLock> localLocks = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryLock(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        long deadline = System.nanoTime() + timeUnit.toNanos(waitTime);
+        LocalLock localLock = retain(lockKey);
+        boolean locked = false;
+        try {
+            // 1. 本地排队
+            if (!localLock.lock.tryLock(Math.max(waitTime, 0), timeUnit)) {
+                return false;
+            }
+
+            // 2. 本地锁持有者竞争Redis锁，等待时间扣除本地排队耗时；本地重入时Redis锁同样重入
+            long remainingNanos = Math.max(deadline - System.nanoTime(), 0);
+            locked = remoteLockService.tryLock(lockKey, remainingNanos, leaseTime > 0 ? timeUnit.toNanos(leaseTime) : leaseTime,
+                TimeUnit.NANOSECONDS);
+            if (!locked) {
+                localLock.lock.unlock();
+            }
+            return locked;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (!locked) {
+                release(lockKey);
+            }
+        }
+    }
+
+    @Override
+    public void unlock(String lockKey) {
+        LocalLock localLock = localLocks.get(lockKey);
+        if (localLock == null || !localLock.lock.isHeldByCurrentThread()) {
+            return;
+        }
+        try {
+            remoteLockService.unlock(lockKey);
+        } finally {
+            localLock.lock.unlock();
+            release(lockKey);
+        }
+    }
+
+    @Override
+    public <T> T executeWithLock(String lockKey, long waitTime, long leaseTime,
+                                TimeUnit timeUnit, LockCallback<T> task) {
+        if (tryLock(lockKey, waitTime, leaseTime, timeUnit)) {
+            try {
+                return task.execute();
+            } catch (Exception e) {
+                log.error("执行锁内业务逻辑失败: {}", lockKey, e);
+                throw new RuntimeException("执行业务逻辑失败", e);
+            } finally {
+                unlock(lockKey);
+            }
+        } else {
+            throw new RuntimeException("获取分布式锁失败: " + lockKey);
+        }
+    }
+
+    /**
+     * 获取本地锁并增加引用计数
+     */
+    private LocalLock retain(String lockKey) {
+        return localLocks.compute(lockKey, (k, localLock) -> {
+            if (localLock == null) {
+                localLock = new LocalLock();
+            }
+            localLock.refCount++;
+            return localLock;
+        });
+    }
+
+    /**
+     * 减少引用计数，无人使用时移除
+     */
+    private void release(String lockKey) {
+        localLocks.computeIfPresent(lockKey, (k, localLock) -> --localLock.refCount <= 0 ? null : localLock);
+    }
+
+    /**
+     * 本地锁
+     */
+    private static class LocalLock {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int refCount;
+    }
+}
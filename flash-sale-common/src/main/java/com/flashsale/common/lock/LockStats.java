@@ -0,0 +1,59 @@
+package com.flashsale.common.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个锁key的竞争统计
+ * @author 21311
+ */
+public class LockStats {
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contendedAcquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一次成功获取
+     *
+     * @param waitNanos 等待耗时（纳秒）
+     * @param contended 是否经历过等待
+     */
+    void recordAcquired(long waitNanos, boolean contended) {
+        acquisitions.increment();
+        if (contended) {
+            contendedAcquisitions.increment();
+        }
+        recordWait(waitNanos);
+    }
+
+    /**
+     * 记录一次获取超时
+     *
+     * @param waitNanos 等待耗时（纳秒）
+     */
+    void recordTimeout(long waitNanos) {
+        timeouts.increment();
+        recordWait(waitNanos);
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulate(waitNanos);
+    }
+
+    public long getAcquisitions() { return acquisitions.sum(); }
+    public long getContendedAcquisitions() { return contendedAcquisitions.sum(); }
+    public long getTimeouts() { return timeouts.sum(); }
+    public long getTotalWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum()); }
+    public long getMaxWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()); }
+
+    @Override
+    public String toString() {
+        return String.format("LockStats{acquisitions=%d, contended=%d, timeouts=%d, totalWaitMs=%d, maxWaitMs=%d}",
+            getAcquisitions(), getContendedAcquisitions(), getTimeouts(), getTotalWaitMillis(), getMaxWaitMillis());
+    }
+}
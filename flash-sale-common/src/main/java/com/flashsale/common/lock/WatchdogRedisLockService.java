@@ -0,0 +1,361 @@
+package com.flashsale.common.lock;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Redis的可重入分布式锁实现（看门狗续期 + 释放通知）
+ * 1. 锁为Hash结构：field为持有者（节点ID:线程ID），value为重入次数
+ * 2. 持有期间由看门狗每1/3租期续期一次，业务耗时超过租期也不会被其他节点抢占；进程宕机后租期到期自动释放
+ * 3. 释放时PUBLISH通知，等待方收到后立即重试，不再固定间隔轮询
+ * 4. 脚本为静态常量，SHA只计算一次，执行时走EVALSHA
+ * 业务代码通过 {@link LocalFirstDistributedLockService} 使用，同一节点同一key只有一个线程到Redis竞争
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class WatchdogRedisLockService implements DistributedLockService {
+
+    private static final String LOCK_PREFIX = "seckill:lock:";
+    private static final String RELEASE_CHANNEL_PREFIX = "seckill:lock_released:";
+
+    /**
+     * 未指定租期时的默认租期
+     */
+    private static final long DEFAULT_LEASE_MILLIS = 30_000;
+
+    /**
+     * 单次等待的上限，通知丢失时的兜底重试间隔
+     */
+    private static final long MAX_WAIT_SLICE_MILLIS = 1_000;
+
+    private static final long ACQUIRED = -1L;
+
+    /**
+     * 加锁脚本：未被持有或由自己持有时重入次数+1并设置租期，返回-1；否则返回锁剩余毫秒数
+     * KEYS[1]-锁；ARGV[1]-持有者，ARGV[2]-租期毫秒
+     */
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[1]) == 0 or redis.call('hexists', KEYS[1], ARGV[1]) == 1 then " +
+        "    redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+        "    redis.call('pexpire', KEYS[1], ARGV[2]) " +
+        "    return -1 " +
+        "end " +
+        "local ttl = redis.call('pttl', KEYS[1]) " +
+        "if ttl < 0 then ttl = 0 end " +
+        "return ttl",
+        Long.class);
+
+    /**
+     * 解锁脚本：非持有者返回-1；重入次数-1后仍大于0时续期并返回0；完全释放时删除并通知等待方，返回1
+     * KEYS[1]-锁，KEYS[2]-释放通知频道；ARGV[1]-持有者，ARGV[2]-租期毫秒
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then " +
+        "    return -1 " +
+        "end " +
+        "if redis.call('hincrby', KEYS[1], ARGV[1], -1) > 0 then " +
+        "    redis.call('pexpire', KEYS[1], ARGV[2]) " +
+        "    return 0 " +
+        "end " +
+        "redis.call('del', KEYS[1]) " +
+        "redis.call('publish', KEYS[2], '1') " +
+        "return 1",
+        Long.class);
+
+    /**
+     * 续期脚本：仍由自己持有时重置租期返回1，否则返回0
+     * KEYS[1]-锁；ARGV[1]-持有者，ARGV[2]-租期毫秒
+     */
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then " +
+        "    redis.call('pexpire', KEYS[1], ARGV[2]) " +
+        "    return 1 " +
+        "end " +
+        "return 0",
+        Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    // 本节点标识，与线程ID组成锁持有者
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 本节点持有的锁：持有者@锁key -> 持有信息
+    private final Map<String, HeldLock> heldLocks = new ConcurrentHashMap<>();
+
+    // 等待中的锁：锁key -> 等待信号
+    private final Map<String, LockWaiter> waiters = new ConcurrentHashMap<>();
+
+    // 各锁key的竞争统计
+    private final Map<String, LockStats> lockStats = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "redis-lock-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 释放通知订阅，首次出现锁竞争时才建立
+    private volatile RedisMessageListenerContainer listenerContainer;
+
+    @Override
+    public boolean tryLock(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        String fullLockKey = LOCK_PREFIX + lockKey;
+        String owner = currentOwner();
+        long leaseMillis = leaseTime > 0 ? timeUnit.toMillis(leaseTime) : DEFAULT_LEASE_MILLIS;
+        LockStats stats = lockStats.computeIfAbsent(lockKey, k -> new LockStats());
+
+        long startNanos = System.nanoTime();
+        Long ttl = acquire(fullLockKey, owner, leaseMillis);
+        if (ttl == ACQUIRED) {
+            onAcquired(fullLockKey, owner, leaseMillis);
+            stats.recordAcquired(0, false);
+            return true;
+        }
+
+        long deadline = startNanos + timeUnit.toNanos(waitTime);
+        if (waitTime <= 0) {
+            stats.recordTimeout(System.nanoTime() - startNanos);
+            return false;
+        }
+
+        // 有竞争：登记等待并订阅释放通知，订阅后先重试一次，避免错过订阅建立前的释放
+        ensureSubscribed();
+        LockWaiter waiter = registerWaiter(fullLockKey);
+        try {
+            while (true) {
+                ttl = acquire(fullLockKey, owner, leaseMillis);
+                if (ttl == ACQUIRED) {
+                    onAcquired(fullLockKey, owner, leaseMillis);
+                    stats.recordAcquired(System.nanoTime() - startNanos, true);
+                    return true;
+                }
+
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    break;
+                }
+                long waitNanos = Math.min(remainingNanos,
+                    TimeUnit.MILLISECONDS.toNanos(Math.min(Math.max(ttl, 1), MAX_WAIT_SLICE_MILLIS)));
+                waiter.signal.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            unregisterWaiter(fullLockKey);
+        }
+
+        stats.recordTimeout(System.nanoTime() - startNanos);
+        log.warn("获取分布式锁超时: {}", lockKey);
+        return false;
+    }
+
+    @Override
+    public void unlock(String lockKey) {
+        String fullLockKey = LOCK_PREFIX + lockKey;
+        String owner = currentOwner();
+        String holdKey = owner + "@" + fullLockKey;
+        HeldLock heldLock = heldLocks.get(holdKey);
+        if (heldLock == null) {
+            return;
+        }
+
+        Long result = null;
+        try {
+            result = stringRedisTemplate.execute(RELEASE_SCRIPT,
+                Arrays.asList(fullLockKey, RELEASE_CHANNEL_PREFIX + lockKey),
+                owner, String.valueOf(heldLock.leaseMillis));
+        } finally {
+            boolean lost = result != null && result == -1;
+            heldLocks.computeIfPresent(holdKey, (k, held) -> {
+                if (lost || --held.holdCount <= 0) {
+                    held.renewal.cancel(false);
+                    return null;
+                }
+                return held;
+            });
+            if (lost) {
+                log.warn("释放分布式锁失败，锁可能已过期: {}", lockKey);
+            } else if (result != null && result == 1) {
+                log.debug("成功释放分布式锁: {}", lockKey);
+            }
+        }
+    }
+
+    @Override
+    public <T> T executeWithLock(String lockKey, long waitTime, long leaseTime,
+                                TimeUnit timeUnit, LockCallback<T> task) {
+        if (tryLock(lockKey, waitTime, leaseTime, timeUnit)) {
+            try {
+                return task.execute();
+            } catch (Exception e) {
+                log.error("执行锁内业务逻辑失败: {}", lockKey, e);
+                throw new RuntimeException("执行业务逻辑失败", e);
+            } finally {
+                unlock(lockKey);
+            }
+        } else {
+            throw new RuntimeException("获取分布式锁失败: " + lockKey);
+        }
+    }
+
+    /**
+     * 获取各锁key的竞争统计（获取次数、等待耗时、超时次数）
+     */
+    public Map<String, LockStats> getLockStats() {
+        return Collections.unmodifiableMap(lockStats);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        watchdog.shutdownNow();
+        RedisMessageListenerContainer container = listenerContainer;
+        if (container != null) {
+            try {
+                container.destroy();
+            } catch (Exception e) {
+                log.warn("关闭分布式锁释放通知订阅失败", e);
+            }
+        }
+    }
+
+    private Long acquire(String fullLockKey, String owner, long leaseMillis) {
+        Long ttl = stringRedisTemplate.execute(ACQUIRE_SCRIPT,
+            Collections.singletonList(fullLockKey), owner, String.valueOf(leaseMillis));
+        return ttl != null ? ttl : 0L;
+    }
+
+    /**
+     * 记录持有并启动看门狗，重入时只增加计数
+     */
+    private void onAcquired(String fullLockKey, String owner, long leaseMillis) {
+        heldLocks.compute(owner + "@" + fullLockKey, (holdKey, held) -> {
+            if (held != null) {
+                held.holdCount++;
+                return held;
+            }
+            long renewInterval = Math.max(leaseMillis / 3, 1);
+            HeldLock heldLock = new HeldLock(leaseMillis);
+            heldLock.renewal = watchdog.scheduleAtFixedRate(
+                () -> renew(holdKey, fullLockKey, owner, leaseMillis),
+                renewInterval, renewInterval, TimeUnit.MILLISECONDS);
+            return heldLock;
+        });
+        log.debug("成功获取分布式锁: {}", fullLockKey);
+    }
+
+    /**
+     * 看门狗续期，锁已不属于自己时停止续期
+     */
+    private void renew(String holdKey, String fullLockKey, String owner, long leaseMillis) {
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                Collections.singletonList(fullLockKey), owner, String.valueOf(leaseMillis));
+            if (renewed == null || renewed == 0) {
+                HeldLock held = heldLocks.remove(holdKey);
+                if (held != null) {
+                    held.renewal.cancel(false);
+                }
+                log.warn("分布式锁续期失败，锁已丢失: {}", fullLockKey);
+            }
+        } catch (Exception e) {
+            log.warn("分布式锁续期异常: {}", fullLockKey, e);
+        }
+    }
+
+    private LockWaiter registerWaiter(String fullLockKey) {
+        return waiters.compute(fullLockKey, (k, waiter) -> {
+            if (waiter == null) {
+                waiter = new LockWaiter();
+            }
+            waiter.refCount++;
+            return waiter;
+        });
+    }
+
+    private void unregisterWaiter(String fullLockKey) {
+        waiters.computeIfPresent(fullLockKey, (k, waiter) -> --waiter.refCount <= 0 ? null : waiter);
+    }
+
+    /**
+     * 建立释放通知的模式订阅（整个节点共用一个订阅连接），失败时退化为按剩余租期重试
+     */
+    private void ensureSubscribed() {
+        if (listenerContainer != null) {
+            return;
+        }
+        synchronized (this) {
+            if (listenerContainer != null) {
+                return;
+            }
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(redisConnectionFactory);
+            container.addMessageListener(this::onReleased, new PatternTopic(RELEASE_CHANNEL_PREFIX + "*"));
+            try {
+                container.afterPropertiesSet();
+                container.start();
+                listenerContainer = container;
+            } catch (Exception e) {
+                log.warn("订阅分布式锁释放通知失败，退化为定时重试", e);
+            }
+        }
+    }
+
+    private void onReleased(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        LockWaiter waiter = waiters.get(LOCK_PREFIX + channel.substring(RELEASE_CHANNEL_PREFIX.length()));
+        if (waiter != null) {
+            // 只唤醒一个等待者，避免惊群；未抢到的等待者会在下一次释放时被唤醒
+            waiter.signal.release();
+        }
+    }
+
+    private String currentOwner() {
+        return nodeId + ":" + Thread.currentThread().getId();
+    }
+
+    /**
+     * 本节点持有的锁
+     */
+    private static class HeldLock {
+        private final long leaseMillis;
+        private int holdCount = 1;
+        private ScheduledFuture<?> renewal;
+
+        HeldLock(long leaseMillis) {
+            this.leaseMillis = leaseMillis;
+        }
+    }
+
+    /**
+     * 锁等待信号
+     */
+    private static class LockWaiter {
+        private final Semaphore signal = new Semaphore(0);
+        private int refCount;
+    }
+}
@@ -0,0 +1,127 @@
+package com.flashsale.common.mq;
+
+import com.flashsale.common.dto.SeckillDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 定长二进制任务编解码器
+ * 布局：版本(1) + 空值掩码(1) + createTime(8) + [userId(8)] + [productId(8)] + [quantity(4)] + [userLevel(4)]
+ *      + [creditScore(4)] + [isVerified(1)] + taskId/userIp/requestId/deviceFingerprint（2字节长度 + UTF-8，长度-1表示null）
+ * 字节再做URL安全Base64，保证在List（JSON字符串）和Stream（字符串字段）两种后端中都能原样存储
+ * @author 21311
+ */
+@Component
+@ConditionalOnProperty(name = "seckill.async.task-codec", havingValue = "compact")
+public class CompactSeckillTaskCodec implements SeckillTaskCodec {
+
+    private static final byte VERSION = 1;
+
+    private static final int HAS_USER_ID = 1;
+    private static final int HAS_PRODUCT_ID = 1 << 1;
+    private static final int HAS_QUANTITY = 1 << 2;
+    private static final int HAS_USER_LEVEL = 1 << 3;
+    private static final int HAS_CREDIT_SCORE = 1 << 4;
+    private static final int HAS_IS_VERIFIED = 1 << 5;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Override
+    public String encode(SeckillTaskWrapper taskWrapper) {
+        SeckillDTO dto = taskWrapper.getSeckillDTO();
+        byte[] taskId = toBytes(taskWrapper.getTaskId());
+        byte[] userIp = toBytes(dto.getUserIp());
+        byte[] requestId = toBytes(dto.getRequestId());
+        byte[] deviceFingerprint = toBytes(dto.getDeviceFingerprint());
+
+        int mask = 0;
+        int size = 2 + 8;
+        if (dto.getUserId() != null) { mask |= HAS_USER_ID; size += 8; }
+        if (dto.getFlashSaleProductId() != null) { mask |= HAS_PRODUCT_ID; size += 8; }
+        if (dto.getQuantity() != null) { mask |= HAS_QUANTITY; size += 4; }
+        if (dto.getUserLevel() != null) { mask |= HAS_USER_LEVEL; size += 4; }
+        if (dto.getCreditScore() != null) { mask |= HAS_CREDIT_SCORE; size += 4; }
+        if (dto.getIsVerified() != null) { mask |= HAS_IS_VERIFIED; size += 1; }
+        size += sizeOf(taskId) + sizeOf(userIp) + sizeOf(requestId) + sizeOf(deviceFingerprint);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.put((byte) mask);
+        buffer.putLong(taskWrapper.getCreateTime());
+        if ((mask & HAS_USER_ID) != 0) buffer.putLong(dto.getUserId());
+        if ((mask & HAS_PRODUCT_ID) != 0) buffer.putLong(dto.getFlashSaleProductId());
+        if ((mask & HAS_QUANTITY) != 0) buffer.putInt(dto.getQuantity());
+        if ((mask & HAS_USER_LEVEL) != 0) buffer.putInt(dto.getUserLevel());
+        if ((mask & HAS_CREDIT_SCORE) != 0) buffer.putInt(dto.getCreditScore());
+        if ((mask & HAS_IS_VERIFIED) != 0) buffer.put((byte) (dto.getIsVerified() ? 1 : 0));
+        putBytes(buffer, taskId);
+        putBytes(buffer, userIp);
+        putBytes(buffer, requestId);
+        putBytes(buffer, deviceFingerprint);
+        return ENCODER.encodeToString(buffer.array());
+    }
+
+    @Override
+    public SeckillTaskWrapper decode(String payload) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(DECODER.decode(payload));
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("不支持的任务格式版本: " + version);
+            }
+            int mask = buffer.get();
+            long createTime = buffer.getLong();
+
+            SeckillDTO dto = new SeckillDTO();
+            if ((mask & HAS_USER_ID) != 0) dto.setUserId(buffer.getLong());
+            if ((mask & HAS_PRODUCT_ID) != 0) dto.setFlashSaleProductId(buffer.getLong());
+            if ((mask & HAS_QUANTITY) != 0) dto.setQuantity(buffer.getInt());
+            if ((mask & HAS_USER_LEVEL) != 0) dto.setUserLevel(buffer.getInt());
+            if ((mask & HAS_CREDIT_SCORE) != 0) dto.setCreditScore(buffer.getInt());
+            if ((mask & HAS_IS_VERIFIED) != 0) dto.setIsVerified(buffer.get() != 0);
+            String taskId = getString(buffer);
+            dto.setUserIp(getString(buffer));
+            dto.setRequestId(getString(buffer));
+            dto.setDeviceFingerprint(getString(buffer));
+            return new SeckillTaskWrapper(taskId, dto, createTime);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("任务数据不完整", e);
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int sizeOf(byte[] bytes) {
+        return 2 + (bytes != null ? bytes.length : 0);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("字段过长: length=" + bytes.length);
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package com.flashsale.common.mq;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.flashsale.common.dto.SeckillDTO;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 基于Jackson的任务编解码器（默认）
+ * 字段名与原手写JSON格式一致，可读取升级前入队的任务；ObjectReader/ObjectWriter线程安全，全局共享
+ * @author 21311
+ */
+@Component
+@ConditionalOnProperty(name = "seckill.async.task-codec", havingValue = "json", matchIfMissing = true)
+public class JacksonSeckillTaskCodec implements SeckillTaskCodec {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final ObjectWriter WRITER = OBJECT_MAPPER.writerFor(TaskPayload.class);
+    private static final ObjectReader READER = OBJECT_MAPPER.readerFor(TaskPayload.class);
+
+    @Override
+    public String encode(SeckillTaskWrapper taskWrapper) {
+        SeckillDTO dto = taskWrapper.getSeckillDTO();
+        TaskPayload payload = new TaskPayload();
+        payload.setTaskId(taskWrapper.getTaskId());
+        payload.setCreateTime(taskWrapper.getCreateTime());
+        payload.setUserId(dto.getUserId());
+        payload.setProductId(dto.getFlashSaleProductId());
+        payload.setQuantity(dto.getQuantity());
+        payload.setUserIp(dto.getUserIp());
+        payload.setDeviceFingerprint(dto.getDeviceFingerprint());
+        payload.setUserLevel(dto.getUserLevel());
+        payload.setCreditScore(dto.getCreditScore());
+        payload.setIsVerified(dto.getIsVerified());
+        payload.setRequestId(dto.getRequestId());
+        try {
+            return WRITER.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("任务编码失败: taskId=" + taskWrapper.getTaskId(), e);
+        }
+    }
+
+    @Override
+    public SeckillTaskWrapper decode(String serializedTask) {
+        TaskPayload payload;
+        try {
+            payload = READER.readValue(serializedTask);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("任务解码失败", e);
+        }
+
+        SeckillDTO dto = new SeckillDTO();
+        dto.setUserId(payload.getUserId());
+        dto.setFlashSaleProductId(payload.getProductId());
+        dto.setQuantity(payload.getQuantity());
+        dto.setUserIp(payload.getUserIp());
+        dto.setDeviceFingerprint(payload.getDeviceFingerprint());
+        dto.setUserLevel(payload.getUserLevel());
+        dto.setCreditScore(payload.getCreditScore());
+        dto.setIsVerified(payload.getIsVerified());
+        dto.setRequestId(payload.getRequestId());
+        long createTime = payload.getCreateTime() != null ? payload.getCreateTime() : 0L;
+        return new SeckillTaskWrapper(payload.getTaskId(), dto, createTime);
+    }
+
+    /**
+     * 队列中的JSON结构
+     */
+    @Data
+    static class TaskPayload {
+        private String taskId;
+        private Long userId;
+        private Long productId;
+        private Long createTime;
+        private String userIp;
+        private String deviceFingerprint;
+        private Integer quantity;
+        private Integer userLevel;
+        private Integer creditScore;
+        private Boolean isVerified;
+        private String requestId;
+    }
+}
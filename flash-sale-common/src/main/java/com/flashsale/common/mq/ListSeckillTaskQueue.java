@@ -0,0 +1,105 @@
+package com.flashsale.common.mq;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于Redis List的秒杀任务队列（默认后端）
+ * LPUSH入队、RPOP批量出队，出队即删除，处理中宕机的任务会丢失
+ * @author 21311
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "seckill.async.queue-backend", havingValue = "list", matchIfMissing = true)
+public class ListSeckillTaskQueue implements SeckillTaskQueue {
+
+    private static final String SECKILL_QUEUE_PREFIX = "seckill:async:queue:";
+
+    /**
+     * 入队脚本
+     * KEYS[1]-任务队列，KEYS[2]-任务结果，KEYS[3]-活跃队列集合，KEYS[4]-唤醒列表
+     * ARGV[1]-序列化任务，ARGV[2]-商品ID
+     */
+    private static final DefaultRedisScript<Long> ENQUEUE_SCRIPT = new DefaultRedisScript<>(
+        // 检查是否已存在相同任务
+        "if redis.call('exists', KEYS[2]) == 1 then " +
+        "    return 0 " +
+        "end " +
+        // 添加到队列并设置初始状态（30分钟过期，按JSON字符串写入以便读取时反序列化）
+        "redis.call('lpush', KEYS[1], ARGV[1]) " +
+        "redis.call('setex', KEYS[2], 1800, '\"QUEUED\"') " +
+        // 登记活跃队列，队列由空变为非空时唤醒处理线程
+        "if redis.call('sadd', KEYS[3], ARGV[2]) == 1 then " +
+        "    redis.call('lpush', KEYS[4], ARGV[2]) " +
+        "end " +
+        "return 1",
+        Long.class);
+
+    /**
+     * 队列为空时注销活跃登记：KEYS[1]-任务队列，KEYS[2]-活跃队列集合；ARGV[1]-商品ID
+     */
+    private static final DefaultRedisScript<Long> DEACTIVATE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('llen', KEYS[1]) == 0 then " +
+        "    redis.call('srem', KEYS[2], ARGV[1]) " +
+        "    return 1 " +
+        "end " +
+        "return 0",
+        Long.class);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Override
+    public boolean enqueue(Long productId, String resultKey, String serializedTask) {
+        Long result = redisTemplate.execute(ENQUEUE_SCRIPT,
+            Arrays.asList(queueKey(productId), resultKey, ACTIVE_QUEUES_KEY, WAKEUP_QUEUE_KEY),
+            serializedTask, productId);
+        return result != null && result == 1;
+    }
+
+    @Override
+    public List<QueuedTask> poll(Long productId, int maxCount) {
+        // RPOP count，一次往返取出整批
+        List<Object> values = redisTemplate.opsForList().rightPop(queueKey(productId), maxCount);
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<QueuedTask> tasks = new ArrayList<>(values.size());
+        for (Object value : values) {
+            tasks.add(new QueuedTask(null, (String) value));
+        }
+        return tasks;
+    }
+
+    @Override
+    public void ack(Long productId, List<QueuedTask> tasks) {
+        // 出队即删除，无需确认
+    }
+
+    @Override
+    public long size(Long productId) {
+        Long size = redisTemplate.opsForList().size(queueKey(productId));
+        return size != null ? size : 0;
+    }
+
+    @Override
+    public boolean deactivateIfEmpty(Long productId) {
+        Long removed = redisTemplate.execute(DEACTIVATE_SCRIPT,
+            Arrays.asList(queueKey(productId), ACTIVE_QUEUES_KEY), productId);
+        return removed != null && removed == 1;
+    }
+
+    private String queueKey(Long productId) {
+        return SECKILL_QUEUE_PREFIX + productId;
+    }
+}
@@ -33,6 +33,11 @@ public class RabbitMQConfig {
      */
     public static final String DEAD_LETTER_EXCHANGE = "dlx.exchange";
 
+    /**
+     * 秒杀交换机 - 用于秒杀库存同步等操作
+     */
+    public static final String SECKILL_EXCHANGE = "seckill.exchange";
+
     // ==================== 队列名称常量 ====================
     
     /**
@@ -45,6 +50,11 @@ public class RabbitMQConfig {
      */
     public static final String PAYMENT_PROCESS_QUEUE = "payment.process.queue";
 
+    /**
+     * 库存扣减同步队列 - Redis扣减后异步同步到MySQL
+     */
+    public static final String STOCK_DEDUCT_QUEUE = "stock.deduct.queue";
+
     // ==================== 路由键常量 ====================
     
     /**
@@ -57,6 +67,11 @@ public class RabbitMQConfig {
      */
     public static final String PAYMENT_PROCESS_ROUTING_KEY = "payment.process";
 
+    /**
+     * 库存扣减同步路由键
+     */
+    public static final String STOCK_DEDUCT_ROUTING_KEY = "stock.deduct";
+
     // ==================== 其他常量 ====================
     
     /**
@@ -84,6 +99,15 @@ public class RabbitMQConfig {
                 .build();
     }
 
+    /**
+     * 创建秒杀直连交换机
+     */
+    protected DirectExchange createSeckillExchange() {
+        return ExchangeBuilder.directExchange(SECKILL_EXCHANGE)
+                .durable(true)
+                .build();
+    }
+
     /**
      * 创建订单状态更新队列
      */
@@ -102,6 +126,15 @@ public class RabbitMQConfig {
                 .build();
     }
 
+    /**
+     * 创建库存扣减同步队列
+     */
+    protected Queue createStockDeductQueue() {
+        return QueueBuilder.durable(STOCK_DEDUCT_QUEUE)
+                .withArgument("x-dead-letter-exchange", "dlx.exchange")
+                .build();
+    }
+
     /**
      * 创建订单状态更新绑定
      */
@@ -120,6 +153,15 @@ public class RabbitMQConfig {
                 .with(PAYMENT_PROCESS_ROUTING_KEY);
     }
 
+    /**
+     * 创建库存扣减同步绑定
+     */
+    protected Binding createStockDeductBinding(DirectExchange seckillExchange, Queue stockDeductQueue) {
+        return BindingBuilder.bind(stockDeductQueue)
+                .to(seckillExchange)
+                .with(STOCK_DEDUCT_ROUTING_KEY);
+    }
+
     /**
      * 配置基础RabbitTemplate（包含发送确认和回调机制）
      * 各服务可以调用此方法来创建具有统一配置的RabbitTemplate
@@ -1,20 +1,21 @@
 package com.flashsale.common.mq;
 
 import com.flashsale.common.dto.SeckillDTO;
-import com.flashsale.common.result.Result;
 import com.flashsale.common.security.IdempotencyService;
 import com.flashsale.common.security.AntiScalpingService;
-import com.flashsale.common.lock.DistributedLockService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -35,42 +36,80 @@ public class SeckillAsyncProcessor {
     @Autowired
     private AntiScalpingService antiScalpingService;
     
+    /**
+     * 秒杀执行器，由秒杀服务提供；未提供时（非秒杀服务）不消费异步队列
+     */
+    @Autowired(required = false)
+    private SeckillExecutor seckillExecutor;
+    
+    /**
+     * 任务队列后端（list / stream），由 seckill.async.queue-backend 配置选择
+     */
+    @Autowired
+    private SeckillTaskQueue taskQueue;
+    
+    /**
+     * 任务编解码器（json / compact），由 seckill.async.task-codec 配置选择
+     */
     @Autowired
-    private DistributedLockService distributedLockService;
+    private SeckillTaskCodec taskCodec;
     
     // 队列前缀
-    private static final String SECKILL_QUEUE_PREFIX = "seckill:async:queue:";
-    private static final String PROCESSING_QUEUE_PREFIX = "seckill:async:processing:";
     private static final String RESULT_PREFIX = "seckill:async:result:";
     private static final String FAILED_QUEUE_PREFIX = "seckill:async:failed:";
     private static final String METRICS_PREFIX = "seckill:async:metrics:";
     
+    private static final long WAKEUP_POLL_TIMEOUT_SECONDS = 1;
+    
+    /**
+     * 执行模式：platform（固定线程池，默认）或 virtual（每任务一个虚拟线程，需Java 21运行时）
+     */
+    @Value("${seckill.async.executor-mode:platform}")
+    private String executorMode;
+    
+    /**
+     * Redis / 数据库并发上限，默认与连接池大小一致，虚拟线程模式下防止打满连接池
+     */
+    @Value("${seckill.async.redis-concurrency:${spring.data.redis.lettuce.pool.max-active:8}}")
+    private int redisConcurrency;
+    
+    @Value("${seckill.async.db-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int dbConcurrency;
+    
+    private Semaphore redisPermits;
+    private Semaphore dbPermits;
+    
     // 线程池配置
-    private ThreadPoolExecutor asyncExecutor;
+    private ExecutorService asyncExecutor;
     private ScheduledExecutorService scheduledExecutor;
+    private Thread wakeupDispatcher;
+    private volatile boolean running = true;
+    
+    // 本节点正在处理的商品，避免同一商品被重复调度
+    private final Set<Long> drainingProducts = ConcurrentHashMap.newKeySet();
     
     // 处理统计
     private final AtomicLong processedCount = new AtomicLong(0);
     private final AtomicLong successCount = new AtomicLong(0);
     private final AtomicLong failureCount = new AtomicLong(0);
+    private final AtomicInteger activeTasks = new AtomicInteger(0);
     
     // 批处理配置
     private static final int BATCH_SIZE = 100;
     private static final int MAX_QUEUE_SIZE = 10000;
-    private static final int PROCESSING_TIMEOUT_SECONDS = 30;
     
     @PostConstruct
     public void init() {
-        // 初始化线程池
-        int corePoolSize = Runtime.getRuntime().availableProcessors();
-        int maxPoolSize = corePoolSize * 4;
+        redisPermits = new Semaphore(Math.max(1, redisConcurrency));
+        dbPermits = new Semaphore(Math.max(1, dbConcurrency));
         
-        asyncExecutor = new ThreadPoolExecutor(
-            corePoolSize, maxPoolSize, 60L, TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(1000),
-            r -> new Thread(r, "seckill-async-" + System.currentTimeMillis()),
-            new ThreadPoolExecutor.CallerRunsPolicy()
-        );
+        // 初始化执行器：优先虚拟线程，不可用时回退到固定线程池
+        if ("virtual".equalsIgnoreCase(executorMode)) {
+            asyncExecutor = createVirtualThreadExecutor();
+        }
+        if (asyncExecutor == null) {
+            asyncExecutor = createPlatformThreadPool();
+        }
         
         scheduledExecutor = Executors.newScheduledThreadPool(2);
         
@@ -83,11 +122,82 @@ public class SeckillAsyncProcessor {
         // 启动失败重试任务
         startRetryProcessor();
         
-        log.info("秒杀异步处理器初始化完成: corePool={}, maxPool={}", corePoolSize, maxPoolSize);
+        log.info("秒杀异步处理器初始化完成: executor={}, redisConcurrency={}, dbConcurrency={}",
+                asyncExecutor instanceof ThreadPoolExecutor ? "platform" : "virtual", redisConcurrency, dbConcurrency);
+    }
+    
+    /**
+     * 固定线程池
+     * 队列满时拒绝而不是由调用方执行，避免调度线程被任务占住；被拒绝的商品由兜底定时任务重新调度
+     */
+    private ExecutorService createPlatformThreadPool() {
+        int corePoolSize = Runtime.getRuntime().availableProcessors();
+        int maxPoolSize = corePoolSize * 4;
+        AtomicInteger threadIndex = new AtomicInteger();
+        return new ThreadPoolExecutor(
+            corePoolSize, maxPoolSize, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(1000),
+            r -> new Thread(r, "seckill-async-" + threadIndex.incrementAndGet()),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+    
+    /**
+     * 每任务一个虚拟线程的执行器（Java 21+）
+     * 以反射获取，Java 17构建的产物在Java 21运行时同样可用；运行时不支持时返回null
+     */
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("当前Java运行时不支持虚拟线程，回退到固定线程池: java.version={}",
+                    System.getProperty("java.version"));
+            return null;
+        }
+    }
+    
+    /**
+     * 提交任务到执行器，并统计执行中的任务数
+     */
+    private void submitAsync(Runnable task) {
+        asyncExecutor.execute(() -> {
+            activeTasks.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                activeTasks.decrementAndGet();
+            }
+        });
+    }
+    
+    /**
+     * 在并发许可内执行，限制同时访问Redis或数据库的任务数
+     */
+    private <T> T withPermit(Semaphore permits, Callable<T> action) throws Exception {
+        permits.acquireUninterruptibly();
+        try {
+            return action.call();
+        } finally {
+            permits.release();
+        }
+    }
+    
+    private void runWithPermit(Semaphore permits, Runnable action) {
+        permits.acquireUninterruptibly();
+        try {
+            action.run();
+        } finally {
+            permits.release();
+        }
     }
     
     @PreDestroy
     public void destroy() {
+        running = false;
+        if (wakeupDispatcher != null) {
+            wakeupDispatcher.interrupt();
+        }
+        
         if (asyncExecutor != null) {
             asyncExecutor.shutdown();
             try {
@@ -117,9 +227,8 @@ public class SeckillAsyncProcessor {
         String taskId = generateTaskId(seckillDTO.getUserId(), seckillDTO.getFlashSaleProductId());
         
         // 检查队列是否已满
-        String queueKey = SECKILL_QUEUE_PREFIX + seckillDTO.getFlashSaleProductId();
-        Long queueSize = redisTemplate.opsForList().size(queueKey);
-        if (queueSize != null && queueSize >= MAX_QUEUE_SIZE) {
+        long queueSize = taskQueue.size(seckillDTO.getFlashSaleProductId());
+        if (queueSize >= MAX_QUEUE_SIZE) {
             log.warn("队列已满，拒绝请求: productId={}, queueSize={}", seckillDTO.getFlashSaleProductId(), queueSize);
             return null;
         }
@@ -134,33 +243,15 @@ public class SeckillAsyncProcessor {
         try {
             SeckillTaskWrapper taskWrapper = new SeckillTaskWrapper(taskId, seckillDTO, System.currentTimeMillis());
             String serializedTask = serializeTask(taskWrapper);
+            if (serializedTask == null) {
+                return null;
+            }
             
-            // 使用Lua脚本确保原子性
-            String luaScript = 
-                "local queueKey = KEYS[1] " +
-                "local resultKey = KEYS[2] " +
-                "local taskId = ARGV[1] " +
-                "local serializedTask = ARGV[2] " +
-                "local currentTime = ARGV[3] " +
-                
-                // 检查是否已存在相同任务
-                "if redis.call('exists', resultKey) == 1 then " +
-                "    return nil " +
-                "end " +
-                
-                // 添加到队列并设置初始状态
-                "redis.call('lpush', queueKey, serializedTask) " +
-                "redis.call('setex', resultKey, 1800, 'QUEUED') " + // 30分钟过期
-                "return taskId";
-            
-            DefaultRedisScript<String> script = new DefaultRedisScript<>(luaScript, String.class);
-            String resultKey = RESULT_PREFIX + taskId;
-            
-            String result = redisTemplate.execute(script,
-                Arrays.asList(queueKey, resultKey),
-                taskId, serializedTask, String.valueOf(System.currentTimeMillis()));
+            // 去重、入队、登记活跃队列由队列后端原子完成
+            boolean queued = taskQueue.enqueue(seckillDTO.getFlashSaleProductId(),
+                RESULT_PREFIX + taskId, serializedTask);
             
-            if (result != null) {
+            if (queued) {
                 log.info("秒杀请求已提交到异步队列: taskId={}, userId={}, productId={}", 
                         taskId, seckillDTO.getUserId(), seckillDTO.getFlashSaleProductId());
                 return taskId;
@@ -207,8 +298,17 @@ public class SeckillAsyncProcessor {
     
     /**
      * 启动批处理任务
+     * 唤醒线程阻塞等待新队列到达；定时任务按活跃队列登记兜底，防止唤醒丢失
      */
     private void startBatchProcessor() {
+        if (seckillExecutor == null) {
+            return;
+        }
+        
+        wakeupDispatcher = new Thread(this::dispatchWakeups, "seckill-async-wakeup");
+        wakeupDispatcher.setDaemon(true);
+        wakeupDispatcher.start();
+        
         scheduledExecutor.scheduleWithFixedDelay(() -> {
             try {
                 processBatch();
@@ -219,44 +319,93 @@ public class SeckillAsyncProcessor {
     }
     
     /**
-     * 处理批量任务
+     * 阻塞等待唤醒消息（BRPOP），收到后立即调度对应商品的队列
+     */
+    private void dispatchWakeups() {
+        while (running) {
+            try {
+                Object productId = redisTemplate.opsForList()
+                    .rightPop(SeckillTaskQueue.WAKEUP_QUEUE_KEY, WAKEUP_POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (productId != null) {
+                    scheduleDrain(Long.valueOf(productId.toString()));
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.error("等待异步队列唤醒异常", e);
+                sleepQuietly(WAKEUP_POLL_TIMEOUT_SECONDS);
+            }
+        }
+    }
+    
+    /**
+     * 处理批量任务（兜底：按活跃队列登记调度）
      */
     private void processBatch() {
-        // 获取所有活跃的商品队列
-        Set<String> productQueues = getActiveProductQueues();
-        
-        for (String queueKey : productQueues) {
-            Long productId = extractProductIdFromQueueKey(queueKey);
-            if (productId == null) continue;
-            
-            // 为每个商品并行处理
-            asyncExecutor.submit(() -> processProductQueue(productId, queueKey));
+        for (Long productId : getActiveProductIds()) {
+            scheduleDrain(productId);
         }
     }
     
     /**
-     * 处理单个商品的队列
+     * 调度商品队列的处理，本节点同一商品同时只有一个处理任务
      */
-    private void processProductQueue(Long productId, String queueKey) {
+    private void scheduleDrain(Long productId) {
+        if (!drainingProducts.add(productId)) {
+            return;
+        }
         try {
-            // 批量获取任务
-            List<String> tasks = new ArrayList<>();
-            for (int i = 0; i < BATCH_SIZE; i++) {
-                String task = (String) redisTemplate.opsForList().rightPop(queueKey);
-                if (task == null) break;
-                tasks.add(task);
+            submitAsync(() -> {
+                try {
+                    drainProductQueue(productId);
+                } finally {
+                    drainingProducts.remove(productId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            drainingProducts.remove(productId);
+        }
+    }
+    
+    /**
+     * 持续处理商品队列直到为空，为空时原子地注销活跃登记
+     */
+    private void drainProductQueue(Long productId) {
+        while (running) {
+            int processed = processProductQueue(productId);
+            if (processed >= BATCH_SIZE) {
+                continue;
             }
-            
-            if (tasks.isEmpty()) return;
+            // 本轮没有取到任务但队列非空（如任务被其他消费者持有），交给兜底定时任务
+            if (taskQueue.deactivateIfEmpty(productId) || processed == 0) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * 处理单个商品的队列（一批），返回本批取出的任务数
+     */
+    private int processProductQueue(Long productId) {
+        try {
+            // 批量获取任务
+            List<SeckillTaskQueue.QueuedTask> tasks = withPermit(redisPermits, () -> taskQueue.poll(productId, BATCH_SIZE));
+            if (tasks.isEmpty()) return 0;
             
             log.info("开始批处理: productId={}, batchSize={}", productId, tasks.size());
             
-            // 处理每个任务
-            for (String serializedTask : tasks) {
+            // 解析任务，解析失败的任务进入重试队列
+            List<SeckillTaskWrapper> taskWrappers = new ArrayList<>(tasks.size());
+            for (SeckillTaskQueue.QueuedTask task : tasks) {
+                String serializedTask = task.getPayload();
                 try {
                     SeckillTaskWrapper taskWrapper = deserializeTask(serializedTask);
-                    if (taskWrapper != null) {
-                        processTask(taskWrapper);
+                    if (taskWrapper != null && task.isRedelivered() && isTaskFinished(taskWrapper.getTaskId())) {
+                        // 宕机前已记录最终结果，只差确认，不再重复执行
+                        log.info("重新投递的任务已有最终结果，直接确认: taskId={}", taskWrapper.getTaskId());
+                    } else if (taskWrapper != null) {
+                        taskWrappers.add(taskWrapper);
                     }
                 } catch (Exception e) {
                     log.error("处理单个任务失败: task={}", serializedTask, e);
@@ -265,8 +414,19 @@ public class SeckillAsyncProcessor {
                 }
             }
             
+            // 整批交给秒杀执行器：一次库存预占 + 批量写入订单
+            processTasks(productId, taskWrappers);
+            
+            // 结果已落地后再确认，处理中宕机的任务可由支持确认的后端重新投递
+            withPermit(redisPermits, () -> {
+                taskQueue.ack(productId, tasks);
+                return null;
+            });
+            return tasks.size();
+            
         } catch (Exception e) {
             log.error("批处理异常: productId={}", productId, e);
+            return 0;
         }
     }
     
@@ -274,76 +434,123 @@ public class SeckillAsyncProcessor {
      * 处理单个秒杀任务
      */
     private void processTask(SeckillTaskWrapper taskWrapper) {
-        String taskId = taskWrapper.getTaskId();
-        SeckillDTO seckillDTO = taskWrapper.getSeckillDTO();
+        processTasks(taskWrapper.getSeckillDTO().getFlashSaleProductId(), Collections.singletonList(taskWrapper));
+    }
+    
+    /**
+     * 批量处理同一商品的秒杀任务
+     */
+    private void processTasks(Long productId, List<SeckillTaskWrapper> taskWrappers) {
+        if (taskWrappers.isEmpty()) {
+            return;
+        }
+        
+        // 1. 逐个做幂等性和防黄牛检查，未通过的直接失败
+        List<SeckillTaskWrapper> acceptedTasks = new ArrayList<>(taskWrappers.size());
+        runWithPermit(redisPermits, () -> preCheckTasks(taskWrappers, acceptedTasks));
         
+        if (acceptedTasks.isEmpty()) {
+            return;
+        }
+        
+        // 2. 整批执行真实的库存扣减和订单创建
+        List<SeckillDTO> requests = new ArrayList<>(acceptedTasks.size());
+        for (SeckillTaskWrapper taskWrapper : acceptedTasks) {
+            requests.add(taskWrapper.getSeckillDTO());
+        }
+        
+        List<SeckillExecutor.ExecuteResult> results;
         try {
-            // 更新状态为处理中
-            updateTaskStatus(taskId, "PROCESSING", "开始处理秒杀请求");
-            
-            // 执行完整的秒杀逻辑
-            Result<String> seckillResult = executeCompleteSeckill(seckillDTO);
-            
-            // 更新最终结果
-            if (seckillResult.getCode().equals("200")) {
-                updateTaskStatus(taskId, "SUCCESS", seckillResult.getData());
-                successCount.incrementAndGet();
-                log.info("秒杀任务处理成功: taskId={}, orderNo={}", taskId, seckillResult.getData());
-            } else {
-                updateTaskStatus(taskId, "FAILED", seckillResult.getMessage());
-                failureCount.incrementAndGet();
-                log.warn("秒杀任务处理失败: taskId={}, reason={}", taskId, seckillResult.getMessage());
-            }
-            
-            processedCount.incrementAndGet();
-            
+            results = withPermit(dbPermits, () -> seckillExecutor.executeBatch(productId, requests));
         } catch (Exception e) {
-            log.error("处理秒杀任务异常: taskId={}", taskId, e);
-            updateTaskStatus(taskId, "FAILED", "系统异常: " + e.getMessage());
-            failureCount.incrementAndGet();
-            processedCount.incrementAndGet();
+            log.error("批量执行秒杀异常: productId={}, batchSize={}", productId, requests.size(), e);
+            results = null;
+        }
+        
+        // 3. 更新最终结果
+        List<SeckillExecutor.ExecuteResult> batchResults = results;
+        runWithPermit(redisPermits, () -> {
+            for (int i = 0; i < acceptedTasks.size(); i++) {
+                SeckillExecutor.ExecuteResult result = batchResults != null && i < batchResults.size() && batchResults.get(i) != null
+                    ? batchResults.get(i)
+                    : SeckillExecutor.ExecuteResult.failure("系统异常");
+                completeTask(acceptedTasks.get(i).getTaskId(), result);
+            }
+        });
+    }
+    
+    /**
+     * 逐个做幂等性和防黄牛检查，通过的任务放入acceptedTasks，未通过的直接失败
+     */
+    private void preCheckTasks(List<SeckillTaskWrapper> taskWrappers, List<SeckillTaskWrapper> acceptedTasks) {
+        for (SeckillTaskWrapper taskWrapper : taskWrappers) {
+            String taskId = taskWrapper.getTaskId();
+            try {
+                // 更新状态为处理中
+                updateTaskStatus(taskId, "PROCESSING", "开始处理秒杀请求");
+                
+                String rejectReason = preCheckTask(taskWrapper);
+                if (rejectReason != null) {
+                    completeTask(taskId, SeckillExecutor.ExecuteResult.failure(rejectReason));
+                } else {
+                    acceptedTasks.add(taskWrapper);
+                }
+            } catch (Exception e) {
+                log.error("处理秒杀任务异常: taskId={}", taskId, e);
+                completeTask(taskId, SeckillExecutor.ExecuteResult.failure("系统异常: " + e.getMessage()));
+            }
         }
     }
     
     /**
-     * 执行完整的秒杀逻辑（需要注入真实的秒杀服务）
+     * 执行前检查（幂等性、防黄牛），返回拒绝原因，通过时返回null
      */
-    private Result<String> executeCompleteSeckill(SeckillDTO seckillDTO) {
-        // 这里应该调用真实的秒杀服务
-        // 为了示例，这里只返回模拟结果
-        
-        // 1. 幂等性检查
+    private String preCheckTask(SeckillTaskWrapper taskWrapper) {
+        SeckillDTO seckillDTO = taskWrapper.getSeckillDTO();
+
+        // 1. 幂等性检查：以任务ID为持有者，宕机后重新投递的同一任务可以重入，其他任务的相同请求ID被拒绝
         String requestId = seckillDTO.getUserId() + ":" + seckillDTO.getFlashSaleProductId() + ":" + 
-                          (seckillDTO.getRequestId() != null ? seckillDTO.getRequestId() : UUID.randomUUID().toString());
+                          (StringUtils.hasText(seckillDTO.getRequestId()) ? seckillDTO.getRequestId() : taskWrapper.getTaskId());
         
         if (!idempotencyService.checkSeckillIdempotency(seckillDTO.getUserId(), 
-                seckillDTO.getFlashSaleProductId(), requestId)) {
-            return Result.error("重复请求");
+                seckillDTO.getFlashSaleProductId(), requestId, taskWrapper.getTaskId())) {
+            return "重复请求";
         }
         
         // 2. 防黄牛检查
         if (!antiScalpingService.checkUserLegitimacy(seckillDTO.getUserId(), 
                 seckillDTO.getUserIp(), seckillDTO.getDeviceFingerprint(),
                 seckillDTO.getUserLevel(), seckillDTO.getCreditScore(), seckillDTO.getIsVerified())) {
-            return Result.error("用户验证失败");
+            return "用户验证失败";
         }
         
-        // 3. 模拟库存检查和扣减（实际应该调用真实服务）
-        String lockKey = "seckill:stock:" + seckillDTO.getFlashSaleProductId();
-        return distributedLockService.executeWithLock(lockKey, 1, 10, TimeUnit.SECONDS, () -> {
-            // 模拟业务逻辑
-            String orderNo = "FS" + System.currentTimeMillis() + 
-                           UUID.randomUUID().toString().replace("-", "").substring(0, 8);
-            
-            // 模拟成功率（90%成功）
-            if (Math.random() < 0.9) {
-                return Result.success(orderNo);
-            } else {
-                throw new RuntimeException("库存不足");
-            }
-        });
+        return null;
+    }
+    
+    /**
+     * 记录任务最终结果
+     */
+    private void completeTask(String taskId, SeckillExecutor.ExecuteResult result) {
+        if (result.isSuccess()) {
+            updateTaskStatus(taskId, "SUCCESS", result.getOrderNo());
+            successCount.incrementAndGet();
+            log.info("秒杀任务处理成功: taskId={}, orderNo={}", taskId, result.getOrderNo());
+        } else {
+            updateTaskStatus(taskId, "FAILED", result.getMessage());
+            failureCount.incrementAndGet();
+            log.warn("秒杀任务处理失败: taskId={}, reason={}", taskId, result.getMessage());
+        }
+        processedCount.incrementAndGet();
     }
     
+    /**
+     * 任务是否已记录最终结果
+     */
+    private boolean isTaskFinished(String taskId) {
+        Object status = redisTemplate.opsForValue().get(RESULT_PREFIX + taskId);
+        return "SUCCESS".equals(status) || "FAILED".equals(status);
+    }
+
     /**
      * 预验证请求（快速检查）
      */
@@ -378,22 +585,28 @@ public class SeckillAsyncProcessor {
     }
     
     /**
-     * 获取活跃的商品队列
+     * 获取活跃的商品队列（活跃登记集合，不扫描keyspace）
      */
-    private Set<String> getActiveProductQueues() {
-        Set<String> keys = redisTemplate.keys(SECKILL_QUEUE_PREFIX + "*");
-        return keys != null ? keys : new HashSet<>();
+    private Set<Long> getActiveProductIds() {
+        Set<Object> members = redisTemplate.opsForSet().members(SeckillTaskQueue.ACTIVE_QUEUES_KEY);
+        Set<Long> productIds = new HashSet<>();
+        if (members != null) {
+            for (Object member : members) {
+                try {
+                    productIds.add(Long.valueOf(member.toString()));
+                } catch (NumberFormatException e) {
+                    log.warn("无效的活跃队列登记: {}", member);
+                }
+            }
+        }
+        return productIds;
     }
     
-    /**
-     * 从队列键提取商品ID
-     */
-    private Long extractProductIdFromQueueKey(String queueKey) {
+    private void sleepQuietly(long seconds) {
         try {
-            String productIdStr = queueKey.substring(SECKILL_QUEUE_PREFIX.length());
-            return Long.parseLong(productIdStr);
-        } catch (Exception e) {
-            return null;
+            TimeUnit.SECONDS.sleep(seconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
     
@@ -406,21 +619,19 @@ public class SeckillAsyncProcessor {
     }
     
     /**
-     * 序列化任务
+     * 序列化任务（缺省字段沿用原有默认值）
      */
     private String serializeTask(SeckillTaskWrapper taskWrapper) {
         try {
-            return String.format("{\"taskId\":\"%s\",\"userId\":%d,\"productId\":%d,\"createTime\":%d,\"userIp\":\"%s\",\"quantity\":%d,\"userLevel\":%d,\"creditScore\":%d,\"isVerified\":%s,\"requestId\":\"%s\"}",
-                taskWrapper.getTaskId(), 
-                taskWrapper.getSeckillDTO().getUserId(),
-                taskWrapper.getSeckillDTO().getFlashSaleProductId(),
-                taskWrapper.getCreateTime(),
-                taskWrapper.getSeckillDTO().getUserIp() != null ? taskWrapper.getSeckillDTO().getUserIp() : "",
-                taskWrapper.getSeckillDTO().getQuantity(),
-                taskWrapper.getSeckillDTO().getUserLevel() != null ? taskWrapper.getSeckillDTO().getUserLevel() : 1,
-                taskWrapper.getSeckillDTO().getCreditScore() != null ? taskWrapper.getSeckillDTO().getCreditScore() : 60,
-                taskWrapper.getSeckillDTO().getIsVerified() != null ? taskWrapper.getSeckillDTO().getIsVerified() : false,
-                taskWrapper.getSeckillDTO().getRequestId() != null ? taskWrapper.getSeckillDTO().getRequestId() : "");
+            SeckillDTO seckillDTO = new SeckillDTO();
+            BeanUtils.copyProperties(taskWrapper.getSeckillDTO(), seckillDTO);
+            if (seckillDTO.getUserIp() == null) seckillDTO.setUserIp("");
+            if (seckillDTO.getUserLevel() == null) seckillDTO.setUserLevel(1);
+            if (seckillDTO.getCreditScore() == null) seckillDTO.setCreditScore(60);
+            if (seckillDTO.getIsVerified() == null) seckillDTO.setIsVerified(false);
+            // 未携带请求ID时使用任务ID，重新投递的任务以同一请求ID扣减库存
+            if (!StringUtils.hasText(seckillDTO.getRequestId())) seckillDTO.setRequestId(taskWrapper.getTaskId());
+            return taskCodec.encode(new SeckillTaskWrapper(taskWrapper.getTaskId(), seckillDTO, taskWrapper.getCreateTime()));
         } catch (Exception e) {
             log.error("序列化任务失败", e);
             return null;
@@ -432,45 +643,13 @@ public class SeckillAsyncProcessor {
      */
     private SeckillTaskWrapper deserializeTask(String serializedTask) {
         try {
-            // 简单解析JSON（实际应该使用JSON库）
-            String taskId = extractJsonValue(serializedTask, "taskId");
-            Long userId = Long.parseLong(extractJsonValue(serializedTask, "userId"));
-            Long productId = Long.parseLong(extractJsonValue(serializedTask, "productId"));
-            Long createTime = Long.parseLong(extractJsonValue(serializedTask, "createTime"));
-            String userIp = extractJsonValue(serializedTask, "userIp");
-            Integer quantity = Integer.parseInt(extractJsonValue(serializedTask, "quantity"));
-            Integer userLevel = Integer.parseInt(extractJsonValue(serializedTask, "userLevel"));
-            Integer creditScore = Integer.parseInt(extractJsonValue(serializedTask, "creditScore"));
-            Boolean isVerified = Boolean.parseBoolean(extractJsonValue(serializedTask, "isVerified"));
-            String requestId = extractJsonValue(serializedTask, "requestId");
-            
-            SeckillDTO seckillDTO = new SeckillDTO();
-            seckillDTO.setUserId(userId);
-            seckillDTO.setFlashSaleProductId(productId);
-            seckillDTO.setUserIp(userIp);
-            seckillDTO.setQuantity(quantity);
-            seckillDTO.setUserLevel(userLevel);
-            seckillDTO.setCreditScore(creditScore);
-            seckillDTO.setIsVerified(isVerified);
-            seckillDTO.setRequestId(requestId);
-            
-            return new SeckillTaskWrapper(taskId, seckillDTO, createTime);
+            return taskCodec.decode(serializedTask);
         } catch (Exception e) {
             log.error("反序列化任务失败: task={}", serializedTask, e);
             return null;
         }
     }
     
-    /**
-     * 简单的JSON值提取（实际应该使用JSON库）
-     */
-    private String extractJsonValue(String json, String key) {
-        String pattern = "\"" + key + "\":\"?([^,}\"]+)\"?";
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-        java.util.regex.Matcher m = p.matcher(json);
-        return m.find() ? m.group(1) : "";
-    }
-    
     /**
      * 添加到重试队列
      */
@@ -510,7 +689,12 @@ public class SeckillAsyncProcessor {
                 
                 SeckillTaskWrapper taskWrapper = deserializeTask(originalTask);
                 if (taskWrapper != null) {
-                    asyncExecutor.submit(() -> processTask(taskWrapper));
+                    try {
+                        submitAsync(() -> processTask(taskWrapper));
+                    } catch (RejectedExecutionException e) {
+                        // 执行器繁忙，放回重试队列等待下一轮
+                        redisTemplate.opsForList().leftPush(retryQueueKey, retryTask);
+                    }
                 }
             }
         }
@@ -539,9 +723,11 @@ public class SeckillAsyncProcessor {
         
         double successRate = processed > 0 ? (double) success / processed * 100 : 0;
         
-        log.info("异步处理统计 - 总处理:{}, 成功:{}, 失败:{}, 成功率:{:.2f}%, 活跃线程:{}, 队列任务:{}", 
-                processed, success, failure, successRate, 
-                asyncExecutor.getActiveCount(), asyncExecutor.getQueue().size());
+        int queuedTasks = asyncExecutor instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+        
+        log.info("异步处理统计 - 总处理:{}, 成功:{}, 失败:{}, 成功率:{}%, 活跃任务:{}, 队列任务:{}", 
+                processed, success, failure, String.format("%.2f", successRate), 
+                activeTasks.get(), queuedTasks);
         
         // 记录到Redis供监控系统读取
         String metricsKey = METRICS_PREFIX + "current";
@@ -550,33 +736,14 @@ public class SeckillAsyncProcessor {
         metrics.put("success", success);
         metrics.put("failure", failure);
         metrics.put("successRate", successRate);
-        metrics.put("activeThreads", asyncExecutor.getActiveCount());
-        metrics.put("queueSize", asyncExecutor.getQueue().size());
+        metrics.put("activeThreads", activeTasks.get());
+        metrics.put("queueSize", queuedTasks);
         metrics.put("timestamp", System.currentTimeMillis());
         
         redisTemplate.opsForHash().putAll(metricsKey, metrics);
         redisTemplate.expire(metricsKey, 1, TimeUnit.HOURS);
     }
     
-    /**
-     * 任务包装器
-     */
-    private static class SeckillTaskWrapper {
-        private String taskId;
-        private SeckillDTO seckillDTO;
-        private long createTime;
-        
-        public SeckillTaskWrapper(String taskId, SeckillDTO seckillDTO, long createTime) {
-            this.taskId = taskId;
-            this.seckillDTO = seckillDTO;
-            this.createTime = createTime;
-        }
-        
-        public String getTaskId() { return taskId; }
-        public SeckillDTO getSeckillDTO() { return seckillDTO; }
-        public long getCreateTime() { return createTime; }
-    }
-    
     /**
      * 异步任务结果
      */
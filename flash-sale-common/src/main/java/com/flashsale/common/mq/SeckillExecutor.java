@@ -0,0 +1,54 @@
+package com.flashsale.common.mq;
+
+import com.flashsale.common.dto.SeckillDTO;
+
+import java.util.List;
+
+/**
+ * 秒杀执行器接口 - 由秒杀服务实现，异步处理器通过它执行真实的库存扣减和订单创建
+ * @author 21311
+ */
+public interface SeckillExecutor {
+
+    /**
+     * 批量执行同一秒杀商品的秒杀请求
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @param requests 秒杀请求（已通过幂等性和防黄牛检查）
+     * @return 与请求一一对应的执行结果
+     */
+    List<ExecuteResult> executeBatch(Long flashSaleProductId, List<SeckillDTO> requests);
+
+    /**
+     * 执行结果封装类
+     */
+    class ExecuteResult {
+        private final boolean success;
+        private final String orderNo;
+        private final String message;
+
+        private ExecuteResult(boolean success, String orderNo, String message) {
+            this.success = success;
+            this.orderNo = orderNo;
+            this.message = message;
+        }
+
+        public static ExecuteResult success(String orderNo) {
+            return new ExecuteResult(true, orderNo, null);
+        }
+
+        public static ExecuteResult failure(String message) {
+            return new ExecuteResult(false, null, message);
+        }
+
+        public boolean isSuccess() { return success; }
+        public String getOrderNo() { return orderNo; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return success ? "ExecuteResult{success, orderNo=" + orderNo + "}"
+                           : "ExecuteResult{failure, message=" + message + "}";
+        }
+    }
+}
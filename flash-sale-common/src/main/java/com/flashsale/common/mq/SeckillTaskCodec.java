@@ -0,0 +1,27 @@
+package com.flashsale.common.mq;
+
+/**
+ * 异步秒杀任务编解码器接口
+ * 通过配置 seckill.async.task-codec 选择实现：json（默认）或 compact（定长二进制）
+ * 切换实现前需先排空异步队列，两种格式互不兼容
+ * @author 21311
+ */
+public interface SeckillTaskCodec {
+
+    /**
+     * 编码任务
+     *
+     * @param taskWrapper 任务
+     * @return 可写入队列的字符串
+     */
+    String encode(SeckillTaskWrapper taskWrapper);
+
+    /**
+     * 解码任务
+     *
+     * @param payload 队列中的字符串
+     * @return 任务
+     * @throws IllegalArgumentException 格式错误时抛出
+     */
+    SeckillTaskWrapper decode(String payload);
+}
@@ -0,0 +1,94 @@
+package com.flashsale.common.mq;
+
+import java.util.List;
+
+/**
+ * 秒杀异步任务队列接口 - 异步处理器的存储后端
+ * 通过配置 seckill.async.queue-backend 选择实现：list（默认，Redis List）或 stream（Redis Stream消费组）
+ * @author 21311
+ */
+public interface SeckillTaskQueue {
+
+    /**
+     * 活跃队列集合：有待处理任务的商品ID
+     */
+    String ACTIVE_QUEUES_KEY = "seckill:async:active_queues";
+
+    /**
+     * 唤醒列表：商品队列由空变为非空时写入商品ID，处理线程阻塞等待
+     */
+    String WAKEUP_QUEUE_KEY = "seckill:async:wakeup";
+
+    /**
+     * 任务入队（去重、写入初始状态、登记活跃队列一次完成）
+     *
+     * @param productId 秒杀商品ID
+     * @param resultKey 任务结果key，已存在时视为重复任务
+     * @param serializedTask 序列化后的任务
+     * @return 是否入队成功，重复任务返回false
+     */
+    boolean enqueue(Long productId, String resultKey, String serializedTask);
+
+    /**
+     * 取出一批待处理任务
+     *
+     * @param productId 秒杀商品ID
+     * @param maxCount 最多取出的任务数
+     * @return 任务列表，处理完成后需调用 {@link #ack}
+     */
+    List<QueuedTask> poll(Long productId, int maxCount);
+
+    /**
+     * 确认任务已处理完成
+     *
+     * @param productId 秒杀商品ID
+     * @param tasks 已处理的任务
+     */
+    void ack(Long productId, List<QueuedTask> tasks);
+
+    /**
+     * 查询队列中的任务数（含已取出未确认的任务）
+     *
+     * @param productId 秒杀商品ID
+     * @return 任务数
+     */
+    long size(Long productId);
+
+    /**
+     * 队列为空时原子地注销活跃登记
+     *
+     * @param productId 秒杀商品ID
+     * @return 是否已注销，队列仍有任务时返回false
+     */
+    boolean deactivateIfEmpty(Long productId);
+
+    /**
+     * 队列中的任务
+     */
+    class QueuedTask {
+        private final String id;
+        private final String payload;
+        private final boolean redelivered;
+
+        public QueuedTask(String id, String payload) {
+            this(id, payload, false);
+        }
+
+        public QueuedTask(String id, String payload, boolean redelivered) {
+            this.id = id;
+            this.payload = payload;
+            this.redelivered = redelivered;
+        }
+
+        /**
+         * 后端内部的任务标识（Stream消息ID），List后端为null
+         */
+        public String getId() { return id; }
+        public String getPayload() { return payload; }
+
+        /**
+         * 是否为认领的超时未确认任务（可能已被宕机的消费者部分处理）
+         */
+        public boolean isRedelivered() { return redelivered; }
+    }
+}
@@ -0,0 +1,23 @@
+package com.flashsale.common.mq;
+
+import com.flashsale.common.dto.SeckillDTO;
+
+/**
+ * 异步秒杀任务包装器 - 队列中传输的任务
+ * @author 21311
+ */
+public class SeckillTaskWrapper {
+    private final String taskId;
+    private final SeckillDTO seckillDTO;
+    private final long createTime;
+
+    public SeckillTaskWrapper(String taskId, SeckillDTO seckillDTO, long createTime) {
+        this.taskId = taskId;
+        this.seckillDTO = seckillDTO;
+        this.createTime = createTime;
+    }
+
+    public String getTaskId() { return taskId; }
+    public SeckillDTO getSeckillDTO() { return seckillDTO; }
+    public long getCreateTime() { return createTime; }
+}
@@ -0,0 +1,231 @@
+package com.flashsale.common.mq;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于Redis Stream消费组的秒杀任务队列
+ * XREADGROUP批量读取，处理完成后XACK+XDEL；消费者宕机时未确认的任务超时后由XAUTOCLAIM认领重新处理
+ * 需要Redis 6.2及以上版本
+ * @author 21311
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "seckill.async.queue-backend", havingValue = "stream")
+public class StreamSeckillTaskQueue implements SeckillTaskQueue {
+
+    private static final String STREAM_PREFIX = "seckill:async:stream:";
+    private static final String CONSUMER_GROUP = "seckill-async-group";
+    private static final String TASK_FIELD = "task";
+
+    /**
+     * 未确认任务的超时时间，超过后视为消费者宕机，由其他消费者认领
+     */
+    private static final long PROCESSING_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * 同一商品两次认领检查的最小间隔，避免每次读取都多一次往返
+     */
+    private static final long RECLAIM_INTERVAL_MILLIS = 5_000;
+
+    /**
+     * 入队脚本，Stream不存在时同时创建消费组（从头消费，避免丢失创建前写入的任务）
+     * KEYS[1]-任务Stream，KEYS[2]-任务结果，KEYS[3]-活跃队列集合，KEYS[4]-唤醒列表
+     * ARGV[1]-序列化任务，ARGV[2]-商品ID，ARGV[3]-消费组，ARGV[4]-任务字段名
+     */
+    private static final DefaultRedisScript<Long> ENQUEUE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[2]) == 1 then " +
+        "    return 0 " +
+        "end " +
+        "if redis.call('exists', KEYS[1]) == 0 then " +
+        "    redis.call('xgroup', 'create', KEYS[1], ARGV[3], '0', 'MKSTREAM') " +
+        "end " +
+        "redis.call('xadd', KEYS[1], '*', ARGV[4], ARGV[1]) " +
+        "redis.call('setex', KEYS[2], 1800, '\"QUEUED\"') " +
+        "if redis.call('sadd', KEYS[3], ARGV[2]) == 1 then " +
+        "    redis.call('lpush', KEYS[4], ARGV[2]) " +
+        "end " +
+        "return 1",
+        Long.class);
+
+    /**
+     * 认领超时未确认的任务，返回扁平列表 {id1, task1, id2, task2, ...}
+     * 已被删除的条目（Redis 6.2返回空字段）直接确认掉
+     * KEYS[1]-任务Stream；ARGV[1]-消费组，ARGV[2]-消费者，ARGV[3]-最小空闲毫秒，ARGV[4]-数量，ARGV[5]-任务字段名
+     */
+    private static final DefaultRedisScript<List> RECLAIM_SCRIPT = new DefaultRedisScript<>(
+        "local claimed = redis.call('xautoclaim', KEYS[1], ARGV[1], ARGV[2], ARGV[3], '0-0', 'COUNT', ARGV[4]) " +
+        "local result = {} " +
+        "for _, entry in ipairs(claimed[2]) do " +
+        "    local fields = entry[2] " +
+        "    local task = nil " +
+        "    if fields then " +
+        "        for i = 1, #fields, 2 do " +
+        "            if fields[i] == ARGV[5] then task = fields[i + 1] end " +
+        "        end " +
+        "    end " +
+        "    if task then " +
+        "        table.insert(result, entry[1]) " +
+        "        table.insert(result, task) " +
+        "    else " +
+        "        redis.call('xack', KEYS[1], ARGV[1], entry[1]) " +
+        "    end " +
+        "end " +
+        "return result",
+        List.class);
+
+    /**
+     * 确认并删除任务：KEYS[1]-任务Stream；ARGV[1]-消费组，ARGV[2..]-消息ID
+     */
+    private static final DefaultRedisScript<Long> ACK_SCRIPT = new DefaultRedisScript<>(
+        "local ids = {} " +
+        "for i = 2, #ARGV do ids[#ids + 1] = ARGV[i] end " +
+        "redis.call('xack', KEYS[1], ARGV[1], unpack(ids)) " +
+        "return redis.call('xdel', KEYS[1], unpack(ids))",
+        Long.class);
+
+    /**
+     * 队列为空时注销活跃登记：KEYS[1]-任务Stream，KEYS[2]-活跃队列集合；ARGV[1]-商品ID
+     * 已确认的任务会被删除，XLEN包含未确认的任务，因此不会在任务未完成时注销
+     */
+    private static final DefaultRedisScript<Long> DEACTIVATE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('xlen', KEYS[1]) == 0 then " +
+        "    redis.call('srem', KEYS[2], ARGV[1]) " +
+        "    return 1 " +
+        "end " +
+        "return 0",
+        Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final String consumerName = ManagementFactory.getRuntimeMXBean().getName();
+
+    // 各商品上次认领检查的时间
+    private final Map<Long, Long> lastReclaimTime = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean enqueue(Long productId, String resultKey, String serializedTask) {
+        Long result = stringRedisTemplate.execute(ENQUEUE_SCRIPT,
+            Arrays.asList(streamKey(productId), resultKey, ACTIVE_QUEUES_KEY, WAKEUP_QUEUE_KEY),
+            serializedTask, String.valueOf(productId), CONSUMER_GROUP, TASK_FIELD);
+        return result != null && result == 1;
+    }
+
+    @Override
+    public List<QueuedTask> poll(Long productId, int maxCount) {
+        String streamKey = streamKey(productId);
+
+        // 1. 优先认领宕机消费者遗留的任务
+        List<QueuedTask> tasks = reclaim(productId, streamKey, maxCount);
+        if (!tasks.isEmpty()) {
+            return tasks;
+        }
+
+        // 2. 读取新任务（read的偏移量参数为泛型可变参数，只传一个偏移量，不存在堆污染）
+        @SuppressWarnings("unchecked")
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+            Consumer.from(CONSUMER_GROUP, consumerName),
+            StreamReadOptions.empty().count(maxCount),
+            StreamOffset.create(streamKey, ReadOffset.lastConsumed()));
+        if (records == null || records.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        tasks = new ArrayList<>(records.size());
+        List<String> emptyIds = new ArrayList<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            Object task = record.getValue().get(TASK_FIELD);
+            if (task != null) {
+                tasks.add(new QueuedTask(record.getId().getValue(), task.toString()));
+            } else {
+                emptyIds.add(record.getId().getValue());
+            }
+        }
+        if (!emptyIds.isEmpty()) {
+            acknowledge(streamKey, emptyIds);
+        }
+        return tasks;
+    }
+
+    @Override
+    public void ack(Long productId, List<QueuedTask> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(tasks.size());
+        for (QueuedTask task : tasks) {
+            ids.add(task.getId());
+        }
+        acknowledge(streamKey(productId), ids);
+    }
+
+    @Override
+    public long size(Long productId) {
+        Long size = stringRedisTemplate.opsForStream().size(streamKey(productId));
+        return size != null ? size : 0;
+    }
+
+    @Override
+    public boolean deactivateIfEmpty(Long productId) {
+        Long removed = stringRedisTemplate.execute(DEACTIVATE_SCRIPT,
+            Arrays.asList(streamKey(productId), ACTIVE_QUEUES_KEY), String.valueOf(productId));
+        return removed != null && removed == 1;
+    }
+
+    /**
+     * 认领超时未确认的任务（按商品限频）
+     */
+    @SuppressWarnings("unchecked")
+    private List<QueuedTask> reclaim(Long productId, String streamKey, int maxCount) {
+        long now = System.currentTimeMillis();
+        Long lastTime = lastReclaimTime.get(productId);
+        if (lastTime != null && now - lastTime < RECLAIM_INTERVAL_MILLIS) {
+            return Collections.emptyList();
+        }
+        lastReclaimTime.put(productId, now);
+
+        List<?> claimed = stringRedisTemplate.execute(RECLAIM_SCRIPT,
+            Collections.singletonList(streamKey),
+            CONSUMER_GROUP, consumerName, String.valueOf(PROCESSING_TIMEOUT_MILLIS),
+            String.valueOf(maxCount), TASK_FIELD);
+        if (claimed == null || claimed.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<QueuedTask> tasks = new ArrayList<>(claimed.size() / 2);
+        for (int i = 0; i + 1 < claimed.size(); i += 2) {
+            tasks.add(new QueuedTask(claimed.get(i).toString(), claimed.get(i + 1).toString(), true));
+        }
+        log.warn("认领超时未确认的秒杀任务: productId={}, count={}", productId, tasks.size());
+        return tasks;
+    }
+
+    private void acknowledge(String streamKey, List<String> ids) {
+        List<String> args = new ArrayList<>(ids.size() + 1);
+        args.add(CONSUMER_GROUP);
+        args.addAll(ids);
+        stringRedisTemplate.execute(ACK_SCRIPT, Collections.singletonList(streamKey), args.toArray());
+    }
+
+    private String streamKey(Long productId) {
+        return STREAM_PREFIX + productId;
+    }
+}
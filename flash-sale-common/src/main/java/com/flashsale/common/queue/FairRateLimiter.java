@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Component;
 
 import java.util.Collections;
@@ -26,6 +27,22 @@ public class FairRateLimiter {
     private static final String PROCESSING_PREFIX = "fair_rate_limit:processing:";
     private static final String USER_SEQUENCE_PREFIX = "fair_rate_limit:sequence:";
     private static final String SYSTEM_COUNTER_PREFIX = "fair_rate_limit:counter:";
+    private static final String ADMITTED_PREFIX = "fair_rate_limit:admitted:";
+
+    /**
+     * Redis发布订阅频道：排队用户获准进入处理状态的通知，消息格式为"资源ID:用户ID"
+     */
+    public static final String ADMISSION_CHANNEL = "fair_rate_limit:admission";
+
+    /**
+     * 获准进入的用户需在该时间内重新提交请求
+     */
+    private static final int ADMISSION_TIMEOUT_SECONDS = 60;
+
+    /**
+     * 脚本参数和返回值按纯字符串处理（默认的Jackson序列化会给字符串加引号，导致tonumber失败）
+     */
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
     
     /**
      * 申请进入限流队列
@@ -60,10 +77,19 @@ public class FairRateLimiter {
             "local currentTime = tonumber(ARGV[5]) " +
             "local sequence = tonumber(ARGV[6]) " +
             
-            // 检查用户是否已经在队列或处理中
+            "local admittedKey = KEYS[4] .. userId " +
+            
+            // 检查用户是否已经在队列或处理中（排队后获准进入的用户可以凭准入标记进入处理）
             "local userInQueue = redis.call('zscore', queueKey, userId) " +
             "local userInProcessing = redis.call('sismember', processingKey, userId) " +
-            "if userInQueue or userInProcessing == 1 then " +
+            "if userInProcessing == 1 then " +
+            "    if redis.call('del', admittedKey) == 1 then " +
+            "        redis.call('setex', userSequenceKey .. userId, queueTimeout, sequence) " +
+            "        return 'IMMEDIATE:' .. queueToken " +
+            "    end " +
+            "    return nil " +
+            "end " +
+            "if userInQueue then " +
             "    return nil " +
             "end " +
             
@@ -86,8 +112,10 @@ public class FairRateLimiter {
         DefaultRedisScript<String> script = new DefaultRedisScript<>(luaScript, String.class);
         String userSequenceKey = USER_SEQUENCE_PREFIX + resourceId + ":";
         
-        String result = redisTemplate.execute(script, 
-            java.util.Arrays.asList(queueKey, processingKey, userSequenceKey),
+        String admittedKey = ADMITTED_PREFIX + resourceId + ":";
+        
+        String result = redisTemplate.execute(script, STRING_SERIALIZER, STRING_SERIALIZER,
+            java.util.Arrays.asList(queueKey, processingKey, userSequenceKey, admittedKey),
             queueToken, userId.toString(), String.valueOf(maxConcurrent), 
             String.valueOf(queueTimeout), String.valueOf(System.currentTimeMillis()), 
             String.valueOf(sequence));
@@ -115,8 +143,8 @@ public class FairRateLimiter {
         
         // 检查是否在处理中
         if (Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(processingKey, userId))) {
-            String sequence = (String) redisTemplate.opsForValue().get(userSequenceKey);
-            return new QueueStatus("PROCESSING", 0, sequence != null ? Long.parseLong(sequence) : 0);
+            Object sequence = redisTemplate.opsForValue().get(userSequenceKey);
+            return new QueueStatus("PROCESSING", 0, sequence != null ? Long.parseLong(sequence.toString()) : 0);
         }
         
         // 检查队列位置
@@ -147,6 +175,7 @@ public class FairRateLimiter {
             "local userSequenceKey = KEYS[3] " +
             "local userId = ARGV[1] " +
             "local success = ARGV[2] " +
+            "local admittedPrefix = KEYS[4] " +
             
             // 从处理集合中移除用户
             "redis.call('srem', processingKey, userId) " +
@@ -158,19 +187,21 @@ public class FairRateLimiter {
             "    local nextUserId = nextUser[1] " +
             "    redis.call('zrem', queueKey, nextUserId) " +
             "    redis.call('sadd', processingKey, nextUserId) " +
+            "    redis.call('setex', admittedPrefix .. nextUserId, ARGV[3], 1) " +
             "    return nextUserId " +
             "end " +
             "return nil";
         
         DefaultRedisScript<String> script = new DefaultRedisScript<>(luaScript, String.class);
-        String nextUserId = redisTemplate.execute(script,
-            java.util.Arrays.asList(queueKey, processingKey, userSequenceKey),
-            userId.toString(), success ? "1" : "0");
+        String admittedKey = ADMITTED_PREFIX + resourceId + ":";
+        String nextUserId = redisTemplate.execute(script, STRING_SERIALIZER, STRING_SERIALIZER,
+            java.util.Arrays.asList(queueKey, processingKey, userSequenceKey, admittedKey),
+            userId.toString(), success ? "1" : "0", String.valueOf(ADMISSION_TIMEOUT_SECONDS));
         
         if (nextUserId != null) {
             log.info("队列轮转: 用户{}完成处理，用户{}进入处理状态, resourceId={}", 
                     userId, nextUserId, resourceId);
-            // 这里可以发送通知给下一个用户
+            // 通知下一个用户（推送给等待中的连接）
             notifyNextUser(Long.parseLong(nextUserId), resourceId);
         }
         
@@ -194,11 +225,16 @@ public class FairRateLimiter {
     
     /**
      * 通知下一个用户可以开始处理
+     * 通过Redis发布订阅广播，持有该用户等待连接的节点负责唤醒
      */
     private void notifyNextUser(Long userId, Long resourceId) {
-        // 这里可以通过WebSocket、消息队列等方式通知用户
-        // 暂时只记录日志
-        log.info("通知用户可以开始处理: userId={}, resourceId={}", userId, resourceId);
+        try {
+            redisTemplate.convertAndSend(ADMISSION_CHANNEL, resourceId + ":" + userId);
+            log.info("通知用户可以开始处理: userId={}, resourceId={}", userId, resourceId);
+        } catch (Exception e) {
+            // 通知失败时用户仍可通过查询队列状态得知已获准进入
+            log.error("通知用户失败: userId={}, resourceId={}", userId, resourceId, e);
+        }
     }
     
     /**
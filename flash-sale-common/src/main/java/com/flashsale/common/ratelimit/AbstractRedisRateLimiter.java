@@ -0,0 +1,81 @@
+package com.flashsale.common.ratelimit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 基于Redis Lua脚本的限流器基类
+ * 脚本参数约定：ARGV[1]-随机数，ARGV[2i]、ARGV[2i+1]-第i个规则的数量和窗口毫秒数
+ * 时间取Redis服务器时间，避免各节点时钟不一致
+ * @author 21311
+ */
+public abstract class AbstractRedisRateLimiter implements RateLimiter {
+
+    @Autowired
+    protected RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 取Redis服务器当前毫秒时间的Lua片段
+     */
+    protected static final String NOW_MILLIS =
+        "local time = redis.call('time') " +
+        "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) ";
+
+    @Override
+    public RateLimitResult tryAcquire(List<RateLimitRule> rules) {
+        if (rules == null || rules.isEmpty()) {
+            return new RateLimitResult(true, -1, new long[0]);
+        }
+        List<?> reply = execute(script(), rules);
+        return RateLimitResult.fromReply(reply, rules.size());
+    }
+
+    @Override
+    public long[] usage(List<RateLimitRule> rules) {
+        if (rules == null || rules.isEmpty()) {
+            return new long[0];
+        }
+        List<?> reply = execute(usageScript(), rules);
+        if (reply == null || reply.size() != rules.size()) {
+            throw new IllegalStateException("限流额度查询脚本返回值异常: " + reply);
+        }
+        long[] used = new long[rules.size()];
+        for (int i = 0; i < used.length; i++) {
+            used[i] = ((Number) reply.get(i)).longValue();
+        }
+        return used;
+    }
+
+    private List<?> execute(DefaultRedisScript<List> script, List<RateLimitRule> rules) {
+        List<String> keys = new ArrayList<>(rules.size());
+        List<Object> args = new ArrayList<>(rules.size() * 2 + 1);
+        // 参数以数值类型传入，经Jackson序列化后为纯数字
+        args.add(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE));
+        for (RateLimitRule rule : rules) {
+            keys.add(keyPrefix() + rule.getKey());
+            args.add((long) rule.getLimit());
+            args.add(rule.getWindowSeconds() * 1000L);
+        }
+        return redisTemplate.execute(script, keys, args.toArray());
+    }
+
+    /**
+     * 限流key前缀，不同算法使用不同的数据结构，前缀不能相同
+     */
+    protected abstract String keyPrefix();
+
+    /**
+     * 限流脚本，返回{是否允许, 被拒绝的规则下标, 各规则剩余额度...}
+     */
+    protected abstract DefaultRedisScript<List> script();
+
+    /**
+     * 只读的额度查询脚本，参数与限流脚本相同，返回{各规则已使用额度...}
+     */
+    protected abstract DefaultRedisScript<List> usageScript();
+}
@@ -0,0 +1,54 @@
+package com.flashsale.common.ratelimit;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 限流检查结果
+ * @author 21311
+ */
+public class RateLimitResult {
+
+    private final boolean allowed;
+    private final int rejectedIndex;
+    private final long[] remaining;
+
+    public RateLimitResult(boolean allowed, int rejectedIndex, long[] remaining) {
+        this.allowed = allowed;
+        this.rejectedIndex = rejectedIndex;
+        this.remaining = remaining;
+    }
+
+    /**
+     * 解析Lua脚本返回值：{是否允许, 被拒绝的规则下标, 各规则剩余额度...}
+     */
+    static RateLimitResult fromReply(List<?> reply, int ruleCount) {
+        if (reply == null || reply.size() < 2) {
+            throw new IllegalStateException("限流脚本返回值异常: " + reply);
+        }
+        long[] remaining = new long[ruleCount];
+        for (int i = 0; i < ruleCount && i + 2 < reply.size(); i++) {
+            remaining[i] = ((Number) reply.get(i + 2)).longValue();
+        }
+        return new RateLimitResult(((Number) reply.get(0)).longValue() == 1,
+                ((Number) reply.get(1)).intValue(), remaining);
+    }
+
+    public boolean isAllowed() { return allowed; }
+
+    /**
+     * 被拒绝的规则下标，通过时为-1
+     */
+    public int getRejectedIndex() { return rejectedIndex; }
+
+    /**
+     * 各规则的剩余额度
+     */
+    public long[] getRemaining() { return remaining; }
+
+    @Override
+    public String toString() {
+        return String.format("RateLimitResult{allowed=%s, rejectedIndex=%d, remaining=%s}",
+                allowed, rejectedIndex, Arrays.toString(remaining));
+    }
+}
@@ -0,0 +1,40 @@
+package com.flashsale.common.ratelimit;
+
+/**
+ * 限流规则
+ * @author 21311
+ */
+public class RateLimitRule {
+
+    private final String key;
+    private final int limit;
+    private final int windowSeconds;
+
+    private RateLimitRule(String key, int limit, int windowSeconds) {
+        if (limit <= 0 || windowSeconds <= 0) {
+            throw new IllegalArgumentException("限流规则的数量和窗口必须大于0: limit=" + limit + ", window=" + windowSeconds);
+        }
+        this.key = key;
+        this.limit = limit;
+        this.windowSeconds = windowSeconds;
+    }
+
+    /**
+     * 创建限流规则
+     * @param key 限流key
+     * @param limit 窗口内允许的请求数（令牌桶为桶容量）
+     * @param windowSeconds 窗口大小（秒），令牌桶在一个窗口内补满
+     */
+    public static RateLimitRule of(String key, int limit, int windowSeconds) {
+        return new RateLimitRule(key, limit, windowSeconds);
+    }
+
+    public String getKey() { return key; }
+    public int getLimit() { return limit; }
+    public int getWindowSeconds() { return windowSeconds; }
+
+    @Override
+    public String toString() {
+        return String.format("RateLimitRule{key='%s', limit=%d, window=%ds}", key, limit, windowSeconds);
+    }
+}
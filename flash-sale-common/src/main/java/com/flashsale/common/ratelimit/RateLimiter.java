@@ -0,0 +1,47 @@
+package com.flashsale.common.ratelimit;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 限流器接口
+ * 每次检查为一次原子的Lua调用；多个规则（如用户、IP、设备）可在一次调用中同时检查，
+ * 任一规则超限时所有规则都不计数
+ * @author 21311
+ */
+public interface RateLimiter {
+
+    /**
+     * 同时检查多个限流规则
+     * @param rules 限流规则
+     * @return 检查结果
+     */
+    RateLimitResult tryAcquire(List<RateLimitRule> rules);
+
+    /**
+     * 同时检查多个限流规则
+     * @param rules 限流规则
+     * @return 检查结果
+     */
+    default RateLimitResult tryAcquire(RateLimitRule... rules) {
+        return tryAcquire(Arrays.asList(rules));
+    }
+
+    /**
+     * 检查单个限流规则
+     * @param key 限流key
+     * @param limit 窗口内允许的请求数
+     * @param windowSeconds 窗口大小（秒）
+     * @return 是否允许通过
+     */
+    default boolean tryAcquire(String key, int limit, int windowSeconds) {
+        return tryAcquire(RateLimitRule.of(key, limit, windowSeconds)).isAllowed();
+    }
+
+    /**
+     * 查询各规则当前已使用的额度（只读，不计数）
+     * @param rules 限流规则
+     * @return 与规则一一对应的已使用额度
+     */
+    long[] usage(List<RateLimitRule> rules);
+}
@@ -0,0 +1,68 @@
+package com.flashsale.common.ratelimit;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 滑动窗口日志限流器
+ * 每个请求在ZSET中记录一条时间戳，窗口边界精确，内存占用与窗口内请求数成正比，适合小限额
+ * @author 21311
+ */
+@Component
+public class SlidingWindowLogRateLimiter extends AbstractRedisRateLimiter {
+
+    private static final String KEY_PREFIX = "rate_limit:log:";
+
+    private static final DefaultRedisScript<List> SCRIPT = new DefaultRedisScript<>(
+        NOW_MILLIS +
+        "local n = #KEYS " +
+        "local counts = {} " +
+        "for i = 1, n do " +
+        "    local limit = tonumber(ARGV[2 * i]) " +
+        "    local window = tonumber(ARGV[2 * i + 1]) " +
+        "    redis.call('zremrangebyscore', KEYS[i], 0, now - window) " +
+        "    local count = redis.call('zcard', KEYS[i]) " +
+        "    if count >= limit then " +
+        "        return {0, i - 1} " +
+        "    end " +
+        "    counts[i] = count " +
+        "end " +
+        "local result = {1, -1} " +
+        "for i = 1, n do " +
+        "    redis.call('zadd', KEYS[i], now, now .. ':' .. ARGV[1]) " +
+        "    redis.call('pexpire', KEYS[i], ARGV[2 * i + 1]) " +
+        "    result[i + 2] = tonumber(ARGV[2 * i]) - counts[i] - 1 " +
+        "end " +
+        "return result",
+        List.class);
+
+    /**
+     * 额度查询：窗口内（不含左边界，与限流脚本的清理范围一致）的记录数
+     */
+    private static final DefaultRedisScript<List> USAGE_SCRIPT = new DefaultRedisScript<>(
+        NOW_MILLIS +
+        "local result = {} " +
+        "for i = 1, #KEYS do " +
+        "    local window = tonumber(ARGV[2 * i + 1]) " +
+        "    result[i] = redis.call('zcount', KEYS[i], '(' .. (now - window), '+inf') " +
+        "end " +
+        "return result",
+        List.class);
+
+    @Override
+    protected String keyPrefix() {
+        return KEY_PREFIX;
+    }
+
+    @Override
+    protected DefaultRedisScript<List> script() {
+        return SCRIPT;
+    }
+
+    @Override
+    protected DefaultRedisScript<List> usageScript() {
+        return USAGE_SCRIPT;
+    }
+}
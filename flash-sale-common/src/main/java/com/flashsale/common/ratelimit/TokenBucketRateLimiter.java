@@ -0,0 +1,86 @@
+package com.flashsale.common.ratelimit;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 令牌桶限流器
+ * 桶容量为规则数量，一个窗口内匀速补满，允许短时突发同时限制平均速率
+ * @author 21311
+ */
+@Component
+public class TokenBucketRateLimiter extends AbstractRedisRateLimiter {
+
+    private static final String KEY_PREFIX = "rate_limit:bucket:";
+
+    /**
+     * HASH字段：t-剩余令牌数，ts-上次补充时间
+     */
+    private static final DefaultRedisScript<List> SCRIPT = new DefaultRedisScript<>(
+        NOW_MILLIS +
+        "local n = #KEYS " +
+        "local tokens = {} " +
+        "for i = 1, n do " +
+        "    local capacity = tonumber(ARGV[2 * i]) " +
+        "    local window = tonumber(ARGV[2 * i + 1]) " +
+        "    local state = redis.call('hmget', KEYS[i], 't', 'ts') " +
+        "    local t = tonumber(state[1]) " +
+        "    local ts = tonumber(state[2]) " +
+        "    if t == nil or ts == nil then " +
+        "        t = capacity " +
+        "    else " +
+        "        t = math.min(capacity, t + math.max(0, now - ts) * capacity / window) " +
+        "    end " +
+        "    if t < 1 then " +
+        "        return {0, i - 1} " +
+        "    end " +
+        "    tokens[i] = t " +
+        "end " +
+        "local result = {1, -1} " +
+        "for i = 1, n do " +
+        "    redis.call('hset', KEYS[i], 't', tostring(tokens[i] - 1), 'ts', now) " +
+        "    redis.call('pexpire', KEYS[i], ARGV[2 * i + 1]) " +
+        "    result[i + 2] = math.floor(tokens[i] - 1) " +
+        "end " +
+        "return result",
+        List.class);
+
+    /**
+     * 额度查询：桶容量减去按当前时间补充后的剩余令牌数，未补满的令牌不可用，向上取整
+     */
+    private static final DefaultRedisScript<List> USAGE_SCRIPT = new DefaultRedisScript<>(
+        NOW_MILLIS +
+        "local result = {} " +
+        "for i = 1, #KEYS do " +
+        "    local capacity = tonumber(ARGV[2 * i]) " +
+        "    local window = tonumber(ARGV[2 * i + 1]) " +
+        "    local state = redis.call('hmget', KEYS[i], 't', 'ts') " +
+        "    local t = tonumber(state[1]) " +
+        "    local ts = tonumber(state[2]) " +
+        "    if t == nil or ts == nil then " +
+        "        result[i] = 0 " +
+        "    else " +
+        "        t = math.min(capacity, t + math.max(0, now - ts) * capacity / window) " +
+        "        result[i] = math.ceil(capacity - t) " +
+        "    end " +
+        "end " +
+        "return result",
+        List.class);
+
+    @Override
+    protected String keyPrefix() {
+        return KEY_PREFIX;
+    }
+
+    @Override
+    protected DefaultRedisScript<List> script() {
+        return SCRIPT;
+    }
+
+    @Override
+    protected DefaultRedisScript<List> usageScript() {
+        return USAGE_SCRIPT;
+    }
+}
@@ -1,10 +1,17 @@
 package com.flashsale.common.security;
 
+import com.flashsale.common.ratelimit.RateLimitResult;
+import com.flashsale.common.ratelimit.RateLimitRule;
+import com.flashsale.common.ratelimit.RateLimiter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -17,13 +24,52 @@ public class AntiScalpingService {
     
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RateLimiter rateLimiter;
     
-    private static final String USER_REQUEST_COUNT_PREFIX = "anti_scalping:user_count:";
-    private static final String IP_REQUEST_COUNT_PREFIX = "anti_scalping:ip_count:";
-    private static final String DEVICE_REQUEST_COUNT_PREFIX = "anti_scalping:device_count:";
+    private static final String USER_FREQUENCY_KEY = "anti_scalping:user:";
+    private static final String IP_FREQUENCY_KEY = "anti_scalping:ip:";
+    private static final String DEVICE_FREQUENCY_KEY = "anti_scalping:device:";
     private static final String USER_BEHAVIOR_PREFIX = "anti_scalping:behavior:";
     private static final String BLACKLIST_PREFIX = "blacklist:";
+
+    // 用户/IP/设备维度每分钟最多请求次数（由限流器计数）
+    private static final int USER_MAX_REQUESTS = 3;
+    private static final int IP_MAX_REQUESTS = 10;
+    private static final int DEVICE_MAX_REQUESTS = 5;
+    private static final int FREQUENCY_WINDOW_SECONDS = 60;
+
+    // 行为记录保留5分钟，5分钟内操作超过10次可能是机器人
+    private static final int BEHAVIOR_WINDOW_SECONDS = 300;
+    private static final int BEHAVIOR_MAX_ACTIONS = 10;
+
+    /**
+     * 频率规则按用户、IP、设备的顺序传给限流器，被拒绝的规则下标对应的检查规则
+     */
+    private static final LegitimacyResult.Rule[] FREQUENCY_RULES = {
+        LegitimacyResult.Rule.USER_FREQUENCY, LegitimacyResult.Rule.IP_FREQUENCY, LegitimacyResult.Rule.DEVICE_FREQUENCY
+    };
     
+    /**
+     * 黑名单和行为模式检查脚本（一次往返）
+     * KEYS[1..3]-用户/IP/设备黑名单key，KEYS[4]-行为记录key
+     * ARGV[1]-是否记录行为（频率和信用度都已通过），ARGV[2]-当前时间戳，ARGV[3]-行为窗口秒数
+     * 返回：{是否命中黑名单, 行为次数}
+     */
+    private static final DefaultRedisScript<List> CHECK_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[1]) == 1 or redis.call('exists', KEYS[2]) == 1 " +
+        "        or redis.call('exists', KEYS[3]) == 1 then " +
+        "    return {1, 0} " +
+        "end " +
+        "if ARGV[1] ~= '1' then " +
+        "    return {0, 0} " +
+        "end " +
+        "redis.call('lpush', KEYS[4], ARGV[2]) " +
+        "redis.call('expire', KEYS[4], ARGV[3]) " +
+        "return {0, redis.call('llen', KEYS[4])}",
+        List.class);
+
     /**
      * 检查用户是否为可疑黄牛
      * @param userId 用户ID
@@ -36,87 +82,80 @@ public class AntiScalpingService {
      */
     public boolean checkUserLegitimacy(Long userId, String userIp, String deviceFingerprint, 
                                      Integer userLevel, Integer creditScore, Boolean isVerified) {
-        // 1. 检查黑名单
-        if (isInBlacklist(userId, userIp, deviceFingerprint)) {
-            log.warn("用户在黑名单中: userId={}, ip={}", userId, userIp);
-            return false;
-        }
-        
-        // 2. 检查请求频率
-        if (!checkRequestFrequency(userId, userIp, deviceFingerprint)) {
-            log.warn("用户请求频率异常: userId={}, ip={}", userId, userIp);
-            return false;
-        }
-        
-        // 3. 检查用户信用度
-        if (!checkUserCredibility(userLevel, creditScore, isVerified)) {
-            log.warn("用户信用度不足: userId={}, level={}, score={}, verified={}", 
-                    userId, userLevel, creditScore, isVerified);
-            return false;
-        }
-        
-        // 4. 检查行为模式
-        if (!checkBehaviorPattern(userId)) {
-            log.warn("用户行为模式异常: userId={}", userId);
-            return false;
-        }
-        
-        return true;
+        return checkUserLegitimacyDetail(userId, userIp, deviceFingerprint, userLevel, creditScore, isVerified).isPassed();
     }
-    
-    /**
-     * 检查黑名单
-     */
-    private boolean isInBlacklist(Long userId, String userIp, String deviceFingerprint) {
-        String userKey = BLACKLIST_PREFIX + "user:" + userId;
-        String ipKey = BLACKLIST_PREFIX + "ip:" + userIp;
-        String deviceKey = BLACKLIST_PREFIX + "device:" + deviceFingerprint;
-        
-        return Boolean.TRUE.equals(redisTemplate.hasKey(userKey)) ||
-               Boolean.TRUE.equals(redisTemplate.hasKey(ipKey)) ||
-               Boolean.TRUE.equals(redisTemplate.hasKey(deviceKey));
-    }
-    
+
     /**
-     * 检查请求频率
+     * 检查用户是否为可疑黄牛，返回命中的规则和当前计数
+     * 请求频率由限流器检查（任一维度超限时都不计数），黑名单和行为模式在一个Lua脚本中完成；
+     * 规则优先级为黑名单、频率、信用度、行为模式，频率检查在黑名单之前执行，黑名单中的请求同样计入频率
      */
-    private boolean checkRequestFrequency(Long userId, String userIp, String deviceFingerprint) {
-        // 用户维度：每分钟最多3次请求
-        if (!checkAndIncrementCount(USER_REQUEST_COUNT_PREFIX + userId, 3, 60)) {
-            return false;
+    public LegitimacyResult checkUserLegitimacyDetail(Long userId, String userIp, String deviceFingerprint,
+                                                      Integer userLevel, Integer creditScore, Boolean isVerified) {
+        boolean credible = checkUserCredibility(userLevel, creditScore, isVerified);
+
+        List<RateLimitRule> rules = frequencyRules(userId, userIp, deviceFingerprint);
+        RateLimitResult frequency = rateLimiter.tryAcquire(rules);
+
+        List<String> keys = Arrays.asList(
+            BLACKLIST_PREFIX + "user:" + userId,
+            BLACKLIST_PREFIX + "ip:" + userIp,
+            BLACKLIST_PREFIX + "device:" + deviceFingerprint,
+            USER_BEHAVIOR_PREFIX + userId);
+        // 参数以数值类型传入，经Jackson序列化后为纯数字
+        List<?> reply = redisTemplate.execute(CHECK_SCRIPT, keys,
+            frequency.isAllowed() && credible ? 1 : 0, System.currentTimeMillis(), BEHAVIOR_WINDOW_SECONDS);
+        boolean blacklisted = reply != null && reply.size() == 2 && ((Number) reply.get(0)).longValue() == 1;
+        long behavior = reply != null && reply.size() == 2 ? ((Number) reply.get(1)).longValue() : 0;
+
+        // 计数为含本次请求的已用额度；频率超限时只记录超限的维度，值为其上限
+        long[] counts = new long[FREQUENCY_RULES.length];
+        for (int i = 0; i < rules.size(); i++) {
+            if (frequency.isAllowed()) {
+                counts[i] = rules.get(i).getLimit() - frequency.getRemaining()[i];
+            } else if (i == frequency.getRejectedIndex()) {
+                counts[i] = rules.get(i).getLimit();
+            }
         }
-        
-        // IP维度：每分钟最多10次请求
-        if (!checkAndIncrementCount(IP_REQUEST_COUNT_PREFIX + userIp, 10, 60)) {
-            return false;
+
+        LegitimacyResult.Rule rule;
+        if (blacklisted) {
+            rule = LegitimacyResult.Rule.BLACKLIST;
+        } else if (!frequency.isAllowed()) {
+            rule = FREQUENCY_RULES[frequency.getRejectedIndex()];
+        } else if (!credible) {
+            rule = LegitimacyResult.Rule.CREDIBILITY;
+        } else if (behavior > BEHAVIOR_MAX_ACTIONS) {
+            rule = LegitimacyResult.Rule.BEHAVIOR;
+        } else {
+            rule = LegitimacyResult.Rule.PASSED;
         }
-        
-        // 设备维度：每分钟最多5次请求
-        if (deviceFingerprint != null) {
-            if (!checkAndIncrementCount(DEVICE_REQUEST_COUNT_PREFIX + deviceFingerprint, 5, 60)) {
-                return false;
-            }
+
+        LegitimacyResult result = new LegitimacyResult(rule, counts[0], counts[1], counts[2], behavior);
+        switch (result.getRule()) {
+            case BLACKLIST -> log.warn("用户在黑名单中: userId={}, ip={}", userId, userIp);
+            case USER_FREQUENCY, IP_FREQUENCY, DEVICE_FREQUENCY ->
+                log.warn("用户请求频率异常: userId={}, ip={}, result={}", userId, userIp, result);
+            case CREDIBILITY -> log.warn("用户信用度不足: userId={}, level={}, score={}, verified={}",
+                userId, userLevel, creditScore, isVerified);
+            case BEHAVIOR -> log.warn("用户行为模式异常: userId={}, result={}", userId, result);
+            default -> { }
         }
-        
-        return true;
+        return result;
     }
-    
+
     /**
-     * 检查并递增计数
+     * 用户、IP、设备三个维度的频率规则，没有设备指纹时不检查设备维度
      */
-    private boolean checkAndIncrementCount(String key, int maxCount, int windowSeconds) {
-        Long currentCount = redisTemplate.opsForValue().increment(key);
-        
-        if (currentCount != null) {
-            if (currentCount == 1) {
-                // 首次访问，设置过期时间
-                redisTemplate.expire(key, windowSeconds, TimeUnit.SECONDS);
-            }
-            
-            return currentCount <= maxCount;
+    private List<RateLimitRule> frequencyRules(Long userId, String userIp, String deviceFingerprint) {
+        List<RateLimitRule> rules = new ArrayList<>(FREQUENCY_RULES.length);
+        rules.add(RateLimitRule.of(USER_FREQUENCY_KEY + userId, USER_MAX_REQUESTS, FREQUENCY_WINDOW_SECONDS));
+        rules.add(RateLimitRule.of(IP_FREQUENCY_KEY + userIp, IP_MAX_REQUESTS, FREQUENCY_WINDOW_SECONDS));
+        if (deviceFingerprint != null) {
+            rules.add(RateLimitRule.of(DEVICE_FREQUENCY_KEY + deviceFingerprint, DEVICE_MAX_REQUESTS,
+                FREQUENCY_WINDOW_SECONDS));
         }
-        
-        return true;
+        return rules;
     }
     
     /**
@@ -142,27 +181,6 @@ public class AntiScalpingService {
         return true;
     }
     
-    /**
-     * 检查行为模式
-     */
-    private boolean checkBehaviorPattern(Long userId) {
-        String behaviorKey = USER_BEHAVIOR_PREFIX + userId;
-        
-        // 记录用户行为时间戳
-        Long currentTime = System.currentTimeMillis();
-        redisTemplate.opsForList().leftPush(behaviorKey, currentTime);
-        redisTemplate.expire(behaviorKey, 300, TimeUnit.SECONDS); // 保留5分钟
-        
-        // 获取最近的行为记录
-        Long listSize = redisTemplate.opsForList().size(behaviorKey);
-        if (listSize != null && listSize > 10) {
-            // 如果5分钟内操作超过10次，可能是机器人
-            return false;
-        }
-        
-        return true;
-    }
-    
     /**
      * 添加到黑名单
      */
@@ -213,17 +231,16 @@ public class AntiScalpingService {
                                Integer creditScore, Boolean isVerified) {
         int riskScore = 0;
         
+        // 用户和IP的请求计数一次读取（只读，不计数）
+        long[] counts = rateLimiter.usage(frequencyRules(userId, userIp, null));
+
         // 检查请求频率异常
-        String userCountKey = USER_REQUEST_COUNT_PREFIX + userId;
-        Object userCount = redisTemplate.opsForValue().get(userCountKey);
-        if (userCount != null && (Integer) userCount > 2) {
+        if (counts[0] > 2) {
             riskScore += 30;
         }
         
         // 检查IP频率异常
-        String ipCountKey = IP_REQUEST_COUNT_PREFIX + userIp;
-        Object ipCount = redisTemplate.opsForValue().get(ipCountKey);
-        if (ipCount != null && (Integer) ipCount > 8) {
+        if (counts[1] > 8) {
             riskScore += 40;
         }
         
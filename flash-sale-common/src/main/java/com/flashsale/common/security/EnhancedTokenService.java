@@ -1,12 +1,18 @@
 package com.flashsale.common.security;
 
+import com.flashsale.common.ratelimit.RateLimitResult;
+import com.flashsale.common.ratelimit.RateLimitRule;
+import com.flashsale.common.ratelimit.RateLimiter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -18,14 +24,67 @@ import java.util.concurrent.TimeUnit;
 public class EnhancedTokenService {
     
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private StringRedisTemplate stringRedisTemplate;
     
     @Autowired
     private AntiScalpingService antiScalpingService;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private StatelessTokenService statelessTokenService;
     
     private static final String TOKEN_PREFIX = "enhanced:token:";
     private static final String TOKEN_USAGE_PREFIX = "token:usage:";
     private static final String TOKEN_GENERATE_COUNT_PREFIX = "token:generate:count:";
+
+    /**
+     * 令牌消费后保留"已使用"标记的时间，期间重复提交返回"已被使用"
+     */
+    private static final long USED_TOKEN_TTL_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+    private static final long TOKEN_USAGE_TTL_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    private static final long CONSUME_OK = 1;
+    private static final long CONSUME_NOT_FOUND = 0;
+    private static final long CONSUME_TOKEN_MISMATCH = -1;
+    private static final long CONSUME_IP_MISMATCH = -2;
+    private static final long CONSUME_ALREADY_USED = -3;
+
+    /**
+     * 令牌状态以Hash存储：t-令牌，ip-IP，df-设备指纹，ct-创建时间，u-是否已使用(0/1)
+     * 存储脚本：KEYS[1]-令牌key；ARGV[1]-令牌，ARGV[2]-IP，ARGV[3]-设备指纹，ARGV[4]-创建时间，ARGV[5]-有效期秒数
+     */
+    private static final DefaultRedisScript<Long> STORE_SCRIPT = new DefaultRedisScript<>(
+        "redis.call('del', KEYS[1]) " +
+        "redis.call('hset', KEYS[1], 't', ARGV[1], 'ip', ARGV[2], 'df', ARGV[3], 'ct', ARGV[4], 'u', '0') " +
+        "redis.call('expire', KEYS[1], ARGV[5]) " +
+        "return 1",
+        Long.class);
+
+    /**
+     * 消费脚本：校验令牌、IP和使用标记后标记已使用并记录使用，一次往返原子完成
+     * KEYS[1]-令牌key，KEYS[2]-使用记录key；ARGV[1]-令牌，ARGV[2]-IP，ARGV[3]-已使用标记保留秒数，ARGV[4]-使用记录保留秒数
+     */
+    private static final DefaultRedisScript<Long> CONSUME_SCRIPT = new DefaultRedisScript<>(
+        "local state = redis.call('hmget', KEYS[1], 't', 'ip', 'u') " +
+        "if not state[1] then " +
+        "    return 0 " +
+        "end " +
+        "if state[1] ~= ARGV[1] then " +
+        "    return -1 " +
+        "end " +
+        "if state[2] ~= ARGV[2] then " +
+        "    return -2 " +
+        "end " +
+        "if state[3] == '1' then " +
+        "    return -3 " +
+        "end " +
+        "redis.call('hset', KEYS[1], 'u', '1') " +
+        "redis.call('expire', KEYS[1], ARGV[3]) " +
+        "redis.call('set', KEYS[2], ARGV[1], 'EX', ARGV[4]) " +
+        "return 1",
+        Long.class);
     
     /**
      * 生成增强版秒杀令牌
@@ -66,15 +125,25 @@ public class EnhancedTokenService {
         // 4. 计算用户权重（VIP用户获得更长有效期的令牌）
         int tokenValidityMinutes = calculateTokenValidity(userLevel, creditScore, isVerified);
         
-        // 5. 生成令牌
+        // 5. 启用无状态令牌时签发HMAC令牌，不写Redis
+        if (statelessTokenService.isEnabled()) {
+            String token = statelessTokenService.issue(userId, productId, userIp,
+                    TimeUnit.MINUTES.toSeconds(tokenValidityMinutes));
+            recordTokenGeneration(userId, userIp);
+            log.info("成功生成无状态令牌: userId={}, productId={}, validity={}分钟",
+                    userId, productId, tokenValidityMinutes);
+            return token;
+        }
+
+        // 生成令牌
         String token = generateSecureToken(userId, productId, userIp, System.currentTimeMillis());
         
-        // 6. 存储令牌信息
+        // 6. 存储令牌信息（覆盖该用户该商品之前的令牌）
         String tokenKey = TOKEN_PREFIX + userId + ":" + productId;
-        TokenInfo tokenInfo = new TokenInfo(token, userId, productId, userIp, 
-                deviceFingerprint, System.currentTimeMillis(), false);
-        
-        redisTemplate.opsForValue().set(tokenKey, tokenInfo, tokenValidityMinutes, TimeUnit.MINUTES);
+        stringRedisTemplate.execute(STORE_SCRIPT, Collections.singletonList(tokenKey),
+                token, nullToEmpty(userIp), nullToEmpty(deviceFingerprint),
+                String.valueOf(System.currentTimeMillis()),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(tokenValidityMinutes)));
         
         // 7. 记录令牌生成次数
         recordTokenGeneration(userId, userIp);
@@ -94,71 +163,59 @@ public class EnhancedTokenService {
      * @return true-验证成功，false-验证失败
      */
     public boolean validateAndConsumeToken(Long userId, Long productId, String token, String userIp) {
+        // 无状态令牌本地校验签名，只写一次性消费标记；关闭签发后已发出的无状态令牌仍可校验
+        if (StatelessTokenService.isStatelessToken(token)) {
+            try {
+                return statelessTokenService.verifyAndConsume(userId, productId, token, userIp);
+            } catch (Exception e) {
+                log.error("令牌校验失败: userId={}, productId={}", userId, productId, e);
+                return false;
+            }
+        }
+
         String tokenKey = TOKEN_PREFIX + userId + ":" + productId;
-        
-        Object tokenObj = redisTemplate.opsForValue().get(tokenKey);
-        if (tokenObj == null) {
+        String usageKey = TOKEN_USAGE_PREFIX + userId + ":" + productId;
+
+        Long code;
+        try {
+            code = stringRedisTemplate.execute(CONSUME_SCRIPT, Arrays.asList(tokenKey, usageKey),
+                    nullToEmpty(token), nullToEmpty(userIp),
+                    String.valueOf(USED_TOKEN_TTL_SECONDS), String.valueOf(TOKEN_USAGE_TTL_SECONDS));
+        } catch (Exception e) {
+            log.error("令牌校验失败: userId={}, productId={}", userId, productId, e);
+            return false;
+        }
+
+        if (code == null || code == CONSUME_NOT_FOUND) {
             log.warn("令牌不存在或已过期: userId={}, productId={}", userId, productId);
             return false;
         }
-        
-        TokenInfo tokenInfo = (TokenInfo) tokenObj;
-        
-        // 验证令牌是否匹配
-        if (!token.equals(tokenInfo.getToken())) {
+        if (code == CONSUME_TOKEN_MISMATCH) {
             log.warn("令牌不匹配: userId={}, productId={}", userId, productId);
             return false;
         }
-        
-        // 验证IP是否匹配（防止令牌被盗用）
-        if (!userIp.equals(tokenInfo.getIp())) {
-            log.warn("IP不匹配，疑似令牌被盗用: userId={}, originalIp={}, currentIp={}", 
-                    userId, tokenInfo.getIp(), userIp);
+        if (code == CONSUME_IP_MISMATCH) {
+            log.warn("IP不匹配，疑似令牌被盗用: userId={}, currentIp={}", userId, userIp);
             return false;
         }
-        
-        // 检查令牌是否已被使用
-        if (tokenInfo.isUsed()) {
+        if (code == CONSUME_ALREADY_USED) {
             log.warn("令牌已被使用: userId={}, productId={}", userId, productId);
             return false;
         }
-        
-        // 标记令牌为已使用
-        tokenInfo.setUsed(true);
-        redisTemplate.opsForValue().set(tokenKey, tokenInfo, 5, TimeUnit.MINUTES);
-        
-        // 记录令牌使用
-        recordTokenUsage(userId, productId, token);
-        
+
         log.info("令牌验证成功并已消费: userId={}, productId={}", userId, productId);
-        return true;
+        return code == CONSUME_OK;
     }
     
     /**
-     * 检查令牌生成频率
+     * 检查令牌生成频率（滑动窗口，用户和IP维度一次检查）
      */
     private boolean checkTokenGenerateFrequency(Long userId, String userIp) {
-        // 用户维度：每小时最多生成5个令牌
-        String userCountKey = TOKEN_GENERATE_COUNT_PREFIX + "user:" + userId;
-        Long userCount = redisTemplate.opsForValue().increment(userCountKey);
-        if (userCount == 1) {
-            redisTemplate.expire(userCountKey, 1, TimeUnit.HOURS);
-        }
-        if (userCount > 5) {
-            return false;
-        }
-        
-        // IP维度：每小时最多生成20个令牌
-        String ipCountKey = TOKEN_GENERATE_COUNT_PREFIX + "ip:" + userIp;
-        Long ipCount = redisTemplate.opsForValue().increment(ipCountKey);
-        if (ipCount == 1) {
-            redisTemplate.expire(ipCountKey, 1, TimeUnit.HOURS);
-        }
-        if (ipCount > 20) {
-            return false;
-        }
-        
-        return true;
+        // 用户维度：每小时最多生成5个令牌；IP维度：每小时最多生成20个令牌
+        RateLimitResult result = rateLimiter.tryAcquire(
+            RateLimitRule.of(TOKEN_GENERATE_COUNT_PREFIX + "user:" + userId, 5, 3600),
+            RateLimitRule.of(TOKEN_GENERATE_COUNT_PREFIX + "ip:" + userIp, 20, 3600));
+        return result.isAllowed();
     }
     
     /**
@@ -228,54 +285,7 @@ public class EnhancedTokenService {
         log.info("令牌生成记录: userId={}, ip={}, time={}", userId, userIp, System.currentTimeMillis());
     }
     
-    /**
-     * 记录令牌使用
-     */
-    private void recordTokenUsage(Long userId, Long productId, String token) {
-        String usageKey = TOKEN_USAGE_PREFIX + userId + ":" + productId;
-        redisTemplate.opsForValue().set(usageKey, token, 1, TimeUnit.DAYS);
-        log.info("令牌使用记录: userId={}, productId={}, time={}", userId, productId, System.currentTimeMillis());
-    }
-    
-    /**
-     * 令牌信息类
-     */
-    public static class TokenInfo {
-        private String token;
-        private Long userId;
-        private Long productId;
-        private String ip;
-        private String deviceFingerprint;
-        private long createTime;
-        private boolean used;
-        
-        public TokenInfo() {}
-        
-        public TokenInfo(String token, Long userId, Long productId, String ip, 
-                        String deviceFingerprint, long createTime, boolean used) {
-            this.token = token;
-            this.userId = userId;
-            this.productId = productId;
-            this.ip = ip;
-            this.deviceFingerprint = deviceFingerprint;
-            this.createTime = createTime;
-            this.used = used;
-        }
-        
-        // Getters and Setters
-        public String getToken() { return token; }
-        public void setToken(String token) { this.token = token; }
-        public Long getUserId() { return userId; }
-        public void setUserId(Long userId) { this.userId = userId; }
-        public Long getProductId() { return productId; }
-        public void setProductId(Long productId) { this.productId = productId; }
-        public String getIp() { return ip; }
-        public void setIp(String ip) { this.ip = ip; }
-        public String getDeviceFingerprint() { return deviceFingerprint; }
-        public void setDeviceFingerprint(String deviceFingerprint) { this.deviceFingerprint = deviceFingerprint; }
-        public long getCreateTime() { return createTime; }
-        public void setCreateTime(long createTime) { this.createTime = createTime; }
-        public boolean isUsed() { return used; }
-        public void setUsed(boolean used) { this.used = used; }
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
     }
-} 
\ No newline at end of file
+}
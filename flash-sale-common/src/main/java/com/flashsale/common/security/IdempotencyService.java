@@ -55,6 +55,31 @@ public class IdempotencyService {
         // 秒杀请求5分钟内不允许重复
         return checkAndSetIdempotency(key, 300);
     }
+
+    /**
+     * 秒杀专用幂等性检查（可重入）：标识由同一个持有者写入时再次检查仍然通过
+     * 用于可能被重新投递的异步任务，持有者为任务ID，重新投递的同一任务不会被当作重复请求拒绝
+     * @param userId 用户ID
+     * @param productId 商品ID
+     * @param requestId 请求ID
+     * @param owner 持有者标识
+     * @return true-首次请求或同一持有者重入，false-其他持有者的重复请求
+     */
+    public boolean checkSeckillIdempotency(Long userId, Long productId, String requestId, String owner) {
+        String fullKey = IDEMPOTENCY_PREFIX + SECKILL_PREFIX + userId + ":" + productId + ":" + requestId;
+        Boolean result = redisTemplate.opsForValue().setIfAbsent(fullKey, owner, 300, TimeUnit.SECONDS);
+        if (Boolean.TRUE.equals(result)) {
+            return true;
+        }
+
+        Object current = redisTemplate.opsForValue().get(fullKey);
+        if (owner.equals(current)) {
+            log.info("同一任务重新投递，幂等性检查重入: requestId={}, owner={}", requestId, owner);
+            return true;
+        }
+        log.warn("检测到重复请求: requestId={}", requestId);
+        return false;
+    }
     
     /**
      * 移除幂等性标识（用于回滚场景）
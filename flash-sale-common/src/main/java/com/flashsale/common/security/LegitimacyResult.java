@@ -0,0 +1,69 @@
+package com.flashsale.common.security;
+
+import lombok.Getter;
+
+/**
+ * 防黄牛检查结果 - 命中的规则及当前计数
+ * @author 21311
+ */
+@Getter
+public class LegitimacyResult {
+
+    /**
+     * 检查规则
+     */
+    public enum Rule {
+        /**
+         * 通过
+         */
+        PASSED,
+        /**
+         * 命中黑名单
+         */
+        BLACKLIST,
+        /**
+         * 用户请求频率超限
+         */
+        USER_FREQUENCY,
+        /**
+         * IP请求频率超限
+         */
+        IP_FREQUENCY,
+        /**
+         * 设备请求频率超限
+         */
+        DEVICE_FREQUENCY,
+        /**
+         * 信用度不足
+         */
+        CREDIBILITY,
+        /**
+         * 行为模式异常
+         */
+        BEHAVIOR
+    }
+
+    private final Rule rule;
+    private final long userCount;
+    private final long ipCount;
+    private final long deviceCount;
+    private final long behaviorCount;
+
+    public LegitimacyResult(Rule rule, long userCount, long ipCount, long deviceCount, long behaviorCount) {
+        this.rule = rule;
+        this.userCount = userCount;
+        this.ipCount = ipCount;
+        this.deviceCount = deviceCount;
+        this.behaviorCount = behaviorCount;
+    }
+
+    public boolean isPassed() {
+        return rule == Rule.PASSED;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LegitimacyResult{rule=%s, user=%d, ip=%d, device=%d, behavior=%d}",
+                rule, userCount, ipCount, deviceCount, behaviorCount);
+    }
+}
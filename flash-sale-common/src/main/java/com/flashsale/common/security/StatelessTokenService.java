@@ -0,0 +1,432 @@
+package com.flashsale.common.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 无状态秒杀令牌服务
+ * 令牌格式：s1.{密钥ID}.{载荷}.{签名}，载荷为 用户ID、商品ID、IP哈希、过期时间、随机数 的定长二进制，签名为HMAC-SHA256截取前16字节，均为URL安全Base64；
+ * 任何节点用本地密钥即可纯CPU校验，伪造、篡改、过期、IP不符的令牌不产生任何I/O；
+ * 校验通过后只写一次性"已消费"标记：按商品和过期时间所在小时分片的Redis位图，以签名派生的3个位置作为布隆过滤器；
+ * 签名密钥保存在Redis Hash中，按密钥ID区分，由配置的间隔定时轮换（不对外暴露接口），各节点定时拉取，轮换后旧密钥签发的令牌在过期前仍可校验；
+ * 密钥ID由Redis计数器单调递增分配并以HSETNX写入，同一密钥ID的密钥永不改变，本地缓存按密钥ID命中即可信
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class StatelessTokenService {
+
+    private static final String TOKEN_VERSION = "s1";
+    private static final String KEY_RING_KEY = "seckill:token:hmac:keys";
+    private static final String KID_SEQUENCE_KEY = "seckill:token:hmac:kid";
+    private static final String ROTATED_MARKER_KEY = "seckill:token:hmac:rotated";
+    private static final String ACTIVE_FIELD = "active";
+    private static final String CONSUMED_KEY_PREFIX = "seckill:token:consumed:";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int SECRET_BYTES = 32;
+    private static final int SIGNATURE_BYTES = 16;
+    private static final int PAYLOAD_BYTES = 8 + 8 + 4 + 8 + 8;
+
+    /**
+     * 保留的密钥个数（含当前密钥），轮换时删除更早的密钥
+     */
+    private static final int MAX_KEYS = 3;
+    private static final long KEY_REFRESH_SECONDS = 30;
+    private static final long KEY_RELOAD_MIN_INTERVAL_MILLIS = 1000;
+    private static final long CONSUMED_WINDOW_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    private static final int BLOOM_HASHES = 3;
+
+    /**
+     * 密钥轮换脚本：计数器分配新密钥ID，HSETNX写入密钥后设为当前密钥，并删除最近ARGV[2]个之前的密钥
+     * 计数器丢失时先追上已有的最大密钥ID，保证密钥ID不复用；ARGV[3]为1时只在尚无当前密钥时执行（初始化）
+     * KEYS[1]-密钥Hash，KEYS[2]-密钥ID计数器；ARGV[1]-密钥，ARGV[2]-保留个数，ARGV[3]-是否仅初始化
+     * 返回新密钥ID，未执行返回0
+     */
+    private static final DefaultRedisScript<Long> ROTATE_KEY_SCRIPT = new DefaultRedisScript<>(
+        "if ARGV[3] == '1' and redis.call('hexists', KEYS[1], 'active') == 1 then " +
+        "    return 0 " +
+        "end " +
+        "local fields = redis.call('hkeys', KEYS[1]) " +
+        "local maxKid = 0 " +
+        "for _, field in ipairs(fields) do " +
+        "    local n = tonumber(field) " +
+        "    if n and n > maxKid then " +
+        "        maxKid = n " +
+        "    end " +
+        "end " +
+        "if tonumber(redis.call('get', KEYS[2]) or '0') < maxKid then " +
+        "    redis.call('set', KEYS[2], maxKid) " +
+        "end " +
+        "local kid = redis.call('incr', KEYS[2]) " +
+        "if redis.call('hsetnx', KEYS[1], tostring(kid), ARGV[1]) == 0 then " +
+        "    return 0 " +
+        "end " +
+        "redis.call('hset', KEYS[1], 'active', tostring(kid)) " +
+        "local oldest = kid - tonumber(ARGV[2]) " +
+        "for _, field in ipairs(fields) do " +
+        "    if field ~= 'active' then " +
+        "        local n = tonumber(field) " +
+        "        if not n or n <= oldest then " +
+        "            redis.call('hdel', KEYS[1], field) " +
+        "        end " +
+        "    end " +
+        "end " +
+        "return kid",
+        Long.class);
+
+    /**
+     * 消费标记脚本：3个位都已置位视为已消费，否则全部置位
+     * KEYS[1]-位图key；ARGV[1..3]-位偏移，ARGV[4]-过期秒数
+     */
+    private static final DefaultRedisScript<Long> CONSUME_SCRIPT = new DefaultRedisScript<>(
+        "local seen = 1 " +
+        "for i = 1, 3 do " +
+        "    if redis.call('getbit', KEYS[1], ARGV[i]) == 0 then " +
+        "        seen = 0 " +
+        "    end " +
+        "end " +
+        "if seen == 1 then " +
+        "    return 0 " +
+        "end " +
+        "for i = 1, 3 do " +
+        "    redis.call('setbit', KEYS[1], ARGV[i], 1) " +
+        "end " +
+        "if redis.call('ttl', KEYS[1]) < 0 then " +
+        "    redis.call('expire', KEYS[1], ARGV[4]) " +
+        "end " +
+        "return 1",
+        Long.class);
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(HMAC_ALGORITHM);
+        } catch (Exception e) {
+            throw new IllegalStateException("HMAC算法不可用", e);
+        }
+    });
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${flashsale.token.stateless.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 每个消费位图的位数（2的幂次），默认2^22位即512KB
+     */
+    @Value("${flashsale.token.stateless.consumed-bits-log2:22}")
+    private int consumedBitsLog2;
+
+    /**
+     * 签名密钥定时轮换间隔（分钟），0表示不轮换
+     */
+    @Value("${flashsale.token.stateless.rotate-interval-minutes:0}")
+    private long rotateIntervalMinutes;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    // 本地密钥环，整体替换
+    private volatile KeyRing keyRing;
+    private volatile long lastReloadTime;
+    private volatile ScheduledExecutorService refresher;
+
+    @PreDestroy
+    public void destroy() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * 是否启用无状态令牌签发
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 判断令牌是否为无状态令牌格式
+     */
+    public static boolean isStatelessToken(String token) {
+        return token != null && token.startsWith(TOKEN_VERSION + ".");
+    }
+
+    /**
+     * 签发令牌
+     *
+     * @param userId 用户ID
+     * @param productId 商品ID
+     * @param userIp 用户IP，为null时令牌不绑定IP
+     * @param validitySeconds 有效期（秒）
+     * @return 令牌
+     */
+    public String issue(Long userId, Long productId, String userIp, long validitySeconds) {
+        KeyRing ring = getKeyRing();
+        long expireAt = System.currentTimeMillis() / 1000 + validitySeconds;
+
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+            .putLong(userId)
+            .putLong(productId)
+            .putInt(ipHash(userIp))
+            .putLong(expireAt)
+            .putLong(ThreadLocalRandom.current().nextLong())
+            .array();
+        String header = TOKEN_VERSION + "." + ring.activeKid + ".";
+        String payloadText = ENCODER.encodeToString(payload);
+        byte[] signature = sign(ring.keys.get(ring.activeKid), header, payloadText);
+        return header + payloadText + "." + ENCODER.encodeToString(signature);
+    }
+
+    /**
+     * 校验并消费令牌：签名、用户、商品、IP、有效期在本地校验，全部通过后才写一次消费标记
+     *
+     * @return true-校验通过且首次使用
+     */
+    public boolean verifyAndConsume(Long userId, Long productId, String token, String userIp) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 4 || !TOKEN_VERSION.equals(parts[0])) {
+            log.warn("令牌格式错误: userId={}, productId={}", userId, productId);
+            return false;
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(parts[2]);
+            signature = DECODER.decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            log.warn("令牌编码错误: userId={}, productId={}", userId, productId);
+            return false;
+        }
+        if (payload.length != PAYLOAD_BYTES || signature.length != SIGNATURE_BYTES) {
+            log.warn("令牌长度错误: userId={}, productId={}", userId, productId);
+            return false;
+        }
+
+        SecretKeySpec key = findKey(parts[1]);
+        if (key == null) {
+            log.warn("令牌密钥不存在或已淘汰: userId={}, kid={}", userId, parts[1]);
+            return false;
+        }
+        byte[] expected = sign(key, TOKEN_VERSION + "." + parts[1] + ".", parts[2]);
+        if (!MessageDigest.isEqual(expected, signature)) {
+            log.warn("令牌签名无效: userId={}, productId={}", userId, productId);
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long tokenUserId = buffer.getLong();
+        long tokenProductId = buffer.getLong();
+        int tokenIpHash = buffer.getInt();
+        long expireAt = buffer.getLong();
+        if (!Long.valueOf(tokenUserId).equals(userId) || !Long.valueOf(tokenProductId).equals(productId)) {
+            log.warn("令牌不匹配: userId={}, productId={}", userId, productId);
+            return false;
+        }
+        if (tokenIpHash != 0 && tokenIpHash != ipHash(userIp)) {
+            log.warn("IP不匹配，疑似令牌被盗用: userId={}, currentIp={}", userId, userIp);
+            return false;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        if (expireAt <= now) {
+            log.warn("令牌已过期: userId={}, productId={}", userId, productId);
+            return false;
+        }
+
+        return markConsumed(productId, expireAt, signature, now);
+    }
+
+    /**
+     * 轮换签名密钥：生成新密钥设为当前密钥，只保留最近 {@link #MAX_KEYS} 个
+     * 仅由定时任务调用，不对外暴露
+     *
+     * @return 新密钥ID
+     */
+    String rotateKey() {
+        Long kid = stringRedisTemplate.execute(ROTATE_KEY_SCRIPT, Arrays.asList(KEY_RING_KEY, KID_SEQUENCE_KEY),
+                newSecret(), String.valueOf(MAX_KEYS), "0");
+        if (kid == null || kid == 0) {
+            throw new IllegalStateException("令牌签名密钥轮换失败");
+        }
+
+        reloadKeyRing();
+        log.info("令牌签名密钥已轮换: kid={}", kid);
+        return kid.toString();
+    }
+
+    /**
+     * 到达轮换间隔时轮换密钥：以带过期时间的标记保证每个间隔内只有一个节点轮换
+     */
+    private void rotateIfDue() {
+        if (rotateIntervalMinutes <= 0) {
+            return;
+        }
+        Boolean due = stringRedisTemplate.opsForValue().setIfAbsent(ROTATED_MARKER_KEY,
+                String.valueOf(System.currentTimeMillis()), rotateIntervalMinutes, TimeUnit.MINUTES);
+        if (Boolean.TRUE.equals(due)) {
+            rotateKey();
+        }
+    }
+
+    /**
+     * 写入消费标记，位图按商品和过期时间所在窗口分片，过期时间确定后所在分片唯一
+     */
+    private boolean markConsumed(Long productId, long expireAt, byte[] signature, long now) {
+        long window = expireAt / CONSUMED_WINDOW_SECONDS;
+        String key = CONSUMED_KEY_PREFIX + productId + ":" + window;
+        long ttl = (window + 1) * CONSUMED_WINDOW_SECONDS - now + 60;
+
+        // 签名本身是均匀随机的，直接取其前12字节作为3个位偏移
+        ByteBuffer buffer = ByteBuffer.wrap(signature);
+        long mask = (1L << consumedBitsLog2) - 1;
+        List<String> args = new ArrayList<>(BLOOM_HASHES + 1);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            args.add(String.valueOf(Integer.toUnsignedLong(buffer.getInt()) & mask));
+        }
+        args.add(String.valueOf(ttl));
+
+        Long result = stringRedisTemplate.execute(CONSUME_SCRIPT, Collections.singletonList(key), args.toArray());
+        if (result == null || result != 1) {
+            log.warn("令牌已被使用: productId={}", productId);
+            return false;
+        }
+        return true;
+    }
+
+    private byte[] sign(SecretKeySpec key, String header, String payloadText) {
+        try {
+            Mac mac = MAC.get();
+            mac.init(key);
+            mac.update(header.getBytes(StandardCharsets.US_ASCII));
+            byte[] digest = mac.doFinal(payloadText.getBytes(StandardCharsets.US_ASCII));
+            return Arrays.copyOf(digest, SIGNATURE_BYTES);
+        } catch (Exception e) {
+            throw new IllegalStateException("令牌签名失败", e);
+        }
+    }
+
+    /**
+     * IP哈希，0保留表示不绑定IP
+     */
+    private static int ipHash(String userIp) {
+        if (userIp == null || userIp.isEmpty()) {
+            return 0;
+        }
+        int hash = userIp.hashCode();
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * 查找密钥，本地没有时（如其他节点刚轮换）限频重新拉取一次
+     */
+    private SecretKeySpec findKey(String kid) {
+        SecretKeySpec key = getKeyRing().keys.get(kid);
+        if (key == null && System.currentTimeMillis() - lastReloadTime >= KEY_RELOAD_MIN_INTERVAL_MILLIS) {
+            key = reloadKeyRing().keys.get(kid);
+        }
+        return key;
+    }
+
+    private KeyRing getKeyRing() {
+        KeyRing ring = keyRing;
+        if (ring != null) {
+            return ring;
+        }
+        synchronized (this) {
+            if (keyRing == null) {
+                Long kid = stringRedisTemplate.execute(ROTATE_KEY_SCRIPT, Arrays.asList(KEY_RING_KEY, KID_SEQUENCE_KEY),
+                        newSecret(), String.valueOf(MAX_KEYS), "1");
+                if (kid != null && kid > 0 && rotateIntervalMinutes > 0) {
+                    // 刚生成的密钥本身就是本间隔的密钥
+                    stringRedisTemplate.opsForValue().set(ROTATED_MARKER_KEY,
+                            String.valueOf(System.currentTimeMillis()), rotateIntervalMinutes, TimeUnit.MINUTES);
+                }
+                reloadKeyRing();
+                startRefresher();
+            }
+            return keyRing;
+        }
+    }
+
+    /**
+     * 从Redis拉取密钥环
+     */
+    private synchronized KeyRing reloadKeyRing() {
+        lastReloadTime = System.currentTimeMillis();
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(KEY_RING_KEY);
+        Object activeKid = entries.get(ACTIVE_FIELD);
+        if (activeKid == null) {
+            throw new IllegalStateException("令牌签名密钥未初始化");
+        }
+        Map<String, SecretKeySpec> keys = new HashMap<>();
+        entries.forEach((field, value) -> {
+            if (!ACTIVE_FIELD.equals(field)) {
+                keys.put(field.toString(), new SecretKeySpec(DECODER.decode(value.toString()), HMAC_ALGORITHM));
+            }
+        });
+        keyRing = new KeyRing(activeKid.toString(), Collections.unmodifiableMap(keys));
+        return keyRing;
+    }
+
+    private void startRefresher() {
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-key-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                rotateIfDue();
+                reloadKeyRing();
+            } catch (Exception e) {
+                log.warn("刷新令牌签名密钥失败，继续使用本地密钥", e);
+            }
+        }, KEY_REFRESH_SECONDS, KEY_REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private String newSecret() {
+        byte[] secret = new byte[SECRET_BYTES];
+        secureRandom.nextBytes(secret);
+        return ENCODER.encodeToString(secret);
+    }
+
+    /**
+     * 密钥环：当前签名密钥ID + 所有可用于校验的密钥
+     */
+    private static final class KeyRing {
+        private final String activeKid;
+        private final Map<String, SecretKeySpec> keys;
+
+        private KeyRing(String activeKid, Map<String, SecretKeySpec> keys) {
+            this.activeKid = activeKid;
+            this.keys = keys;
+        }
+    }
+}
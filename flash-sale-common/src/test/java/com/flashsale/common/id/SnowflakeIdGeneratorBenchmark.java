@@ -0,0 +1,70 @@
+package com.flashsale.common.id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ID生成基准测试：单线程与多线程竞争下的雪花ID、订单编号生成吞吐，以UUID作对照
+ * 单节点每毫秒最多4096个ID，多线程吞吐上限约为每秒409万次
+ * 不随 mvn test 执行，test-compile 后运行 main 方法（或 IDE 中直接运行）
+ * @author 21311
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private SnowflakeIdGenerator generator;
+
+    @Setup
+    public void setUp() {
+        generator = new SnowflakeIdGenerator();
+        ReflectionTestUtils.setField(generator, "configuredWorkerId", 1L);
+        generator.init();
+    }
+
+    @Benchmark
+    public long nextId() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long nextIdContended() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    public String nextNo() {
+        return generator.nextNo("FS");
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SnowflakeIdGeneratorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+package com.flashsale.common.id;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 雪花算法ID生成器测试
+ * @author 21311
+ */
+class SnowflakeIdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 50_000;
+    private static final long WORKER_ID = 7;
+    private static final long EPOCH = 1704067200000L;
+
+    private SnowflakeIdGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        generator = new SnowflakeIdGenerator();
+        ReflectionTestUtils.setField(generator, "configuredWorkerId", WORKER_ID);
+        generator.init();
+    }
+
+    @Test
+    void concurrentIdsAreUniqueAndMonotonicPerThread() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet(THREADS * IDS_PER_THREAD);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(THREADS);
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long previous = Long.MIN_VALUE;
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        long id = generator.nextId();
+                        assertTrue(id > previous, "同一线程内ID必须严格递增: " + previous + " -> " + id);
+                        assertTrue(ids.add(id), "ID重复: " + id);
+                        previous = id;
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+
+    @Test
+    void sustainedDemandAboveCapacityIsThrottledNotRejected() {
+        // 单线程生成速度远超每毫秒4096个，持续1.5秒：借用领先量触顶后应等待时钟，而不是被当作时钟回拨拒绝
+        long deadline = System.currentTimeMillis() + 1500;
+        long previous = Long.MIN_VALUE;
+        long id = 0;
+        while (System.currentTimeMillis() < deadline) {
+            id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        long ahead = ((id >>> 22) + EPOCH) - System.currentTimeMillis();
+        assertTrue(ahead <= 1_000, "ID时间戳领先系统时钟过多: " + ahead + "ms");
+    }
+
+    @Test
+    void idsCarryConfiguredWorkerId() {
+        long id = generator.nextId();
+        assertTrue(id > 0);
+        assertEquals(WORKER_ID, (id >>> 12) & 1023);
+    }
+
+    @Test
+    void encodedNumbersAreFixedLengthAndSortable() {
+        String previous = "";
+        for (int i = 0; i < 10_000; i++) {
+            String no = generator.nextNo("FS");
+            assertEquals(15, no.length());
+            assertTrue(no.startsWith("FS"));
+            assertTrue(no.compareTo(previous) > 0, "编号必须按生成顺序递增: " + previous + " -> " + no);
+            previous = no;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.flashsale.common.mq;
+
+import com.flashsale.common.dto.SeckillDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务编解码器基准测试：json 与 compact 两种实现的编码、解码耗时
+ * 不随 mvn test 执行，test-compile 后运行 main 方法（或 IDE 中直接运行）
+ * @author 21311
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeckillTaskCodecBenchmark {
+
+    @Param({"json", "compact"})
+    private String codecName;
+
+    private SeckillTaskCodec codec;
+    private SeckillTaskWrapper task;
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        codec = "compact".equals(codecName) ? new CompactSeckillTaskCodec() : new JacksonSeckillTaskCodec();
+
+        SeckillDTO dto = new SeckillDTO();
+        dto.setUserId(10086L);
+        dto.setFlashSaleProductId(42L);
+        dto.setQuantity(1);
+        dto.setUserIp("192.168.1.20");
+        dto.setDeviceFingerprint("d41d8cd98f00b204e9800998ecf8427e");
+        dto.setUserLevel(2);
+        dto.setCreditScore(85);
+        dto.setIsVerified(true);
+        dto.setRequestId("5f0c6b1e-9d1a-4c1b-8a49-4f3b2a1c0d9e");
+        task = new SeckillTaskWrapper("task_1718000000123_ab12cd34", dto, 1718000000123L);
+        payload = codec.encode(task);
+    }
+
+    @Benchmark
+    public String encode() {
+        return codec.encode(task);
+    }
+
+    @Benchmark
+    public SeckillTaskWrapper decode() {
+        return codec.decode(payload);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SeckillTaskCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
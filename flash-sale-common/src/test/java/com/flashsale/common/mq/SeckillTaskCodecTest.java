@@ -0,0 +1,82 @@
+package com.flashsale.common.mq;
+
+import com.flashsale.common.dto.SeckillDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 异步秒杀任务编解码器测试：两种实现编码后解码应还原所有队列字段
+ * @author 21311
+ */
+class SeckillTaskCodecTest {
+
+    private final SeckillTaskCodec jackson = new JacksonSeckillTaskCodec();
+    private final SeckillTaskCodec compact = new CompactSeckillTaskCodec();
+
+    @Test
+    void jacksonRoundTrip() {
+        assertRoundTrip(jackson, fullTask());
+    }
+
+    @Test
+    void compactRoundTrip() {
+        assertRoundTrip(compact, fullTask());
+    }
+
+    @Test
+    void jacksonRoundTripWithNulls() {
+        assertRoundTrip(jackson, sparseTask());
+    }
+
+    @Test
+    void compactRoundTripWithNulls() {
+        assertRoundTrip(compact, sparseTask());
+    }
+
+    @Test
+    void malformedPayloadIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> jackson.decode("{not json"));
+        assertThrows(IllegalArgumentException.class, () -> compact.decode("AQ"));
+    }
+
+    private static void assertRoundTrip(SeckillTaskCodec codec, SeckillTaskWrapper task) {
+        SeckillTaskWrapper decoded = codec.decode(codec.encode(task));
+        SeckillDTO expected = task.getSeckillDTO();
+        SeckillDTO actual = decoded.getSeckillDTO();
+
+        assertEquals(task.getTaskId(), decoded.getTaskId());
+        assertEquals(task.getCreateTime(), decoded.getCreateTime());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getFlashSaleProductId(), actual.getFlashSaleProductId());
+        assertEquals(expected.getQuantity(), actual.getQuantity());
+        assertEquals(expected.getUserIp(), actual.getUserIp());
+        assertEquals(expected.getDeviceFingerprint(), actual.getDeviceFingerprint());
+        assertEquals(expected.getUserLevel(), actual.getUserLevel());
+        assertEquals(expected.getCreditScore(), actual.getCreditScore());
+        assertEquals(expected.getIsVerified(), actual.getIsVerified());
+        assertEquals(expected.getRequestId(), actual.getRequestId());
+    }
+
+    private static SeckillTaskWrapper fullTask() {
+        SeckillDTO dto = new SeckillDTO();
+        dto.setUserId(10086L);
+        dto.setFlashSaleProductId(42L);
+        dto.setQuantity(2);
+        dto.setUserIp("192.168.1.20");
+        dto.setDeviceFingerprint("设备-abc123");
+        dto.setUserLevel(3);
+        dto.setCreditScore(95);
+        dto.setIsVerified(true);
+        dto.setRequestId("req-0001");
+        return new SeckillTaskWrapper("task-1", dto, 1718000000123L);
+    }
+
+    private static SeckillTaskWrapper sparseTask() {
+        SeckillDTO dto = new SeckillDTO();
+        dto.setUserId(1L);
+        dto.setFlashSaleProductId(2L);
+        return new SeckillTaskWrapper("task-2", dto, 0L);
+    }
+}
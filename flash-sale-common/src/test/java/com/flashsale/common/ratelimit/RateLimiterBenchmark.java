@@ -0,0 +1,80 @@
+package com.flashsale.common.ratelimit;
+
+import com.flashsale.common.redis.RedisStandIn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流器基准测试：三种算法在防黄牛场景（用户、IP、设备三个规则一次检查）下的吞吐
+ * 默认使用进程内Redis替身，结果主要反映各脚本的执行开销；指定真实Redis测量：-Dbench.redis.host=... -Dbench.redis.port=...
+ * 不随 mvn test 执行，test-compile 后运行 main 方法（或 IDE 中直接运行）
+ * @author 21311
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(8)
+public class RateLimiterBenchmark {
+
+    @Param({"counter", "log", "bucket"})
+    private String algorithm;
+
+    private RedisStandIn redis;
+    private AbstractRedisRateLimiter limiter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String host = System.getProperty("bench.redis.host");
+        redis = host != null
+                ? RedisStandIn.connect(host, Integer.getInteger("bench.redis.port", 6379))
+                : RedisStandIn.start();
+
+        limiter = switch (algorithm) {
+            case "log" -> new SlidingWindowLogRateLimiter();
+            case "bucket" -> new TokenBucketRateLimiter();
+            default -> new SlidingWindowCounterRateLimiter();
+        };
+        ReflectionTestUtils.setField(limiter, "redisTemplate", redis.redisTemplate());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        redis.close();
+    }
+
+    @Benchmark
+    public RateLimitResult tryAcquire() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return limiter.tryAcquire(
+                RateLimitRule.of("bench:user:" + random.nextInt(100_000), 3, 60),
+                RateLimitRule.of("bench:ip:" + random.nextInt(10_000), 10, 60),
+                RateLimitRule.of("bench:device:" + random.nextInt(50_000), 5, 60));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,170 @@
+package com.flashsale.common.ratelimit;
+
+import com.flashsale.common.redis.RedisStandIn;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 三种限流器及其Lua脚本测试：上限、多规则原子性、额度查询、窗口恢复、并发计数
+ * @author 21311
+ */
+class RateLimiterTest {
+
+    private static final int LONG_WINDOW_SECONDS = 3600;
+
+    private static RedisStandIn redis;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = RedisStandIn.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.flushAll();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"counter", "log", "bucket"})
+    void allowsUpToLimitThenRejects(String algorithm) {
+        RateLimiter limiter = limiter(algorithm);
+        RateLimitRule rule = RateLimitRule.of("user:1", 3, LONG_WINDOW_SECONDS);
+
+        for (int i = 0; i < 3; i++) {
+            RateLimitResult result = limiter.tryAcquire(rule);
+            assertTrue(result.isAllowed());
+            assertEquals(-1, result.getRejectedIndex());
+            assertEquals(2 - i, result.getRemaining()[0]);
+        }
+        RateLimitResult rejected = limiter.tryAcquire(rule);
+        assertFalse(rejected.isAllowed());
+        assertEquals(0, rejected.getRejectedIndex());
+        assertArrayEquals(new long[]{3}, limiter.usage(Collections.singletonList(rule)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"counter", "log", "bucket"})
+    void rejectedRuleLeavesOtherRulesUncounted(String algorithm) {
+        RateLimiter limiter = limiter(algorithm);
+        RateLimitRule user = RateLimitRule.of("user:1", 5, LONG_WINDOW_SECONDS);
+        RateLimitRule ip = RateLimitRule.of("ip:1", 1, LONG_WINDOW_SECONDS);
+
+        assertTrue(limiter.tryAcquire(user, ip).isAllowed());
+        RateLimitResult result = limiter.tryAcquire(user, ip);
+
+        assertFalse(result.isAllowed());
+        assertEquals(1, result.getRejectedIndex());
+        assertArrayEquals(new long[]{1, 1}, limiter.usage(Arrays.asList(user, ip)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"counter", "log", "bucket"})
+    void usageIsReadOnly(String algorithm) {
+        RateLimiter limiter = limiter(algorithm);
+        RateLimitRule rule = RateLimitRule.of("user:1", 2, LONG_WINDOW_SECONDS);
+
+        assertArrayEquals(new long[]{0}, limiter.usage(Collections.singletonList(rule)));
+        limiter.tryAcquire(rule);
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(new long[]{1}, limiter.usage(Collections.singletonList(rule)));
+        }
+        assertTrue(limiter.tryAcquire(rule).isAllowed());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"counter", "log", "bucket"})
+    void quotaRecoversAfterWindow(String algorithm) throws InterruptedException {
+        RateLimiter limiter = limiter(algorithm);
+        RateLimitRule rule = RateLimitRule.of("user:1", 2, 1);
+
+        assertTrue(limiter.tryAcquire(rule).isAllowed());
+        assertTrue(limiter.tryAcquire(rule).isAllowed());
+        assertFalse(limiter.tryAcquire(rule).isAllowed());
+
+        // 滑动窗口计数需要上一个窗口也过去才完全恢复
+        Thread.sleep(2100);
+        assertTrue(limiter.tryAcquire(rule).isAllowed());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"counter", "log", "bucket"})
+    void algorithmsDoNotShareKeys(String algorithm) {
+        RateLimitRule rule = RateLimitRule.of("user:1", 1, LONG_WINDOW_SECONDS);
+        assertTrue(limiter(algorithm).tryAcquire(rule).isAllowed());
+
+        for (String other : Arrays.asList("counter", "log", "bucket")) {
+            if (!other.equals(algorithm)) {
+                assertTrue(limiter(other).tryAcquire(rule).isAllowed(), algorithm + "与" + other + "的计数互相影响");
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"counter", "log", "bucket"})
+    void concurrentAcquiresNeverExceedLimit(String algorithm) throws Exception {
+        RateLimiter limiter = limiter(algorithm);
+        RateLimitRule rule = RateLimitRule.of("hot", 100, LONG_WINDOW_SECONDS);
+        int threads = 8;
+        int attemptsPerThread = 25;
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int allowed = 0;
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        if (limiter.tryAcquire(rule).isAllowed()) {
+                            allowed++;
+                        }
+                    }
+                    return allowed;
+                }));
+            }
+            start.countDown();
+            int allowed = 0;
+            for (Future<Integer> future : futures) {
+                allowed += future.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(100, allowed);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static AbstractRedisRateLimiter limiter(String algorithm) {
+        AbstractRedisRateLimiter limiter = switch (algorithm) {
+            case "log" -> new SlidingWindowLogRateLimiter();
+            case "bucket" -> new TokenBucketRateLimiter();
+            default -> new SlidingWindowCounterRateLimiter();
+        };
+        ReflectionTestUtils.setField(limiter, "redisTemplate", redis.redisTemplate());
+        return limiter;
+    }
+}
@@ -0,0 +1,90 @@
+package com.flashsale.common.redis;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * 测试用进程内Redis替身（jedis-mock，支持Lua脚本），通过Lettuce连接，模板配置与生产一致
+ * @author 21311
+ */
+public final class RedisStandIn implements AutoCloseable {
+
+    private final RedisServer server;
+    private final LettuceConnectionFactory factory;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private RedisStandIn(RedisServer server, String host, int port) {
+        this.server = server;
+        factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        factory.afterPropertiesSet();
+        factory.start();
+        stringRedisTemplate = new StringRedisTemplate(factory);
+        redisTemplate = new RedisConfig().redisTemplate(factory);
+    }
+
+    /**
+     * 在随机端口启动替身
+     */
+    public static RedisStandIn start() {
+        try {
+            RedisServer server = RedisServer.newRedisServer();
+            server.start();
+            return new RedisStandIn(server, server.getHost(), server.getBindPort());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 连接已有的真实Redis（基准测试需要真实耗时时使用），关闭时不影响该Redis
+     */
+    public static RedisStandIn connect(String host, int port) {
+        return new RedisStandIn(null, host, port);
+    }
+
+    /**
+     * 连接工厂，供发布订阅监听容器等需要直接使用连接的组件
+     */
+    public LettuceConnectionFactory connectionFactory() {
+        return factory;
+    }
+
+    public StringRedisTemplate stringRedisTemplate() {
+        return stringRedisTemplate;
+    }
+
+    /**
+     * 与 {@link RedisConfig} 相同的Jackson序列化模板
+     */
+    public RedisTemplate<String, Object> redisTemplate() {
+        return redisTemplate;
+    }
+
+    public void flushAll() {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        factory.destroy();
+        if (server == null) {
+            return;
+        }
+        try {
+            server.stop();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
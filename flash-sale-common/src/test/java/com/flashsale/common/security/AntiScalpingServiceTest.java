@@ -0,0 +1,120 @@
+package com.flashsale.common.security;
+
+import com.flashsale.common.ratelimit.SlidingWindowCounterRateLimiter;
+import com.flashsale.common.redis.RedisStandIn;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 防黄牛检查测试：规则优先级、各维度频率、信用度、行为模式
+ * @author 21311
+ */
+class AntiScalpingServiceTest {
+
+    private static final String IP = "10.0.0.1";
+    private static final String DEVICE = "device-1";
+
+    private static RedisStandIn redis;
+
+    private AntiScalpingService service;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = RedisStandIn.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.flushAll();
+        SlidingWindowCounterRateLimiter rateLimiter = new SlidingWindowCounterRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "redisTemplate", redis.redisTemplate());
+        service = new AntiScalpingService();
+        ReflectionTestUtils.setField(service, "redisTemplate", redis.redisTemplate());
+        ReflectionTestUtils.setField(service, "rateLimiter", rateLimiter);
+    }
+
+    @Test
+    void userFrequencyIsLimitedPerMinute() {
+        for (int i = 1; i <= 3; i++) {
+            LegitimacyResult result = check(1L, IP, null);
+            assertTrue(result.isPassed());
+            assertEquals(i, result.getUserCount());
+            assertEquals(i, result.getIpCount());
+        }
+        LegitimacyResult rejected = check(1L, IP, null);
+        assertEquals(LegitimacyResult.Rule.USER_FREQUENCY, rejected.getRule());
+        assertEquals(3, rejected.getUserCount());
+    }
+
+    @Test
+    void ipAndDeviceFrequencyAreSharedAcrossUsers() {
+        for (long userId = 1; userId <= 5; userId++) {
+            assertTrue(check(userId, IP, DEVICE).isPassed());
+        }
+        assertEquals(LegitimacyResult.Rule.DEVICE_FREQUENCY, check(6L, IP, DEVICE).getRule());
+
+        for (long userId = 6; userId <= 10; userId++) {
+            assertTrue(check(userId, IP, null).isPassed());
+        }
+        assertEquals(LegitimacyResult.Rule.IP_FREQUENCY, check(11L, IP, null).getRule());
+        // 超限的请求不计入其他维度
+        assertEquals(1, check(11L, "10.0.0.2", null).getUserCount());
+    }
+
+    @Test
+    void blacklistTakesPriorityOverFrequency() {
+        for (int i = 0; i < 3; i++) {
+            check(1L, IP, null);
+        }
+        service.addToBlacklist(1L, null, null, "test", 1);
+        assertEquals(LegitimacyResult.Rule.BLACKLIST, check(1L, IP, null).getRule());
+
+        service.removeFromBlacklist(1L, null, null);
+        assertEquals(LegitimacyResult.Rule.USER_FREQUENCY, check(1L, IP, null).getRule());
+    }
+
+    @Test
+    void uncredibleUserIsRejectedWithoutRecordingBehavior() {
+        LegitimacyResult result = service.checkUserLegitimacyDetail(1L, IP, null, 3, 90, false);
+
+        assertEquals(LegitimacyResult.Rule.CREDIBILITY, result.getRule());
+        assertEquals(1, result.getUserCount());
+        assertEquals(0L, redis.redisTemplate().opsForList().size("anti_scalping:behavior:1"));
+    }
+
+    @Test
+    void tooManyActionsInBehaviorWindowIsRejected() {
+        for (int i = 0; i < 10; i++) {
+            redis.redisTemplate().opsForList().leftPush("anti_scalping:behavior:1", System.currentTimeMillis());
+        }
+        LegitimacyResult result = check(1L, IP, null);
+
+        assertEquals(LegitimacyResult.Rule.BEHAVIOR, result.getRule());
+        assertEquals(11, result.getBehaviorCount());
+    }
+
+    @Test
+    void riskLevelReadsFrequencyWithoutCounting() {
+        for (int i = 0; i < 3; i++) {
+            check(1L, IP, null);
+        }
+        assertEquals(30, service.getUserRiskLevel(1L, IP, 3, 90, true));
+        assertEquals(30, service.getUserRiskLevel(1L, IP, 3, 90, true));
+        assertEquals(0, service.getUserRiskLevel(2L, "10.0.0.2", 3, 90, true));
+    }
+
+    private LegitimacyResult check(Long userId, String ip, String device) {
+        return service.checkUserLegitimacyDetail(userId, ip, device, 3, 90, true);
+    }
+}
@@ -0,0 +1,144 @@
+package com.flashsale.common.security;
+
+import com.flashsale.common.ratelimit.SlidingWindowCounterRateLimiter;
+import com.flashsale.common.redis.RedisStandIn;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 有状态令牌测试：一次性原子消费、IP绑定、重新签发覆盖旧令牌、签发频率
+ * @author 21311
+ */
+class EnhancedTokenServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final Long PRODUCT_ID = 2L;
+    private static final String IP = "10.0.0.1";
+
+    private static RedisStandIn redis;
+
+    private EnhancedTokenService service;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = RedisStandIn.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.flushAll();
+        SlidingWindowCounterRateLimiter rateLimiter = new SlidingWindowCounterRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "redisTemplate", redis.redisTemplate());
+        AntiScalpingService antiScalpingService = mock(AntiScalpingService.class);
+        when(antiScalpingService.checkUserLegitimacy(anyLong(), anyString(), any(), any(), any(), any()))
+                .thenReturn(true);
+
+        service = new EnhancedTokenService();
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", redis.stringRedisTemplate());
+        ReflectionTestUtils.setField(service, "antiScalpingService", antiScalpingService);
+        ReflectionTestUtils.setField(service, "rateLimiter", rateLimiter);
+        ReflectionTestUtils.setField(service, "statelessTokenService", mock(StatelessTokenService.class));
+    }
+
+    @Test
+    void tokenIsConsumedOnlyOnce() {
+        String token = generate(USER_ID);
+
+        assertTrue(service.validateAndConsumeToken(USER_ID, PRODUCT_ID, token, IP));
+        assertFalse(service.validateAndConsumeToken(USER_ID, PRODUCT_ID, token, IP));
+        assertEquals(token, redis.stringRedisTemplate().opsForValue().get("token:usage:1:2"));
+    }
+
+    @Test
+    void mismatchedRequestsDoNotBurnTheToken() {
+        String token = generate(USER_ID);
+
+        assertFalse(service.validateAndConsumeToken(USER_ID, PRODUCT_ID, token, "10.0.0.2"));
+        assertFalse(service.validateAndConsumeToken(USER_ID, PRODUCT_ID, "forged", IP));
+        assertFalse(service.validateAndConsumeToken(USER_ID, PRODUCT_ID + 1, token, IP));
+        assertFalse(service.validateAndConsumeToken(USER_ID, PRODUCT_ID, null, IP));
+
+        assertTrue(service.validateAndConsumeToken(USER_ID, PRODUCT_ID, token, IP));
+    }
+
+    @Test
+    void reissuedTokenReplacesPreviousOne() throws InterruptedException {
+        String first = generate(USER_ID);
+        // 令牌内容含毫秒时间戳
+        Thread.sleep(2);
+        String second = generate(USER_ID);
+        assertNotEquals(first, second);
+
+        assertFalse(service.validateAndConsumeToken(USER_ID, PRODUCT_ID, first, IP));
+        assertTrue(service.validateAndConsumeToken(USER_ID, PRODUCT_ID, second, IP));
+    }
+
+    @Test
+    void generationIsRateLimitedPerUser() {
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(generate(USER_ID));
+        }
+        assertNull(generate(USER_ID));
+        assertNotNull(generate(USER_ID + 1));
+    }
+
+    @Test
+    void concurrentConsumeSucceedsExactlyOnce() throws Exception {
+        String token = generate(USER_ID);
+        int threads = 16;
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return service.validateAndConsumeToken(USER_ID, PRODUCT_ID, token, IP);
+                }));
+            }
+            start.countDown();
+            int consumed = 0;
+            for (Future<Boolean> future : futures) {
+                if (future.get(30, TimeUnit.SECONDS)) {
+                    consumed++;
+                }
+            }
+            assertEquals(1, consumed);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String generate(Long userId) {
+        return service.generateEnhancedToken(userId, PRODUCT_ID, IP, null, 1, 90, true, "abcd");
+    }
+}
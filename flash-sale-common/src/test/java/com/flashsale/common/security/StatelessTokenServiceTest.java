@@ -0,0 +1,163 @@
+package com.flashsale.common.security;
+
+import com.flashsale.common.redis.RedisStandIn;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 无状态令牌服务测试：签名校验、一次性消费、密钥轮换
+ * @author 21311
+ */
+class StatelessTokenServiceTest {
+
+    private static final String USER_IP = "10.0.0.1";
+
+    private static RedisStandIn redis;
+
+    private final List<StatelessTokenService> nodes = new ArrayList<>();
+
+    @BeforeAll
+    static void startRedis() {
+        redis = RedisStandIn.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.flushAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(StatelessTokenService::destroy);
+    }
+
+    @Test
+    void tokenVerifiesOnceForItsOwnerOnly() {
+        StatelessTokenService service = newNode();
+        String token = service.issue(1L, 100L, USER_IP, 600);
+
+        assertTrue(StatelessTokenService.isStatelessToken(token));
+        assertFalse(service.verifyAndConsume(2L, 100L, token, USER_IP));
+        assertFalse(service.verifyAndConsume(1L, 101L, token, USER_IP));
+        assertFalse(service.verifyAndConsume(1L, 100L, token, "10.0.0.2"));
+        assertTrue(service.verifyAndConsume(1L, 100L, token, USER_IP));
+        assertFalse(service.verifyAndConsume(1L, 100L, token, USER_IP), "令牌只能消费一次");
+    }
+
+    @Test
+    void nullIdsAreRejectedWithoutException() {
+        StatelessTokenService service = newNode();
+        String token = service.issue(1L, 100L, USER_IP, 600);
+
+        assertFalse(service.verifyAndConsume(null, 100L, token, USER_IP));
+        assertFalse(service.verifyAndConsume(1L, null, token, USER_IP));
+        assertTrue(service.verifyAndConsume(1L, 100L, token, USER_IP));
+    }
+
+    @Test
+    void tamperedOrExpiredTokensAreRejected() {
+        StatelessTokenService service = newNode();
+        String token = service.issue(1L, 100L, USER_IP, 600);
+        String[] parts = token.split("\\.");
+
+        String otherPayload = service.issue(2L, 100L, USER_IP, 600).split("\\.")[2];
+        assertFalse(service.verifyAndConsume(2L, 100L,
+                parts[0] + "." + parts[1] + "." + otherPayload + "." + parts[3], USER_IP));
+        assertFalse(service.verifyAndConsume(1L, 100L, parts[0] + "." + parts[1] + "." + parts[2], USER_IP));
+        assertFalse(service.verifyAndConsume(1L, 100L, token.replace("s1.", "s2."), USER_IP));
+
+        String expired = service.issue(1L, 100L, USER_IP, 0);
+        assertFalse(service.verifyAndConsume(1L, 100L, expired, USER_IP));
+    }
+
+    @Test
+    void tokensSurviveRotationUntilTheirKeyIsEvicted() {
+        StatelessTokenService service = newNode();
+        String beforeRotation = service.issue(1L, 100L, USER_IP, 600);
+        String evicted = service.issue(2L, 100L, USER_IP, 600);
+
+        service.rotateKey();
+        String afterRotation = service.issue(1L, 200L, USER_IP, 600);
+        assertTrue(service.verifyAndConsume(1L, 100L, beforeRotation, USER_IP), "轮换后旧密钥仍可校验");
+        assertTrue(service.verifyAndConsume(1L, 200L, afterRotation, USER_IP));
+
+        // 共保留3个密钥，再轮换两次后最初的密钥被淘汰
+        service.rotateKey();
+        service.rotateKey();
+        assertFalse(service.verifyAndConsume(2L, 100L, evicted, USER_IP));
+    }
+
+    @Test
+    void otherNodesVerifyTokensSignedWithANewlyRotatedKey() {
+        StatelessTokenService nodeA = newNode();
+        StatelessTokenService nodeB = newNode();
+        nodeB.issue(9L, 9L, USER_IP, 600);
+
+        nodeA.rotateKey();
+        String token = nodeA.issue(1L, 100L, USER_IP, 600);
+        // 刚拉取过密钥环时限频，不为未知kid反复访问Redis
+        assertFalse(nodeB.verifyAndConsume(1L, 100L, token, USER_IP));
+
+        ReflectionTestUtils.setField(nodeB, "lastReloadTime", 0L);
+        assertTrue(nodeB.verifyAndConsume(1L, 100L, token, USER_IP), "本地没有新密钥时应重新拉取");
+    }
+
+    @Test
+    void concurrentRotationsAllocateDistinctKeyIds() throws Exception {
+        StatelessTokenService service = newNode();
+        service.issue(1L, 1L, USER_IP, 60);
+
+        int rotations = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(rotations);
+        List<Future<String>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < rotations; i++) {
+                futures.add(executor.submit(service::rotateKey));
+            }
+            Set<String> kids = new HashSet<>();
+            for (Future<String> future : futures) {
+                kids.add(future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(rotations, kids.size(), "每次轮换的密钥ID必须不同");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<Object, Object> ring = redis.stringRedisTemplate().opsForHash().entries("seckill:token:hmac:keys");
+        // 3个密钥 + active字段，当前密钥为最后分配的ID
+        assertEquals(4, ring.size());
+        assertEquals(String.valueOf(rotations + 1), ring.get("active"));
+    }
+
+    private StatelessTokenService newNode() {
+        StatelessTokenService service = new StatelessTokenService();
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", redis.stringRedisTemplate());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "consumedBitsLog2", 16);
+        nodes.add(service);
+        return service;
+    }
+}
@@ -3,6 +3,7 @@ package com.flashsale.order.service.impl;
 import com.flashsale.common.result.Result;
 import com.flashsale.common.result.ResultCode;
 import com.flashsale.common.dto.SeckillDTO;
+import com.flashsale.common.id.IdGenerator;
 import com.flashsale.common.mq.RabbitMQConfig;
 import com.flashsale.order.entity.FlashSaleOrder;
 import com.flashsale.order.mapper.FlashSaleOrderMapper;
@@ -17,7 +18,6 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
-import java.util.UUID;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -32,6 +32,9 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private FlashSaleOrderMapper flashSaleOrderMapper;
 
+    @Autowired
+    private IdGenerator idGenerator;
+
     @Autowired
     @Qualifier("orderRabbitTemplate")
     private RabbitTemplate rabbitTemplate;
@@ -239,6 +242,6 @@ public class OrderServiceImpl implements OrderService {
      * 生成订单号
      */
     private String generateOrderNo() {
-        return "FS" + System.currentTimeMillis() + UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+        return idGenerator.nextNo("FS");
     }
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.flashsale.payment.service.impl;
 
 import com.flashsale.common.result.Result;
+import com.flashsale.common.id.IdGenerator;
 import com.flashsale.common.result.PageResult;
 import com.flashsale.payment.dto.PaymentDTO;
 import com.flashsale.payment.entity.Payment;
@@ -18,7 +19,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -33,6 +33,9 @@ public class PaymentServiceImpl implements PaymentService {
     @Autowired
     private PaymentMapper paymentMapper;
 
+    @Autowired
+    private IdGenerator idGenerator;
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
     
@@ -363,7 +366,7 @@ public class PaymentServiceImpl implements PaymentService {
      * 生成支付流水号
      */
     private String generatePaymentNo() {
-        return "PAY" + System.currentTimeMillis() + UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+        return idGenerator.nextNo("PAY");
     }
 
     /**
@@ -10,6 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.util.List;
 
 /**
  * 商品控制器
@@ -55,6 +56,14 @@ public class ProductController {
         return productService.getProductDetail(id);
     }
 
+    /**
+     * 批量获取商品详情（内部接口）
+     */
+    @GetMapping("/batch")
+    public Result<List<ProductVO>> getProductDetails(@RequestParam List<Long> ids) {
+        return productService.getProductDetails(ids);
+    }
+
     /**
      * 分页查询商品列表
      */
@@ -18,6 +18,11 @@ public interface ProductMapper {
      */
     Product findById(Long id);
     
+    /**
+     * 根据ID批量查找商品
+     */
+    List<Product> findByIds(@Param("ids") List<Long> ids);
+    
     /**
      * 根据分类ID查找商品列表
      */
@@ -5,6 +5,8 @@ import com.flashsale.common.result.PageResult;
 import com.flashsale.product.dto.ProductDTO;
 import com.flashsale.product.vo.ProductVO;
 
+import java.util.List;
+
 
 /**
  * 商品服务接口
@@ -45,6 +47,14 @@ public interface ProductService {
      */
     Result<ProductVO> getProductDetail(Long id);
 
+    /**
+     * 批量获取商品详情
+     *
+     * @param ids 商品ID列表
+     * @return 存在的商品详情，不存在的ID直接跳过
+     */
+    Result<List<ProductVO>> getProductDetails(List<Long> ids);
+
     /**
      * 分页查询商品列表
      *
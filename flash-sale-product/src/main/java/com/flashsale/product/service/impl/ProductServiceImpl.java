@@ -14,8 +14,12 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -37,6 +41,8 @@ public class ProductServiceImpl implements ProductService {
     private static final String PRODUCT_STOCK_KEY = "product:stock:";
     private static final long CACHE_EXPIRE_TIME = 30;
     // 30分钟
+    private static final int MAX_BATCH_SIZE = 200;
+    // 批量查询单次上限
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -148,6 +154,55 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
+    @Override
+    public Result<List<ProductVO>> getProductDetails(List<Long> ids) {
+        try {
+            if (ids == null || ids.isEmpty()) {
+                return Result.success(new ArrayList<>());
+            }
+            List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+            if (distinctIds.size() > MAX_BATCH_SIZE) {
+                return Result.error("单次最多查询" + MAX_BATCH_SIZE + "个商品");
+            }
+
+            // 先批量读缓存
+            Map<Long, ProductVO> productMap = new HashMap<>(distinctIds.size() * 2);
+            List<String> keys = distinctIds.stream().map(id -> PRODUCT_CACHE_KEY + id).collect(Collectors.toList());
+            List<Object> cached = getProductsFromCache(keys);
+            List<Long> missIds = new ArrayList<>();
+            for (int i = 0; i < distinctIds.size(); i++) {
+                Object value = cached != null ? cached.get(i) : null;
+                if (value instanceof Product product) {
+                    ProductVO productVO = new ProductVO();
+                    BeanUtils.copyProperties(product, productVO);
+                    productMap.put(product.getId(), productVO);
+                } else {
+                    missIds.add(distinctIds.get(i));
+                }
+            }
+
+            // 未命中的一次IN查询回源并回填缓存
+            if (!missIds.isEmpty()) {
+                for (Product product : productMapper.findByIds(missIds)) {
+                    ProductVO productVO = new ProductVO();
+                    BeanUtils.copyProperties(product, productVO);
+                    productMap.put(product.getId(), productVO);
+                    cacheProduct(product);
+                }
+            }
+
+            // 按请求顺序返回
+            List<ProductVO> productVOList = distinctIds.stream()
+                    .map(productMap::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            return Result.success(productVOList);
+        } catch (Exception e) {
+            log.error("批量获取商品详情异常", e);
+            return Result.error("批量获取商品详情失败：" + e.getMessage());
+        }
+    }
+
     @Override
     public Result<PageResult<ProductVO>> listProducts(Integer page, Integer size, Long categoryId, String keyword) {
         try {
@@ -291,6 +346,18 @@ public class ProductServiceImpl implements ProductService {
         return null;
     }
 
+    /**
+     * 批量从缓存获取商品信息
+     */
+    private List<Object> getProductsFromCache(List<String> keys) {
+        try {
+            return redisTemplate.opsForValue().multiGet(keys);
+        } catch (Exception e) {
+            log.error("批量从缓存获取商品信息失败", e);
+            return null;
+        }
+    }
+
     /**
      * 删除商品缓存
      */
@@ -24,6 +24,16 @@ import org.springframework.context.annotation.Configuration;
 @EnableRabbit
 public class SeckillRabbitMQConfig extends RabbitMQConfig {
 
+    /**
+     * 库存同步批量消费的最大批次
+     */
+    public static final int STOCK_SYNC_BATCH_SIZE = 500;
+
+    /**
+     * 库存同步攒批的最长等待时间（毫秒），即合并写回数据库的周期
+     */
+    public static final long STOCK_SYNC_INTERVAL_MILLIS = 200;
+
     /**
      * 秒杀服务专用的ObjectMapper配置
      */
@@ -64,6 +74,25 @@ public class SeckillRabbitMQConfig extends RabbitMQConfig {
                 (Jackson2JsonMessageConverter) seckillJsonMessageConverter());
     }
 
+    /**
+     * 库存扣减同步的批量监听器容器工厂
+     * 单消费者批量拉取，同一商品的扣减合并为一条UPDATE，数据库写入成功后才确认消息
+     */
+    @Bean("seckillStockSyncContainerFactory")
+    public SimpleRabbitListenerContainerFactory seckillStockSyncContainerFactory(
+            ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = createBaseListenerContainerFactory(connectionFactory,
+                (Jackson2JsonMessageConverter) seckillJsonMessageConverter());
+        factory.setPrefetchCount(STOCK_SYNC_BATCH_SIZE);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(STOCK_SYNC_BATCH_SIZE);
+        factory.setReceiveTimeout(STOCK_SYNC_INTERVAL_MILLIS);
+        return factory;
+    }
+
     // ==================== 秒杀服务需要的交换机和队列配置 ====================
     
     /**
@@ -89,4 +118,28 @@ public class SeckillRabbitMQConfig extends RabbitMQConfig {
     public Binding seckillOrderStatusUpdateBinding() {
         return createOrderStatusUpdateBinding(seckillPaymentExchange(), seckillOrderStatusUpdateQueue());
     }
-} 
\ No newline at end of file
+
+    /**
+     * 秒杀直连交换机（库存扣减同步消息）
+     */
+    @Bean("seckillExchange")
+    public DirectExchange seckillExchange() {
+        return createSeckillExchange();
+    }
+
+    /**
+     * 库存扣减同步队列（Redis扣减后异步同步到MySQL）
+     */
+    @Bean("seckillStockDeductQueue")
+    public Queue seckillStockDeductQueue() {
+        return createStockDeductQueue();
+    }
+
+    /**
+     * 绑定库存扣减同步队列
+     */
+    @Bean("seckillStockDeductBinding")
+    public Binding seckillStockDeductBinding() {
+        return createStockDeductBinding(seckillExchange(), seckillStockDeductQueue());
+    }
+} 
@@ -0,0 +1,87 @@
+package com.flashsale.seckill.config;
+
+import com.flashsale.common.queue.FairRateLimiter;
+import com.flashsale.seckill.service.ActivityCatalogService;
+import com.flashsale.seckill.service.ProductDetailCacheService;
+import com.flashsale.seckill.service.QueueAdmissionService;
+import com.flashsale.seckill.service.SoldOutCacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 秒杀服务Redis配置类 - 发布订阅监听
+ * @author 21311
+ */
+@Slf4j
+@Configuration
+public class SeckillRedisConfig {
+
+    /**
+     * 订阅本地缓存失效通知：
+     * 售罄标记清除通知 - 清除本节点的售罄标记
+     * 商品详情缓存失效通知 - 清除本节点的商品详情本地缓存
+     * 排队准入通知 - 唤醒本节点上等待准入的用户连接
+     * 活动目录变更通知 - 重建本节点的活动目录快照
+     */
+    @Bean
+    public RedisMessageListenerContainer seckillRedisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                             RedisTemplate<String, Object> redisTemplate,
+                                                                             SoldOutCacheService soldOutCacheService,
+                                                                             ProductDetailCacheService productDetailCacheService,
+                                                                             QueueAdmissionService queueAdmissionService,
+                                                                             ActivityCatalogService activityCatalogService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> {
+            Long productId = readProductId(redisTemplate, message);
+            if (productId != null) {
+                soldOutCacheService.evictLocal(productId);
+            }
+        }, new ChannelTopic(SoldOutCacheService.SOLD_OUT_CLEAR_CHANNEL));
+        container.addMessageListener((message, pattern) -> {
+            Long productId = readProductId(redisTemplate, message);
+            if (productId != null) {
+                productDetailCacheService.evictLocal(productId);
+            }
+        }, new ChannelTopic(ProductDetailCacheService.PRODUCT_CACHE_EVICT_CHANNEL));
+        container.addMessageListener((message, pattern) -> {
+            try {
+                Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+                String[] parts = body != null ? body.toString().split(":") : new String[0];
+                if (parts.length == 2) {
+                    queueAdmissionService.onAdmitted(Long.valueOf(parts[1]), Long.valueOf(parts[0]));
+                }
+            } catch (Exception e) {
+                log.error("处理排队准入通知失败", e);
+            }
+        }, new ChannelTopic(FairRateLimiter.ADMISSION_CHANNEL));
+        container.addMessageListener((message, pattern) -> {
+            try {
+                Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+                activityCatalogService.onChangeNotified(body != null ? body.toString() : null);
+            } catch (Exception e) {
+                log.error("处理活动目录变更通知失败", e);
+            }
+        }, new ChannelTopic(ActivityCatalogService.ACTIVITY_CATALOG_CHANGED_CHANNEL));
+        return container;
+    }
+
+    /**
+     * 解析通知消息中的商品ID
+     */
+    private Long readProductId(RedisTemplate<String, Object> redisTemplate, Message message) {
+        try {
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            return body != null ? Long.valueOf(body.toString()) : null;
+        } catch (Exception e) {
+            log.error("解析缓存失效通知失败", e);
+            return null;
+        }
+    }
+}
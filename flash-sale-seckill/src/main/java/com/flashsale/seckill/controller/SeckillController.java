@@ -2,12 +2,16 @@ package com.flashsale.seckill.controller;
 
 import com.flashsale.common.dto.SeckillDTO;
 import com.flashsale.common.result.Result;
+import com.flashsale.common.result.ResultCode;
 import com.flashsale.common.result.PageResult;
 import com.flashsale.seckill.dto.FlashSaleActivityDTO;
 import com.flashsale.seckill.dto.FlashSaleProductDTO;
 import com.flashsale.seckill.service.FlashSaleActivityService;
 import com.flashsale.seckill.service.FlashSaleProductService;
+import com.flashsale.seckill.service.HotResponseCacheService;
+import com.flashsale.seckill.service.QueueAdmissionService;
 import com.flashsale.seckill.service.SeckillService;
+import com.flashsale.seckill.service.SoldOutCacheService;
 import com.flashsale.seckill.service.impl.SeckillServiceImpl;
 import com.flashsale.seckill.vo.FlashSaleActivityVO;
 import com.flashsale.seckill.vo.FlashSaleProductVO;
@@ -18,10 +22,13 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -42,12 +49,37 @@ public class SeckillController {
     @Autowired
     private FlashSaleProductService productService;
 
+    @Autowired
+    private SoldOutCacheService soldOutCacheService;
+
+    @Autowired
+    private QueueAdmissionService queueAdmissionService;
+
+    @Autowired
+    private HotResponseCacheService hotResponseCacheService;
+
+    /**
+     * 排队准入长轮询最长等待时间（秒）
+     */
+    private static final int MAX_QUEUE_AWAIT_SECONDS = 60;
+
+    /**
+     * 结果查询被限流时的响应（预先序列化）
+     */
+    private static final byte[] QUERY_BLOCKED_RESPONSE =
+            "{\"code\":429,\"message\":\"查询请求过于频繁，请稍后重试\",\"data\":null}".getBytes(StandardCharsets.UTF_8);
+
     /**
      * 提交秒杀请求
      */
     @PostMapping("/submit")
     @SentinelResource(value = "doSeckill", blockHandler = "handleBlock")
     public Result<String> doSeckill(@RequestBody @Valid SeckillDTO seckillDTO, HttpServletRequest request) {
+        // 本节点已知售罄的商品直接拒绝，不进入排队、校验和库存扣减
+        if (soldOutCacheService.isSoldOut(seckillDTO.getFlashSaleProductId())) {
+            return Result.error(ResultCode.PRODUCT_STOCK_NOT_ENOUGH.getMessage());
+        }
+
         log.info("用户{}执行秒杀，商品ID：{}", seckillDTO.getUserId(), seckillDTO.getFlashSaleProductId());
         
         return seckillService.doSeckill(seckillDTO);
@@ -56,11 +88,11 @@ public class SeckillController {
     /**
      * 查询秒杀结果
      */
-    @GetMapping("/result/{seckillId}")
+    @GetMapping(value = "/result/{seckillId}", produces = MediaType.APPLICATION_JSON_VALUE)
     @SentinelResource(value = "seckill-query", blockHandler = "handleQueryBlock")
-    public Result<String> getSeckillResult(@PathVariable String seckillId) {
-        log.info("查询秒杀结果: {}", seckillId);
-        return seckillService.getSeckillResult(seckillId);
+    public byte[] getSeckillResult(@PathVariable String seckillId) {
+        log.debug("查询秒杀结果: {}", seckillId);
+        return hotResponseCacheService.getSeckillResult(seckillId);
     }
 
     /**
@@ -119,6 +151,22 @@ public class SeckillController {
         return activityService.listActivities(page, size, status);
     }
 
+    /**
+     * 获取正在进行的活动列表（直接输出活动目录快照中预序列化的JSON）
+     */
+    @GetMapping(value = "/activity/active", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] getActiveActivities() {
+        return activityService.getActiveActivitiesJson();
+    }
+
+    /**
+     * 获取即将开始的活动列表（直接输出活动目录快照中预序列化的JSON）
+     */
+    @GetMapping(value = "/activity/upcoming", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] getUpcomingActivities() {
+        return activityService.getUpcomingActivitiesJson();
+    }
+
     /**
      * 获取活动详情
      */
@@ -188,18 +236,19 @@ public class SeckillController {
      * 预热秒杀数据
      */
     @PostMapping("/preload/{activityId}")
-    public Result<Void> preloadSeckillProducts(@PathVariable Long activityId) {
-        log.info("预热秒杀数据，活动ID：{}", activityId);
-        return seckillService.preloadSeckillProducts(activityId);
+    public Result<Void> preloadSeckillProducts(@PathVariable Long activityId,
+                                               @RequestParam(defaultValue = "1") Integer bucketCount) {
+        log.info("预热秒杀数据，活动ID：{}，库存分桶数：{}", activityId, bucketCount);
+        return seckillService.preloadSeckillProducts(activityId, bucketCount);
     }
     
     /**
      * 获取秒杀库存
      */
-    @GetMapping("/stock/{flashSaleProductId}")
-    public Result<Integer> getSeckillStock(@PathVariable Long flashSaleProductId) {
-        log.info("获取秒杀库存，商品ID：{}", flashSaleProductId);
-        return seckillService.getSeckillStock(flashSaleProductId);
+    @GetMapping(value = "/stock/{flashSaleProductId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] getSeckillStock(@PathVariable Long flashSaleProductId) {
+        log.debug("获取秒杀库存，商品ID：{}", flashSaleProductId);
+        return hotResponseCacheService.getSeckillStock(flashSaleProductId);
     }
     
     /**
@@ -242,6 +291,11 @@ public class SeckillController {
     @PostMapping("/async")
     @SentinelResource(value = "seckill-async", blockHandler = "handleAsyncBlock")
     public Result<String> doSeckillAsync(@RequestBody @Valid SeckillDTO seckillDTO, HttpServletRequest request) {
+        // 本节点已知售罄的商品直接拒绝，不入队
+        if (soldOutCacheService.isSoldOut(seckillDTO.getFlashSaleProductId())) {
+            return Result.error(ResultCode.PRODUCT_STOCK_NOT_ENOUGH.getMessage());
+        }
+
         log.info("收到异步秒杀请求，用户ID：{}，商品ID：{}", seckillDTO.getUserId(), seckillDTO.getFlashSaleProductId());
         
         // 补充请求信息
@@ -276,6 +330,20 @@ public class SeckillController {
         return ((SeckillServiceImpl) seckillService).checkQueueStatus(userId, flashSaleProductId);
     }
 
+    /**
+     * 等待排队准入（长轮询）
+     * 排队中的用户挂起等待，获准进入时立即返回，超时后返回当前队列状态，客户端收到后再次发起即可
+     */
+    @GetMapping("/queue/await")
+    @SentinelResource(value = "queue-await", blockHandler = "handleQueueAwaitBlock")
+    public DeferredResult<Result<Object>> awaitQueueAdmission(@RequestParam Long userId,
+                                                              @RequestParam Long flashSaleProductId,
+                                                              @RequestParam(defaultValue = "30") Integer timeoutSeconds) {
+        log.info("等待排队准入，用户ID：{}，商品ID：{}", userId, flashSaleProductId);
+        long timeoutMillis = Math.max(1, Math.min(timeoutSeconds, MAX_QUEUE_AWAIT_SECONDS)) * 1000L;
+        return queueAdmissionService.awaitAdmission(userId, flashSaleProductId, timeoutMillis);
+    }
+
     @Setter
     @Getter
     public static class SeckillTokenRequest {
@@ -349,9 +417,9 @@ public class SeckillController {
         return Result.error(429, "请求过于频繁，请稍后重试");
     }
 
-    public Result<String> handleQueryBlock(String seckillId, BlockException ex) {
+    public byte[] handleQueryBlock(String seckillId, BlockException ex) {
         log.warn("查询请求被限流: {}", ex.getMessage());
-        return Result.error(429, "查询请求过于频繁，请稍后重试");
+        return QUERY_BLOCKED_RESPONSE;
     }
 
     public Result<String> handleEnhancedTokenBlock(EnhancedTokenRequest tokenRequest, HttpServletRequest request, BlockException ex) {
@@ -382,4 +450,15 @@ public class SeckillController {
         log.warn("队列状态查询被限流，用户ID：{}，商品ID：{}", userId, flashSaleProductId);
         return Result.error("查询频次过高，请稍后重试");
     }
+
+    /**
+     * 等待排队准入限流处理
+     */
+    public DeferredResult<Result<Object>> handleQueueAwaitBlock(Long userId, Long flashSaleProductId,
+                                                                Integer timeoutSeconds, BlockException ex) {
+        log.warn("等待排队准入被限流，用户ID：{}，商品ID：{}", userId, flashSaleProductId);
+        DeferredResult<Result<Object>> deferred = new DeferredResult<>();
+        deferred.setResult(Result.error("查询频次过高，请稍后重试"));
+        return deferred;
+    }
 } 
\ No newline at end of file
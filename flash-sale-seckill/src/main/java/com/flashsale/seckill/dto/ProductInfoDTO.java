@@ -0,0 +1,39 @@
+package com.flashsale.seckill.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * 商品服务返回的商品基础信息，只保留秒杀展示用到的字段
+ * @author 21311
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProductInfoDTO implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 商品ID
+     */
+    private Long id;
+
+    /**
+     * 商品名称
+     */
+    private String name;
+
+    /**
+     * 主图片URL
+     */
+    private String mainImage;
+
+    /**
+     * 原价
+     */
+    private BigDecimal price;
+}
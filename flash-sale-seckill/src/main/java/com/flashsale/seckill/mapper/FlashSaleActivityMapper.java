@@ -24,6 +24,16 @@ public interface FlashSaleActivityMapper {
      */
     FlashSaleActivity findById(@Param("id") Long id);
 
+    /**
+     * 根据ID批量查找活动
+     */
+    List<FlashSaleActivity> findByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 查询所有活动，按创建时间倒序
+     */
+    List<FlashSaleActivity> findAll();
+
     /**
      * 根据ID更新活动
      */
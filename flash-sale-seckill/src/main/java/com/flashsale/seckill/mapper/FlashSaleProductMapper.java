@@ -24,6 +24,11 @@ public interface FlashSaleProductMapper {
      */
     FlashSaleProduct findById(@Param("id") Long id);
 
+    /**
+     * 根据ID批量查找秒杀商品
+     */
+    List<FlashSaleProduct> findByIds(@Param("ids") List<Long> ids);
+
     /**
      * 根据ID更新秒杀商品
      */
@@ -44,6 +49,11 @@ public interface FlashSaleProductMapper {
      */
     List<FlashSaleProduct> findByActivityId(@Param("activityId") Long activityId);
 
+    /**
+     * 查询所有关联了活动的秒杀商品（只含ID和活动ID）
+     */
+    List<FlashSaleProduct> findActivityProductIds();
+
     /**
      * 分页查询秒杀商品列表
      */
@@ -67,6 +77,11 @@ public interface FlashSaleProductMapper {
      */
     int decreaseStock(@Param("id") Long id, @Param("quantity") Integer quantity);
 
+    /**
+     * 扣减秒杀商品库存并增加已售数量
+     */
+    int applyStockDeduction(@Param("id") Long id, @Param("quantity") Integer quantity);
+
     /**
      * 增加秒杀商品库存
      */
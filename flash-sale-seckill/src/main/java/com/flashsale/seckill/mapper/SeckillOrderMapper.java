@@ -19,6 +19,11 @@ public interface SeckillOrderMapper {
      */
     int insert(SeckillOrder order);
 
+    /**
+     * 批量插入订单
+     */
+    int insertBatch(@Param("orders") List<SeckillOrder> orders);
+
     /**
      * 根据ID查找订单
      */
@@ -34,6 +39,11 @@ public interface SeckillOrderMapper {
      */
     Integer countUserBought(@Param("userId") Long userId, @Param("flashSaleProductId") Long flashSaleProductId);
 
+    /**
+     * 查询下过单的用户ID（用于构建已购买过滤器）
+     */
+    List<Long> findPurchasedUserIds(@Param("flashSaleProductId") Long flashSaleProductId);
+
     /**
      * 更新订单状态
      */
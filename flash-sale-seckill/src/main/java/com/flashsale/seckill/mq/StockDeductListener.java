@@ -0,0 +1,131 @@
+package com.flashsale.seckill.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.common.mq.RabbitMQConfig;
+import com.flashsale.common.mq.dto.StockDeductMessage;
+import com.flashsale.seckill.service.FlashSaleProductService;
+import com.rabbitmq.client.Channel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 库存扣减同步监听器 - 将Redis中已完成的库存扣减合并后写回MySQL
+ * 秒杀期间Redis库存为准，每笔扣减的消息即持久化的增量日志：
+ * 批量拉取一批消息，按商品合并扣减量，每个商品一条UPDATE，写入成功后才确认对应消息，宕机时未确认的消息会重新投递；
+ * 合并UPDATE因库存校验未命中时逐条重试，仍无法写入的消息拒绝进入死信队列，不会被确认丢弃
+ * @author 21311
+ */
+@Slf4j
+@Component
+public class StockDeductListener {
+
+    @Autowired
+    private FlashSaleProductService productService;
+
+    @Autowired
+    @Qualifier("seckillObjectMapper")
+    private ObjectMapper objectMapper;
+
+    @RabbitListener(queues = RabbitMQConfig.STOCK_DEDUCT_QUEUE,
+                    containerFactory = "seckillStockSyncContainerFactory")
+    public void onStockDeduct(List<Message> messages, Channel channel) throws IOException {
+        // 1. 按秒杀商品合并扣减量
+        Map<Long, StockDelta> deltas = new LinkedHashMap<>();
+        for (Message message : messages) {
+            long deliveryTag = message.getMessageProperties().getDeliveryTag();
+            try {
+                StockDeductMessage deductMessage = objectMapper.readValue(message.getBody(), StockDeductMessage.class);
+
+                if (deductMessage.getFlashSaleProductId() == null || deductMessage.getQuantity() == null) {
+                    log.error("库存扣减同步消息缺少必要字段: {}", deductMessage);
+                    channel.basicNack(deliveryTag, false, false);
+                    continue;
+                }
+
+                StockDelta delta = deltas.computeIfAbsent(deductMessage.getFlashSaleProductId(), id -> new StockDelta());
+                delta.quantity += deductMessage.getQuantity();
+                delta.deliveryTags.add(deliveryTag);
+                delta.quantities.add(deductMessage.getQuantity());
+            } catch (Exception e) {
+                log.error("解析库存扣减同步消息失败: {}", e.getMessage(), e);
+                channel.basicNack(deliveryTag, false, false);
+            }
+        }
+
+        // 2. 每个商品一条UPDATE写回，成功确认、失败拒绝进入死信队列，互不影响
+        for (Map.Entry<Long, StockDelta> entry : deltas.entrySet()) {
+            Long flashSaleProductId = entry.getKey();
+            StockDelta delta = entry.getValue();
+            Boolean synced;
+            try {
+                synced = productService.syncStockDeduction(flashSaleProductId, delta.quantity).getData();
+            } catch (Exception e) {
+                log.error("库存扣减合并写回失败: productId={}, quantity={}", flashSaleProductId, delta.quantity, e);
+                synced = null;
+            }
+
+            if (Boolean.TRUE.equals(synced)) {
+                for (Long deliveryTag : delta.deliveryTags) {
+                    channel.basicAck(deliveryTag, false);
+                }
+            } else if (synced == null) {
+                for (Long deliveryTag : delta.deliveryTags) {
+                    channel.basicNack(deliveryTag, false, false);
+                }
+            } else {
+                // 合并扣减量超过数据库库存，逐条写入，只有真正无法写入的消息进入死信队列
+                applyOneByOne(flashSaleProductId, delta, channel);
+            }
+        }
+
+        log.debug("库存扣减合并写回完成: messages={}, products={}", messages.size(), deltas.size());
+    }
+
+    /**
+     * 逐条写回单个商品的扣减，写入成功确认，未生效或失败拒绝进入死信队列
+     */
+    private void applyOneByOne(Long flashSaleProductId, StockDelta delta, Channel channel) throws IOException {
+        int rejected = 0;
+        for (int i = 0; i < delta.deliveryTags.size(); i++) {
+            long deliveryTag = delta.deliveryTags.get(i);
+            int quantity = delta.quantities.get(i);
+            boolean applied;
+            try {
+                applied = Boolean.TRUE.equals(productService.syncStockDeduction(flashSaleProductId, quantity).getData());
+            } catch (Exception e) {
+                log.error("库存扣减写回失败: productId={}, quantity={}", flashSaleProductId, quantity, e);
+                applied = false;
+            }
+
+            if (applied) {
+                channel.basicAck(deliveryTag, false);
+            } else {
+                channel.basicNack(deliveryTag, false, false);
+                rejected++;
+            }
+        }
+        if (rejected > 0) {
+            log.error("数据库库存不足以写回Redis扣减，未写入的消息已进入死信队列，需人工对账: productId={}, messages={}, rejected={}",
+                    flashSaleProductId, delta.deliveryTags.size(), rejected);
+        }
+    }
+
+    /**
+     * 单个商品在本批中的合并扣减
+     */
+    private static class StockDelta {
+        private int quantity;
+        private final List<Long> deliveryTags = new ArrayList<>();
+        private final List<Integer> quantities = new ArrayList<>();
+    }
+}
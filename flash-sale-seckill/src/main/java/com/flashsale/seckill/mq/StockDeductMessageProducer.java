@@ -0,0 +1,41 @@
+package com.flashsale.seckill.mq;
+
+import com.flashsale.common.mq.RabbitMQConfig;
+import com.flashsale.common.mq.dto.StockDeductMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * 库存扣减同步消息生产者
+ * @author 21311
+ */
+@Slf4j
+@Component
+public class StockDeductMessageProducer {
+
+    @Autowired
+    @Qualifier("seckillRabbitTemplate")
+    private RabbitTemplate rabbitTemplate;
+
+    /**
+     * 发送库存扣减同步消息（Redis扣减成功后异步同步到MySQL）
+     */
+    public void sendStockDeductMessage(Long productId, Long flashSaleProductId, Integer quantity,
+                                       String orderNo, Long userId) {
+        StockDeductMessage message = new StockDeductMessage(productId, flashSaleProductId, quantity, orderNo, userId);
+        message.setMessageId(UUID.randomUUID().toString());
+
+        rabbitTemplate.convertAndSend(
+            RabbitMQConfig.SECKILL_EXCHANGE,
+            RabbitMQConfig.STOCK_DEDUCT_ROUTING_KEY,
+            message
+        );
+
+        log.debug("库存扣减同步消息发送成功，订单号: {}, 秒杀商品ID: {}", orderNo, flashSaleProductId);
+    }
+}
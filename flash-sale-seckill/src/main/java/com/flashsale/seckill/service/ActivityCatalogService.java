@@ -0,0 +1,41 @@
+package com.flashsale.seckill.service;
+
+/**
+ * 活动目录服务接口 - 本地不可变快照
+ * 活动和活动下的商品在内存中保存为一份快照，读请求通过原子引用无锁读取；
+ * 管理端变更后重建快照并通过Redis广播通知其他节点重建
+ * @author 21311
+ */
+public interface ActivityCatalogService {
+
+    /**
+     * Redis发布订阅频道：活动目录变更通知
+     */
+    String ACTIVITY_CATALOG_CHANGED_CHANNEL = "seckill:activity:catalog:changed";
+
+    /**
+     * 获取当前快照，越过活动开始/结束时间点时自动重建
+     *
+     * @return 当前快照，从未成功构建时返回null（调用方回退数据库查询）
+     */
+    ActivityCatalogSnapshot getSnapshot();
+
+    /**
+     * 立即从数据库重建本节点快照
+     *
+     * @return 新快照，构建失败时返回null
+     */
+    ActivityCatalogSnapshot rebuild();
+
+    /**
+     * 活动或活动商品发生变更：事务提交后重建本节点快照并广播通知其他节点
+     */
+    void publishChange();
+
+    /**
+     * 收到变更广播时重建本节点快照，本节点自己发出的通知忽略
+     *
+     * @param sourceInstanceId 发出通知的节点实例ID
+     */
+    void onChangeNotified(String sourceInstanceId);
+}
@@ -0,0 +1,173 @@
+package com.flashsale.seckill.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.common.result.Result;
+import com.flashsale.seckill.vo.FlashSaleActivityVO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * 活动目录快照 - 构建后不再修改，整体替换
+ * 包含全部活动（按创建时间倒序）、活动下的秒杀商品ID，以及按构建时刻计算好的进行中/即将开始列表和其JSON字节；
+ * 最近一个活动开始或结束的时间点之后，进行中/即将开始列表失效，需要重建
+ * 快照中的VO对象被所有请求共享，调用方只能读取，不得修改
+ * @author 21311
+ */
+@Slf4j
+public final class ActivityCatalogSnapshot {
+
+    private final long version;
+    private final long buildTime;
+    private final long expireTime;
+    private final List<FlashSaleActivityVO> activities;
+    private final Map<Long, FlashSaleActivityVO> activityById;
+    private final Map<Long, List<Long>> productIdsByActivity;
+    private final List<FlashSaleActivityVO> activeActivities;
+    private final List<FlashSaleActivityVO> upcomingActivities;
+    private final byte[] activeActivitiesJson;
+    private final byte[] upcomingActivitiesJson;
+
+    /**
+     * @param version              快照版本号，单调递增
+     * @param buildTime            构建时刻（毫秒）
+     * @param activities           全部活动，按创建时间倒序
+     * @param productIdsByActivity 活动ID -> 秒杀商品ID列表
+     * @param objectMapper         预序列化使用的ObjectMapper，为null时不预序列化
+     */
+    public ActivityCatalogSnapshot(long version, long buildTime, List<FlashSaleActivityVO> activities,
+                                   Map<Long, List<Long>> productIdsByActivity, ObjectMapper objectMapper) {
+        this.version = version;
+        this.buildTime = buildTime;
+        this.activities = Collections.unmodifiableList(new ArrayList<>(activities));
+
+        Map<Long, FlashSaleActivityVO> byId = new HashMap<>(activities.size() * 2);
+        for (FlashSaleActivityVO activity : activities) {
+            byId.put(activity.getId(), activity);
+        }
+        this.activityById = Collections.unmodifiableMap(byId);
+
+        Map<Long, List<Long>> productIds = new HashMap<>(productIdsByActivity.size() * 2);
+        productIdsByActivity.forEach((activityId, ids) -> productIds.put(activityId, List.copyOf(ids)));
+        this.productIdsByActivity = Collections.unmodifiableMap(productIds);
+
+        // 与 findActiveActivities / findUpcomingActivities 的条件和排序保持一致
+        Comparator<FlashSaleActivityVO> byStartTime = Comparator.comparing(FlashSaleActivityVO::getStartTime);
+        this.activeActivities = activities.stream()
+                .filter(a -> Integer.valueOf(1).equals(a.getStatus()) && a.getStartTime() != null && a.getEndTime() != null
+                        && a.getStartTime().getTime() <= buildTime && a.getEndTime().getTime() > buildTime)
+                .sorted(byStartTime)
+                .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+        this.upcomingActivities = activities.stream()
+                .filter(a -> Integer.valueOf(0).equals(a.getStatus()) && a.getStartTime() != null
+                        && a.getStartTime().getTime() > buildTime)
+                .sorted(byStartTime)
+                .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+
+        // 构建时刻之后最近的一个开始/结束时间点
+        long nextBoundary = Long.MAX_VALUE;
+        for (FlashSaleActivityVO activity : activities) {
+            nextBoundary = nextBoundary(nextBoundary, activity.getStartTime() != null ? activity.getStartTime().getTime() : null);
+            nextBoundary = nextBoundary(nextBoundary, activity.getEndTime() != null ? activity.getEndTime().getTime() : null);
+        }
+        this.expireTime = nextBoundary;
+
+        this.activeActivitiesJson = serialize(objectMapper, activeActivities);
+        this.upcomingActivitiesJson = serialize(objectMapper, upcomingActivities);
+    }
+
+    private long nextBoundary(long current, Long time) {
+        return time != null && time > buildTime && time < current ? time : current;
+    }
+
+    private static byte[] serialize(ObjectMapper objectMapper, List<FlashSaleActivityVO> activities) {
+        if (objectMapper == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsBytes(Result.success(activities));
+        } catch (Exception e) {
+            log.warn("活动列表预序列化失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 当前时间是否已越过某个活动的开始或结束时间点
+     */
+    public boolean isExpired(long now) {
+        return now >= expireTime;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * 全部活动，按创建时间倒序
+     */
+    public List<FlashSaleActivityVO> getActivities() {
+        return activities;
+    }
+
+    /**
+     * 按状态过滤的活动，按创建时间倒序
+     *
+     * @param status 活动状态，为null时返回全部
+     */
+    public List<FlashSaleActivityVO> getActivities(Integer status) {
+        if (status == null) {
+            return activities;
+        }
+        return activities.stream()
+                .filter(activity -> Objects.equals(status, activity.getStatus()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 根据ID获取活动，不存在时返回null
+     */
+    public FlashSaleActivityVO getActivity(Long activityId) {
+        return activityById.get(activityId);
+    }
+
+    /**
+     * 活动下的秒杀商品ID
+     */
+    public List<Long> getProductIds(Long activityId) {
+        return productIdsByActivity.getOrDefault(activityId, Collections.emptyList());
+    }
+
+    public List<FlashSaleActivityVO> getActiveActivities() {
+        return activeActivities;
+    }
+
+    public List<FlashSaleActivityVO> getUpcomingActivities() {
+        return upcomingActivities;
+    }
+
+    /**
+     * 进行中活动列表的完整响应JSON，未预序列化时为null；返回的数组不得修改
+     */
+    public byte[] getActiveActivitiesJson() {
+        return activeActivitiesJson;
+    }
+
+    /**
+     * 即将开始活动列表的完整响应JSON，未预序列化时为null；返回的数组不得修改
+     */
+    public byte[] getUpcomingActivitiesJson() {
+        return upcomingActivitiesJson;
+    }
+}
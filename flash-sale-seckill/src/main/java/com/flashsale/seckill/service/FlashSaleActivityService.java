@@ -57,6 +57,16 @@ public interface FlashSaleActivityService {
      * 获取即将开始的活动列表
      */
     Result<List<FlashSaleActivityVO>> getUpcomingActivities();
+
+    /**
+     * 获取正在进行的活动列表，直接返回序列化好的完整响应JSON
+     */
+    byte[] getActiveActivitiesJson();
+
+    /**
+     * 获取即将开始的活动列表，直接返回序列化好的完整响应JSON
+     */
+    byte[] getUpcomingActivitiesJson();
     
     /**
      * 获取活动统计信息
@@ -63,6 +63,11 @@ public interface FlashSaleProductService {
      */
     Result<Boolean> decreaseStock(Long id, Integer quantity);
 
+    /**
+     * 同步Redis库存扣减到数据库（不再修改Redis库存），quantity可以是多笔扣减合并后的总量
+     */
+    Result<Boolean> syncStockDeduction(Long id, Integer quantity);
+
     /**
      * 增加商品库存
      */
@@ -83,6 +88,11 @@ public interface FlashSaleProductService {
      */
     Result<Void> preloadProductsToRedis(Long activityId);
 
+    /**
+     * 预热秒杀商品到Redis，并将每个商品的库存拆分为多个分桶
+     */
+    Result<Void> preloadProductsToRedis(Long activityId, Integer bucketCount);
+
     /**
      * 获取商品库存
      */
@@ -0,0 +1,25 @@
+package com.flashsale.seckill.service;
+
+/**
+ * 热点查询响应缓存服务接口
+ * 缓存序列化好的完整响应字节，过期后先返回旧值并在后台刷新，轮询请求不再构造Result和执行Jackson序列化
+ * @author 21311
+ */
+public interface HotResponseCacheService {
+
+    /**
+     * 获取秒杀结果查询的响应JSON
+     *
+     * @param seckillId 秒杀ID（订单号）
+     * @return 完整响应JSON，返回的数组不得修改
+     */
+    byte[] getSeckillResult(String seckillId);
+
+    /**
+     * 获取秒杀库存查询的响应JSON
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @return 完整响应JSON，返回的数组不得修改
+     */
+    byte[] getSeckillStock(Long flashSaleProductId);
+}
@@ -0,0 +1,70 @@
+package com.flashsale.seckill.service;
+
+import com.flashsale.seckill.vo.FlashSaleProductVO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 秒杀商品详情缓存服务接口 - 本地Caffeine(L1) + Redis(L2)两级缓存
+ * 只缓存商品、活动和基础商品的静态信息，库存和是否可秒杀在读取时实时计算
+ * @author 21311
+ */
+public interface ProductDetailCacheService {
+
+    /**
+     * Redis发布订阅频道：商品详情缓存失效通知
+     */
+    String PRODUCT_CACHE_EVICT_CHANNEL = "seckill:product:cache:evict";
+
+    /**
+     * 获取缓存的商品详情，先查本地缓存，再查Redis
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @return 缓存的商品详情，未命中时返回null
+     */
+    CachedProductDetail get(Long flashSaleProductId);
+
+    /**
+     * 写入两级缓存
+     *
+     * @param detail 商品详情
+     */
+    void put(CachedProductDetail detail);
+
+    /**
+     * 删除两级缓存并广播通知所有节点清除本地缓存
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     */
+    void evict(Long flashSaleProductId);
+
+    /**
+     * 仅清除本节点的本地缓存（收到广播时使用）
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     */
+    void evictLocal(Long flashSaleProductId);
+
+    /**
+     * 缓存的商品详情
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    class CachedProductDetail implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 商品详情（静态字段）
+         */
+        private FlashSaleProductVO product;
+
+        /**
+         * 所属活动状态，无活动时为null
+         */
+        private Integer activityStatus;
+    }
+}
@@ -0,0 +1,31 @@
+package com.flashsale.seckill.service;
+
+import com.flashsale.seckill.dto.ProductInfoDTO;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 商品服务客户端接口 - 非阻塞
+ * 每次请求带超时；同一商品的并发查询合并为一次远程调用
+ * @author 21311
+ */
+public interface ProductInfoClient {
+
+    /**
+     * 查询单个商品信息
+     *
+     * @param productId 商品ID
+     * @return 商品信息，商品不存在时为null；超时或调用失败时异常完成
+     */
+    CompletableFuture<ProductInfoDTO> getProductInfo(Long productId);
+
+    /**
+     * 批量查询商品信息，一次远程调用
+     *
+     * @param productIds 商品ID集合
+     * @return 商品ID -> 商品信息，不存在的商品不在结果中；超时或调用失败时异常完成
+     */
+    CompletableFuture<Map<Long, ProductInfoDTO>> getProductInfos(Collection<Long> productIds);
+}
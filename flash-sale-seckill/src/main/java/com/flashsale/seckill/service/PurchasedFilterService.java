@@ -0,0 +1,43 @@
+package com.flashsale.seckill.service;
+
+/**
+ * 已购买过滤器服务接口
+ * 每个秒杀商品一个Redis位图布隆过滤器，记录下过单的用户；
+ * 过滤器判定"未购买"时一定未购买，可跳过数据库购买数量统计，判定"可能已购买"时再查数据库
+ * @author 21311
+ */
+public interface PurchasedFilterService {
+
+    /**
+     * 判断用户是否可能已购买该商品，一次Redis调用
+     * 过滤器尚未构建完成或Redis异常时返回true，由调用方查数据库；未构建完成时同时提交后台重建，不阻塞调用方
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @param userId 用户ID
+     * @return false-一定未购买，true-可能已购买
+     */
+    boolean mightHavePurchased(Long flashSaleProductId, Long userId);
+
+    /**
+     * 记录用户下单，订单写入成功后调用，失败只记录日志
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @param userId 用户ID
+     */
+    void recordPurchase(Long flashSaleProductId, Long userId);
+
+    /**
+     * 从数据库重建商品的过滤器
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @return 是否重建成功（其他节点正在重建时返回false）
+     */
+    boolean rebuild(Long flashSaleProductId);
+
+    /**
+     * 提交后台重建后立即返回，同一商品已在本节点排队或重建中时忽略
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     */
+    void rebuildAsync(Long flashSaleProductId);
+}
@@ -0,0 +1,38 @@
+package com.flashsale.seckill.service;
+
+import com.flashsale.common.result.Result;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * 排队准入服务接口 - 排队用户以长轮询等待准入通知，代替反复查询队列状态
+ * @author 21311
+ */
+public interface QueueAdmissionService {
+
+    /**
+     * 查询队列状态
+     *
+     * @param userId 用户ID
+     * @param flashSaleProductId 秒杀商品ID
+     * @return 队列状态
+     */
+    Result<Object> getQueueStatus(Long userId, Long flashSaleProductId);
+
+    /**
+     * 等待准入：用户已在处理中或不在队列时立即返回，否则挂起直到收到准入通知或超时
+     *
+     * @param userId 用户ID
+     * @param flashSaleProductId 秒杀商品ID
+     * @param timeoutMillis 最长等待时间（毫秒）
+     * @return 异步返回的队列状态
+     */
+    DeferredResult<Result<Object>> awaitAdmission(Long userId, Long flashSaleProductId, long timeoutMillis);
+
+    /**
+     * 处理准入通知，唤醒本节点上等待该用户的连接
+     *
+     * @param userId 用户ID
+     * @param flashSaleProductId 秒杀商品ID
+     */
+    void onAdmitted(Long userId, Long flashSaleProductId);
+}
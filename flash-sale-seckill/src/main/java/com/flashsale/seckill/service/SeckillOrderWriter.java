@@ -0,0 +1,41 @@
+package com.flashsale.seckill.service;
+
+import com.flashsale.seckill.entity.SeckillOrder;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 秒杀订单写入服务接口 - 组提交
+ * 并发请求的订单先进入内存队列，攒够一批或等待数毫秒后以一条多行INSERT写入，减少事务和网络往返次数
+ * @author 21311
+ */
+public interface SeckillOrderWriter {
+
+    /**
+     * 提交订单，写入完成后future返回数据库生成的订单ID
+     * 写入线程取出订单前调用cancel可取消写入，返回true时保证订单不会被写入
+     *
+     * @param order 秒杀订单
+     * @return 写入结果，写入失败或队列已满时异常完成
+     */
+    CompletableFuture<Long> submit(SeckillOrder order);
+
+    /**
+     * 等待已提交的订单写入完成，最多等待配置的超时时间
+     * 超时时若订单尚未开始写入则取消写入并抛出异常，调用方可安全回滚库存；已开始写入时等待本次写入的结果
+     *
+     * @param future submit返回的写入结果
+     * @return 数据库生成的订单ID
+     * @throws RuntimeException 写入失败或超时取消时抛出
+     */
+    Long await(CompletableFuture<Long> future);
+
+    /**
+     * 提交订单并等待写入完成，等待规则同 {@link #await(CompletableFuture)}
+     *
+     * @param order 秒杀订单
+     * @return 数据库生成的订单ID
+     * @throws RuntimeException 写入失败或超时取消时抛出
+     */
+    Long write(SeckillOrder order);
+}
@@ -44,6 +44,15 @@ public interface SeckillService {
      */
     Result<Void> preloadSeckillProducts(Long activityId);
 
+    /**
+     * 预热秒杀商品到Redis，并将库存拆分为多个分桶
+     *
+     * @param activityId 活动ID
+     * @param bucketCount 每个商品的库存分桶数量
+     * @return 预热结果
+     */
+    Result<Void> preloadSeckillProducts(Long activityId, Integer bucketCount);
+
     /**
      * 获取秒杀商品的剩余库存
      *
@@ -0,0 +1,168 @@
+package com.flashsale.seckill.service;
+
+import com.flashsale.seckill.entity.FlashSaleProduct;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 秒杀库存服务接口 - Redis侧库存引擎
+ * @author 21311
+ */
+public interface SeckillStockService {
+
+    /**
+     * 加载商品库存到Redis
+     *
+     * @param product 秒杀商品
+     */
+    void loadStock(FlashSaleProduct product);
+
+    /**
+     * 加载商品库存到Redis并拆分为多个分桶（超热商品使用）
+     *
+     * @param product 秒杀商品
+     * @param bucketCount 分桶数量，小于等于1时不分桶
+     */
+    void loadStock(FlashSaleProduct product, int bucketCount);
+
+    /**
+     * 清除Redis中的库存，下次扣减时从数据库重新加载；销售进行中Redis库存为准，不清除
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @return 是否已清除
+     */
+    boolean invalidateStock(Long flashSaleProductId);
+
+    /**
+     * 原子扣减库存（限购检查、库存检查、扣减、记录购买人一次完成）
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @param userId 用户ID
+     * @param quantity 购买数量
+     * @param limit 每人限购数量，null或小于等于0表示不限购
+     * @return 扣减结果
+     */
+    DeductResult deductStock(Long flashSaleProductId, Long userId, Integer quantity, Integer limit);
+
+    /**
+     * 批量原子扣减库存（同一商品的一批请求一次预占，按顺序逐个判断限购和库存）
+     * 按请求ID记录已扣减的请求及其订单编号，重新投递的同一请求不会再次扣减，返回成功和首次记录的订单编号
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @param userIds 用户ID列表
+     * @param quantities 购买数量列表，与用户ID一一对应
+     * @param limit 每人限购数量，null或小于等于0表示不限购
+     * @param requestIds 请求ID列表，与用户ID一一对应，元素为null时不做重复扣减保护
+     * @param orderNos 预先生成的订单编号列表，与用户ID一一对应，扣减成功时与请求ID一起记录
+     * @return 与请求一一对应的扣减结果
+     */
+    List<DeductResult> deductStockBatch(Long flashSaleProductId, List<Long> userIds, List<Integer> quantities,
+                                        Integer limit, List<String> requestIds, List<String> orderNos);
+
+    /**
+     * 回滚Redis库存（订单创建失败时使用）
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @param userId 用户ID
+     * @param quantity 回滚数量
+     */
+    void rollbackStock(Long flashSaleProductId, Long userId, Integer quantity);
+
+    /**
+     * 回滚批量扣减的Redis库存，同时清除请求ID的已扣减记录
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @param userId 用户ID
+     * @param quantity 回滚数量
+     * @param requestId 扣减时使用的请求ID，可为null
+     */
+    void rollbackStock(Long flashSaleProductId, Long userId, Integer quantity, String requestId);
+
+    /**
+     * 补充Redis库存（库存增加时使用，同时清除售罄标记），分桶模式下平均分配到各分桶
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @param quantity 补充数量
+     */
+    void replenishStock(Long flashSaleProductId, Integer quantity);
+
+    /**
+     * 查询Redis中的剩余库存（分桶模式下为各分桶之和）
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @return 剩余库存，未加载时返回null
+     */
+    Integer getStock(Long flashSaleProductId);
+
+    /**
+     * 批量查询Redis中的剩余库存，所有商品（含分桶）的库存key一次MGET读取
+     *
+     * @param flashSaleProductIds 秒杀商品ID集合
+     * @return 商品ID -> 剩余库存，未加载的商品不在结果中
+     */
+    Map<Long, Integer> getStocks(Collection<Long> flashSaleProductIds);
+
+    /**
+     * 扣减状态
+     */
+    enum DeductStatus {
+        /**
+         * 扣减成功
+         */
+        SUCCESS,
+        /**
+         * 库存已售罄（剩余库存为0）
+         */
+        SOLD_OUT,
+        /**
+         * 库存有剩余但不足本次购买数量，不标记售罄
+         */
+        INSUFFICIENT,
+        /**
+         * 超出限购数量
+         */
+        LIMIT_EXCEEDED,
+        /**
+         * 库存未加载到Redis
+         */
+        NOT_LOADED
+    }
+
+    /**
+     * 扣减结果封装类
+     */
+    class DeductResult {
+        private final DeductStatus status;
+        private final long remaining;
+        private final String orderNo;
+
+        public DeductResult(DeductStatus status, long remaining) {
+            this(status, remaining, null);
+        }
+
+        public DeductResult(DeductStatus status, long remaining, String orderNo) {
+            this.status = status;
+            this.remaining = remaining;
+            this.orderNo = orderNo;
+        }
+
+        public DeductStatus getStatus() { return status; }
+        public long getRemaining() { return remaining; }
+
+        /**
+         * 批量扣减成功时对应的订单编号，请求重复投递时为首次扣减记录的编号
+         */
+        public String getOrderNo() { return orderNo; }
+
+        public boolean isSuccess() {
+            return status == DeductStatus.SUCCESS;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("DeductResult{status=%s, remaining=%d, orderNo=%s}", status, remaining, orderNo);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.flashsale.seckill.service;
+
+/**
+ * 本地售罄标记缓存服务接口
+ * 商品售罄后在本节点内存中直接拦截请求，库存补充或回滚时通过Redis发布订阅通知所有节点清除标记
+ * @author 21311
+ */
+public interface SoldOutCacheService {
+
+    /**
+     * Redis发布订阅频道：售罄标记清除通知
+     */
+    String SOLD_OUT_CLEAR_CHANNEL = "seckill:soldout:clear";
+
+    /**
+     * 判断商品在本节点是否已标记售罄（纯内存操作）
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @return 是否售罄
+     */
+    boolean isSoldOut(Long flashSaleProductId);
+
+    /**
+     * 在本节点标记商品售罄
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     */
+    void markSoldOut(Long flashSaleProductId);
+
+    /**
+     * 清除售罄标记并广播到所有节点
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     */
+    void clearSoldOut(Long flashSaleProductId);
+
+    /**
+     * 仅清除本节点的售罄标记（收到广播时使用）
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     */
+    void evictLocal(Long flashSaleProductId);
+}
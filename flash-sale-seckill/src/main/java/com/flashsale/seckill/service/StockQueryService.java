@@ -0,0 +1,28 @@
+package com.flashsale.seckill.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 秒杀库存查询服务接口
+ * 优先读取Redis库存计数，只有key不存在时才回源数据库；同一商品的并发回源合并为一次查询
+ * @author 21311
+ */
+public interface StockQueryService {
+
+    /**
+     * 查询剩余库存
+     *
+     * @param flashSaleProductId 秒杀商品ID
+     * @return 剩余库存，商品不存在时返回null
+     */
+    Integer getStock(Long flashSaleProductId);
+
+    /**
+     * 批量查询剩余库存，Redis一次MGET，未命中的商品一次IN查询回源
+     *
+     * @param flashSaleProductIds 秒杀商品ID集合
+     * @return 商品ID -> 剩余库存，不存在的商品不在结果中
+     */
+    Map<Long, Integer> getStocks(Collection<Long> flashSaleProductIds);
+}
@@ -0,0 +1,187 @@
+package com.flashsale.seckill.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.seckill.entity.FlashSaleProduct;
+import com.flashsale.seckill.mapper.FlashSaleActivityMapper;
+import com.flashsale.seckill.mapper.FlashSaleProductMapper;
+import com.flashsale.seckill.service.ActivityCatalogService;
+import com.flashsale.seckill.service.ActivityCatalogSnapshot;
+import com.flashsale.seckill.vo.FlashSaleActivityVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 活动目录服务实现类
+ * 快照由重建锁串行构建，构建完成后原子替换引用；读路径只有一次volatile读。
+ * 除变更通知外，还会定时全量重建，兜底丢失的广播消息
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class ActivityCatalogServiceImpl implements ActivityCatalogService {
+
+    /**
+     * 重建失败后的最短重试间隔
+     */
+    private static final long REBUILD_RETRY_MILLIS = 1000;
+
+    @Autowired
+    private FlashSaleActivityMapper activityMapper;
+
+    @Autowired
+    private FlashSaleProductMapper productMapper;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    @Qualifier("seckillObjectMapper")
+    private ObjectMapper objectMapper;
+
+    @Value("${seckill.catalog.pre-serialize:true}")
+    private boolean preSerialize;
+
+    @Value("${seckill.catalog.refresh-interval-seconds:60}")
+    private long refreshIntervalSeconds;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicReference<ActivityCatalogSnapshot> snapshotRef = new AtomicReference<>();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private long nextVersion;
+    private volatile long lastFailedTime;
+    private ScheduledExecutorService refresher;
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "activity-catalog-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::rebuild, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    @Override
+    public ActivityCatalogSnapshot getSnapshot() {
+        ActivityCatalogSnapshot snapshot = snapshotRef.get();
+        long now = System.currentTimeMillis();
+        if (snapshot != null && !snapshot.isExpired(now)) {
+            return snapshot;
+        }
+        if (now - lastFailedTime < REBUILD_RETRY_MILLIS) {
+            return snapshot;
+        }
+
+        // 只有一个线程重建，其余线程继续使用旧快照
+        if (rebuildLock.tryLock()) {
+            try {
+                ActivityCatalogSnapshot current = snapshotRef.get();
+                if (current == null || current.isExpired(now)) {
+                    doRebuild();
+                }
+            } finally {
+                rebuildLock.unlock();
+            }
+        }
+        return snapshotRef.get();
+    }
+
+    @Override
+    public ActivityCatalogSnapshot rebuild() {
+        rebuildLock.lock();
+        try {
+            return doRebuild();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    @Override
+    public void publishChange() {
+        Runnable action = () -> {
+            rebuild();
+            try {
+                redisTemplate.convertAndSend(ACTIVITY_CATALOG_CHANGED_CHANNEL, instanceId);
+            } catch (Exception e) {
+                // 广播失败时其他节点由定时重建兜底
+                log.error("广播活动目录变更失败", e);
+            }
+        };
+
+        // 事务未提交前其他连接读不到变更，必须在提交后重建
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @Override
+    public void onChangeNotified(String sourceInstanceId) {
+        if (!instanceId.equals(sourceInstanceId)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 从数据库构建新快照并替换，调用方需持有重建锁
+     */
+    private ActivityCatalogSnapshot doRebuild() {
+        long buildTime = System.currentTimeMillis();
+        try {
+            List<FlashSaleActivityVO> activities = activityMapper.findAll().stream()
+                    .map(FlashSaleActivityServiceImpl::convertToVO)
+                    .collect(Collectors.toList());
+
+            Map<Long, List<Long>> productIdsByActivity = new HashMap<>();
+            for (FlashSaleProduct product : productMapper.findActivityProductIds()) {
+                productIdsByActivity.computeIfAbsent(product.getActivityId(), k -> new ArrayList<>()).add(product.getId());
+            }
+
+            ActivityCatalogSnapshot snapshot = new ActivityCatalogSnapshot(++nextVersion, buildTime, activities,
+                    productIdsByActivity, preSerialize ? objectMapper : null);
+            snapshotRef.set(snapshot);
+            lastFailedTime = 0;
+            log.debug("活动目录快照重建完成，版本: {}, 活动数: {}, 耗时: {}ms", snapshot.getVersion(),
+                    activities.size(), System.currentTimeMillis() - buildTime);
+            return snapshot;
+        } catch (Exception e) {
+            lastFailedTime = System.currentTimeMillis();
+            log.error("活动目录快照重建失败", e);
+            return null;
+        }
+    }
+}
@@ -1,19 +1,28 @@
 package com.flashsale.seckill.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flashsale.common.result.Result;
 import com.flashsale.common.result.PageResult;
 import com.flashsale.seckill.dto.FlashSaleActivityDTO;
 import com.flashsale.seckill.entity.FlashSaleActivity;
+import com.flashsale.seckill.entity.FlashSaleProduct;
 import com.flashsale.seckill.mapper.FlashSaleActivityMapper;
+import com.flashsale.seckill.mapper.FlashSaleProductMapper;
+import com.flashsale.seckill.service.ActivityCatalogService;
+import com.flashsale.seckill.service.ActivityCatalogSnapshot;
 import com.flashsale.seckill.service.FlashSaleActivityService;
+import com.flashsale.seckill.service.ProductDetailCacheService;
 import com.flashsale.seckill.vo.FlashSaleActivityVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -35,6 +44,19 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
     @Autowired(required = false)
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private FlashSaleProductMapper productMapper;
+
+    @Autowired
+    private ProductDetailCacheService productDetailCacheService;
+
+    @Autowired
+    private ActivityCatalogService activityCatalogService;
+
+    @Autowired
+    @Qualifier("seckillObjectMapper")
+    private ObjectMapper objectMapper;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Result<Void> createActivity(FlashSaleActivityDTO activityDTO) {
@@ -48,6 +70,7 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
 
             int result = activityMapper.insert(activity);
             if (result > 0) {
+                activityCatalogService.publishChange();
                 log.info("创建秒杀活动成功，活动名称：{}", activity.getName());
                 return Result.success();
             } else {
@@ -75,6 +98,8 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
 
             int result = activityMapper.updateById(activity);
             if (result > 0) {
+                evictProductCache(id);
+                activityCatalogService.publishChange();
                 log.info("更新秒杀活动成功，活动ID：{}", id);
                 return Result.success();
             } else {
@@ -97,6 +122,8 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
 
             int result = activityMapper.deleteById(id);
             if (result > 0) {
+                evictProductCache(id);
+                activityCatalogService.publishChange();
                 log.info("删除秒杀活动成功，活动ID：{}", id);
                 return Result.success();
             } else {
@@ -112,6 +139,12 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
     @Override
     public Result<FlashSaleActivityVO> getActivityDetail(Long id) {
         try {
+            ActivityCatalogSnapshot snapshot = activityCatalogService.getSnapshot();
+            if (snapshot != null && snapshot.getActivity(id) != null) {
+                return Result.success(snapshot.getActivity(id));
+            }
+
+            // 快照未命中（如其他节点刚创建、通知尚未到达）时回源数据库
             FlashSaleActivity activity = activityMapper.findById(id);
             if (activity == null) {
                 return Result.error("活动不存在");
@@ -130,11 +163,21 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
         try {
             Integer offset = (page - 1) * size;
 
+            ActivityCatalogSnapshot snapshot = activityCatalogService.getSnapshot();
+            if (snapshot != null) {
+                List<FlashSaleActivityVO> activities = snapshot.getActivities(status);
+                int from = Math.min(Math.max(offset, 0), activities.size());
+                int to = Math.min(from + size, activities.size());
+                PageResult<FlashSaleActivityVO> pageResult = new PageResult<>(new ArrayList<>(activities.subList(from, to)),
+                        (long) activities.size(), page, size);
+                return Result.success(pageResult);
+            }
+
             List<FlashSaleActivity> activities = activityMapper.findByPage(offset, size, status);
             Long total = activityMapper.countActivities(status);
 
             List<FlashSaleActivityVO> activityVOList = activities.stream()
-                    .map(this::convertToVO)
+                    .map(FlashSaleActivityServiceImpl::convertToVO)
                     .collect(Collectors.toList());
 
             PageResult<FlashSaleActivityVO> pageResult = new PageResult<>(activityVOList, total, page, size);
@@ -151,6 +194,8 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
         try {
             int result = activityMapper.updateStatus(id, 1);
             if (result > 0) {
+                evictProductCache(id);
+                activityCatalogService.publishChange();
                 log.info("启动秒杀活动成功，活动ID：{}", id);
                 return Result.success();
             } else {
@@ -168,6 +213,8 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
         try {
             int result = activityMapper.updateStatus(id, 2);
             if (result > 0) {
+                evictProductCache(id);
+                activityCatalogService.publishChange();
                 log.info("停止秒杀活动成功，活动ID：{}", id);
                 return Result.success();
             } else {
@@ -182,9 +229,14 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
     @Override
     public Result<List<FlashSaleActivityVO>> getActiveActivities() {
         try {
+            ActivityCatalogSnapshot snapshot = activityCatalogService.getSnapshot();
+            if (snapshot != null) {
+                return Result.success(snapshot.getActiveActivities());
+            }
+
             List<FlashSaleActivity> activities = activityMapper.findActiveActivities();
             List<FlashSaleActivityVO> activityVOList = activities.stream()
-                    .map(this::convertToVO)
+                    .map(FlashSaleActivityServiceImpl::convertToVO)
                     .collect(Collectors.toList());
             return Result.success(activityVOList);
         } catch (Exception e) {
@@ -196,9 +248,14 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
     @Override
     public Result<List<FlashSaleActivityVO>> getUpcomingActivities() {
         try {
+            ActivityCatalogSnapshot snapshot = activityCatalogService.getSnapshot();
+            if (snapshot != null) {
+                return Result.success(snapshot.getUpcomingActivities());
+            }
+
             List<FlashSaleActivity> activities = activityMapper.findUpcomingActivities();
             List<FlashSaleActivityVO> activityVOList = activities.stream()
-                    .map(this::convertToVO)
+                    .map(FlashSaleActivityServiceImpl::convertToVO)
                     .collect(Collectors.toList());
             return Result.success(activityVOList);
         } catch (Exception e) {
@@ -207,7 +264,24 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
         }
     }
 
-    
+    @Override
+    public byte[] getActiveActivitiesJson() {
+        ActivityCatalogSnapshot snapshot = activityCatalogService.getSnapshot();
+        if (snapshot != null && snapshot.getActiveActivitiesJson() != null) {
+            return snapshot.getActiveActivitiesJson();
+        }
+        return toJson(getActiveActivities());
+    }
+
+    @Override
+    public byte[] getUpcomingActivitiesJson() {
+        ActivityCatalogSnapshot snapshot = activityCatalogService.getSnapshot();
+        if (snapshot != null && snapshot.getUpcomingActivitiesJson() != null) {
+            return snapshot.getUpcomingActivitiesJson();
+        }
+        return toJson(getUpcomingActivities());
+    }
+
     @Override
     public Result<Object> getActivityStatistics(Long id) {
         try {
@@ -260,6 +334,9 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
             // 缓存活动信息
             String key = "activity:" + id;
             redisTemplate.opsForValue().set(key, activity, 24, TimeUnit.HOURS);
+
+            // 同时重建本节点的活动目录快照
+            activityCatalogService.rebuild();
             
             log.info("预热活动缓存成功，活动ID：{}", id);
             return Result.success();
@@ -272,7 +349,7 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
     /**
      * 转换为VO
      */
-    private FlashSaleActivityVO convertToVO(FlashSaleActivity activity) {
+    static FlashSaleActivityVO convertToVO(FlashSaleActivity activity) {
         FlashSaleActivityVO activityVO = new FlashSaleActivityVO();
         BeanUtils.copyProperties(activity, activityVO);
         
@@ -282,10 +359,22 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
         return activityVO;
     }
 
+    /**
+     * 序列化响应（快照不可用或未预序列化时使用）
+     */
+    private byte[] toJson(Result<?> result) {
+        try {
+            return objectMapper.writeValueAsBytes(result);
+        } catch (Exception e) {
+            log.error("序列化活动列表失败", e);
+            return "{\"code\":500,\"message\":\"获取活动列表失败\"}".getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
     /**
      * 获取状态名称
      */
-    private String getStatusName(Integer status) {
+    private static String getStatusName(Integer status) {
         return switch (status) {
             case 0 -> "未开始";
             case 1 -> "进行中";
@@ -293,4 +382,26 @@ public class FlashSaleActivityServiceImpl implements FlashSaleActivityService {
             default -> "未知";
         };
     }
-} 
\ No newline at end of file
+
+    /**
+     * 活动变更后清除该活动下所有商品的详情缓存
+     */
+    private void evictProductCache(Long activityId) {
+        try {
+            ActivityCatalogSnapshot snapshot = activityCatalogService.getSnapshot();
+            if (snapshot != null) {
+                for (Long productId : snapshot.getProductIds(activityId)) {
+                    productDetailCacheService.evict(productId);
+                }
+                return;
+            }
+
+            List<FlashSaleProduct> products = productMapper.findByActivityId(activityId);
+            for (FlashSaleProduct product : products) {
+                productDetailCacheService.evict(product.getId());
+            }
+        } catch (Exception e) {
+            log.error("清除活动商品缓存失败，活动ID：{}", activityId, e);
+        }
+    }
+}
@@ -3,14 +3,20 @@ package com.flashsale.seckill.service.impl;
 import com.flashsale.common.result.Result;
 import com.flashsale.common.result.PageResult;
 import com.flashsale.seckill.dto.FlashSaleProductDTO;
+import com.flashsale.seckill.dto.ProductInfoDTO;
 import com.flashsale.seckill.entity.FlashSaleActivity;
 import com.flashsale.seckill.entity.FlashSaleProduct;
 import com.flashsale.seckill.mapper.FlashSaleActivityMapper;
 import com.flashsale.seckill.mapper.FlashSaleProductMapper;
+import com.flashsale.seckill.service.ActivityCatalogService;
 import com.flashsale.seckill.service.FlashSaleProductService;
+import com.flashsale.seckill.service.ProductDetailCacheService;
+import com.flashsale.seckill.service.ProductDetailCacheService.CachedProductDetail;
+import com.flashsale.seckill.service.ProductInfoClient;
+import com.flashsale.seckill.service.PurchasedFilterService;
+import com.flashsale.seckill.service.SeckillStockService;
+import com.flashsale.seckill.service.StockQueryService;
 import com.flashsale.seckill.vo.FlashSaleProductVO;
-import lombok.Getter;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,13 +25,15 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import org.springframework.web.client.RestTemplate;
 
 /**
  * 秒杀商品服务实现类
@@ -45,7 +53,22 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
     private RedisTemplate<String, Object> redisTemplate;
     
     @Autowired
-    private RestTemplate restTemplate;
+    private ProductInfoClient productInfoClient;
+
+    @Autowired
+    private ActivityCatalogService activityCatalogService;
+
+    @Autowired
+    private StockQueryService stockQueryService;
+
+    @Autowired
+    private SeckillStockService stockService;
+
+    @Autowired
+    private PurchasedFilterService purchasedFilterService;
+
+    @Autowired
+    private ProductDetailCacheService productDetailCacheService;
 
     private static final String SECKILL_PRODUCT_KEY = "seckill:product:";
     private static final String SECKILL_STOCK_KEY = "seckill:stock:";
@@ -69,6 +92,7 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
 
             int result = productMapper.insert(product);
             if (result > 0) {
+                activityCatalogService.publishChange();
                 log.info("添加秒杀商品成功，商品ID：{}", product.getId());
                 return Result.success();
             } else {
@@ -106,6 +130,7 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
             if (result > 0) {
                 // 清除缓存
                 clearProductCache(id);
+                activityCatalogService.publishChange();
                 log.info("更新秒杀商品成功，商品ID：{}", id);
                 return Result.success();
             } else {
@@ -130,6 +155,7 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
             if (result > 0) {
                 // 清除缓存
                 clearProductCache(id);
+                activityCatalogService.publishChange();
                 log.info("删除秒杀商品成功，商品ID：{}", id);
                 return Result.success();
             } else {
@@ -146,12 +172,24 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
     @Override
     public Result<FlashSaleProductVO> getProductDetail(Long id) {
         try {
-            FlashSaleProduct product = productMapper.findById(id);
-            if (product == null) {
-                return Result.error("商品不存在");
+            // 先查两级缓存，未命中时回源数据库和商品服务
+            CachedProductDetail detail = productDetailCacheService.get(id);
+            if (detail == null) {
+                FlashSaleProduct product = productMapper.findById(id);
+                if (product == null) {
+                    return Result.error("商品不存在");
+                }
+
+                FlashSaleActivity activity = findActivity(product);
+                FlashSaleProductVO productVO = convertToVO(product, activity, getProductInfo(product.getProductId()));
+                detail = new CachedProductDetail(productVO, activity != null ? activity.getStatus() : null);
+                productDetailCacheService.put(detail);
             }
 
-            FlashSaleProductVO productVO = convertToVO(product);
+            // 缓存对象是共享的，复制一份再叠加实时库存和秒杀状态
+            FlashSaleProductVO productVO = new FlashSaleProductVO();
+            BeanUtils.copyProperties(detail.getProduct(), productVO);
+            applyRealtimeState(productVO, detail.getActivityStatus());
             return Result.success(productVO);
         } catch (Exception e) {
             log.error("获取商品详情异常", e);
@@ -163,9 +201,7 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
     public Result<List<FlashSaleProductVO>> getProductsByProductId(Long productId) {
         try {
             List<FlashSaleProduct> products = productMapper.findByProductId(productId);
-            List<FlashSaleProductVO> productVOList = products.stream()
-                    .map(this::convertToVO)
-                    .collect(Collectors.toList());
+            List<FlashSaleProductVO> productVOList = convertToVOList(products);
             return Result.success(productVOList);
         } catch (Exception e) {
             log.error("根据商品ID获取秒杀商品列表异常", e);
@@ -177,9 +213,7 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
     public Result<List<FlashSaleProductVO>> getProductsByActivityId(Long activityId) {
         try {
             List<FlashSaleProduct> products = productMapper.findByActivityId(activityId);
-            List<FlashSaleProductVO> productVOList = products.stream()
-                    .map(this::convertToVO)
-                    .collect(Collectors.toList());
+            List<FlashSaleProductVO> productVOList = convertToVOList(products);
             return Result.success(productVOList);
         } catch (Exception e) {
             log.error("根据活动ID获取商品列表异常", e);
@@ -195,9 +229,7 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
             List<FlashSaleProduct> products = productMapper.findByPage(offset, size, activityId, status);
             Long total = productMapper.countProducts(activityId, status);
 
-            List<FlashSaleProductVO> productVOList = products.stream()
-                    .map(this::convertToVO)
-                    .collect(Collectors.toList());
+            List<FlashSaleProductVO> productVOList = convertToVOList(products);
 
             PageResult<FlashSaleProductVO> pageResult = new PageResult<>(productVOList, total, page, size);
             return Result.success(pageResult);
@@ -249,15 +281,12 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
     @Transactional(rollbackFor = Exception.class)
     public Result<Boolean> decreaseStock(Long id, Integer quantity) {
         try {
-            int result = productMapper.decreaseStock(id, quantity);
+            int result = productMapper.applyStockDeduction(id, quantity);
             if (result > 0) {
                 // 更新Redis中的库存
                 String stockKey = SECKILL_STOCK_KEY + id;
                 redisTemplate.opsForValue().decrement(stockKey, quantity);
                 
-                // 增加已售数量
-                productMapper.increaseStockUsed(id, quantity);
-                
                 log.info("扣减商品库存成功，商品ID：{}，扣减数量：{}", id, quantity);
                 return Result.success(true);
             } else {
@@ -269,15 +298,26 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
         }
     }
 
+    @Override
+    public Result<Boolean> syncStockDeduction(Long id, Integer quantity) {
+        // 异常直接抛出，由消息监听器拒绝消息进入死信队列，避免丢失扣减
+        int result = productMapper.applyStockDeduction(id, quantity);
+        if (result > 0) {
+            log.debug("同步库存扣减到数据库成功，商品ID：{}，扣减数量：{}", id, quantity);
+            return Result.success(true);
+        } else {
+            return Result.success(false);
+        }
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Result<Boolean> increaseStock(Long id, Integer quantity) {
         try {
             int result = productMapper.increaseStock(id, quantity);
             if (result > 0) {
-                // 更新Redis中的库存
-                String stockKey = SECKILL_STOCK_KEY + id;
-                redisTemplate.opsForValue().increment(stockKey, quantity);
+                // 更新Redis中的库存（同时清除售罄标记）
+                stockService.replenishStock(id, quantity);
                 
                 log.info("增加商品库存成功，商品ID：{}，增加数量：{}", id, quantity);
                 return Result.success(true);
@@ -294,9 +334,7 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
     public Result<List<FlashSaleProductVO>> getActiveProducts() {
         try {
             List<FlashSaleProduct> products = productMapper.findActiveProducts();
-            List<FlashSaleProductVO> productVOList = products.stream()
-                    .map(this::convertToVO)
-                    .collect(Collectors.toList());
+            List<FlashSaleProductVO> productVOList = convertToVOList(products);
             return Result.success(productVOList);
         } catch (Exception e) {
             log.error("获取正在进行的秒杀商品异常", e);
@@ -308,9 +346,7 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
     public Result<List<FlashSaleProductVO>> getUpcomingProducts() {
         try {
             List<FlashSaleProduct> products = productMapper.findUpcomingProducts();
-            List<FlashSaleProductVO> productVOList = products.stream()
-                    .map(this::convertToVO)
-                    .collect(Collectors.toList());
+            List<FlashSaleProductVO> productVOList = convertToVOList(products);
             return Result.success(productVOList);
         } catch (Exception e) {
             log.error("获取即将开始的秒杀商品异常", e);
@@ -321,6 +357,11 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
 
     @Override
     public Result<Void> preloadProductsToRedis(Long activityId) {
+        return preloadProductsToRedis(activityId, 1);
+    }
+
+    @Override
+    public Result<Void> preloadProductsToRedis(Long activityId, Integer bucketCount) {
         try {
             List<FlashSaleProduct> products = productMapper.findByActivityId(activityId);
             
@@ -329,12 +370,14 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
                 String productKey = SECKILL_PRODUCT_KEY + product.getId();
                 redisTemplate.opsForValue().set(productKey, product, 24, TimeUnit.HOURS);
                 
-                // 缓存库存信息
-                String stockKey = SECKILL_STOCK_KEY + product.getId();
-                redisTemplate.opsForValue().set(stockKey, product.getFlashSaleStock(), 24, TimeUnit.HOURS);
+                // 缓存库存信息（按需拆分为多个分桶）
+                stockService.loadStock(product, bucketCount != null ? bucketCount : 1);
+
+                // 后台构建已购买过滤器，开抢后的资格检查不必等待
+                purchasedFilterService.rebuildAsync(product.getId());
             }
             
-            log.info("预热活动{}的秒杀商品到Redis成功，共{}个商品", activityId, products.size());
+            log.info("预热活动{}的秒杀商品到Redis成功，共{}个商品，分桶数：{}", activityId, products.size(), bucketCount);
             return Result.success();
         } catch (Exception e) {
             log.error("预热秒杀商品到Redis异常", e);
@@ -345,14 +388,11 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
     @Override
     public Result<Integer> getProductStock(Long id) {
         try {
-            FlashSaleProduct product = productMapper.findById(id);
-            if (product == null) {
+            Integer stock = stockQueryService.getStock(id);
+            if (stock == null) {
                 return Result.error("商品不存在");
             }
-            
-            // 计算剩余库存
-            int remainingStock = product.getFlashSaleStock() - product.getStockUsed();
-            return Result.success(Math.max(remainingStock, 0));
+            return Result.success(stock);
         } catch (Exception e) {
             log.error("获取商品库存异常", e);
             return Result.error("获取库存失败：" + e.getMessage());
@@ -441,10 +481,117 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
         }
     }
 
+    /**
+     * 批量转换为VO：先收集活动ID和商品ID，活动一次IN查询、商品基础信息一次批量调用，再在内存中拼装，
+     * 每页的数据库和远程调用次数与页大小无关
+     */
+    private List<FlashSaleProductVO> convertToVOList(List<FlashSaleProduct> products) {
+        if (products.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 远程调用先发出，与活动查询并行
+        CompletableFuture<Map<Long, ProductInfoDTO>> productInfosFuture = fetchProductInfos(products);
+        Map<Long, FlashSaleActivity> activities = findActivities(products);
+        Map<Long, ProductInfoDTO> productInfos = joinProductInfos(productInfosFuture);
+        Map<Long, Integer> stocks = findRealtimeStocks(products);
+
+        return products.stream()
+                .map(product -> {
+                    FlashSaleProductVO productVO = convertToVO(product,
+                            product.getActivityId() != null ? activities.get(product.getActivityId()) : null,
+                            product.getProductId() != null ? productInfos.get(product.getProductId()) : null);
+                    // 剩余库存以Redis计数为准
+                    Integer stock = stocks.get(product.getId());
+                    if (stock != null) {
+                        productVO.setRemainingStock(Math.max(stock, 0));
+                        if (stock <= 0) {
+                            productVO.setCanSeckill(false);
+                        }
+                    }
+                    return productVO;
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 批量读取Redis中的实时库存，一次MGET；读取失败时返回空Map，使用数据库中的库存
+     */
+    private Map<Long, Integer> findRealtimeStocks(List<FlashSaleProduct> products) {
+        try {
+            return stockService.getStocks(products.stream().map(FlashSaleProduct::getId).collect(Collectors.toList()));
+        } catch (Exception e) {
+            log.warn("批量读取Redis库存失败，使用数据库库存", e);
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * 批量查询商品所属活动
+     */
+    private Map<Long, FlashSaleActivity> findActivities(List<FlashSaleProduct> products) {
+        List<Long> activityIds = products.stream()
+                .map(FlashSaleProduct::getActivityId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        if (activityIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            return activityMapper.findByIds(activityIds).stream()
+                    .collect(Collectors.toMap(FlashSaleActivity::getId, activity -> activity));
+        } catch (Exception e) {
+            log.error("批量获取活动信息失败, 活动数: {}", activityIds.size(), e);
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * 查询商品所属活动
+     */
+    private FlashSaleActivity findActivity(FlashSaleProduct product) {
+        if (product.getActivityId() == null) {
+            return null;
+        }
+        try {
+            return activityMapper.findById(product.getActivityId());
+        } catch (Exception e) {
+            log.error("获取活动信息失败, 商品ID: {}", product.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 叠加实时状态：剩余库存取Redis库存计数，是否可秒杀按当前时间重新计算
+     */
+    private void applyRealtimeState(FlashSaleProductVO productVO, Integer activityStatus) {
+        try {
+            Integer stock = stockService.getStock(productVO.getId());
+            if (stock != null) {
+                productVO.setRemainingStock(stock);
+            }
+        } catch (Exception e) {
+            log.warn("读取Redis库存失败，使用缓存库存, 商品ID: {}", productVO.getId(), e);
+        }
+
+        boolean canSeckill = Integer.valueOf(1).equals(productVO.getStatus())
+                && productVO.getRemainingStock() != null && productVO.getRemainingStock() > 0
+                && Integer.valueOf(1).equals(activityStatus);
+
+        Date now = new Date();
+        if (canSeckill && productVO.getStartTime() != null) {
+            canSeckill = !now.before(productVO.getStartTime());
+        }
+        if (canSeckill && productVO.getEndTime() != null) {
+            canSeckill = now.before(productVO.getEndTime());
+        }
+        productVO.setCanSeckill(canSeckill);
+    }
+
     /**
      * 转换为VO
      */
-    private FlashSaleProductVO convertToVO(FlashSaleProduct product) {
+    private FlashSaleProductVO convertToVO(FlashSaleProduct product, FlashSaleActivity activity, ProductInfoDTO productInfo) {
         FlashSaleProductVO productVO = new FlashSaleProductVO();
         BeanUtils.copyProperties(product, productVO);
         
@@ -457,9 +604,6 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
         // 获取商品基础信息
         try {
             if (product.getProductId() != null) {
-                // 调用商品服务获取真实的商品信息
-                ProductInfo productInfo = getProductInfo(product.getProductId());
-                
                 if (productInfo != null) {
                     // 使用真实的商品信息
                     productVO.setProductName(productInfo.getName());
@@ -486,7 +630,6 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
         // 从活动中获取开始时间和结束时间
         try {
             if (product.getActivityId() != null) {
-                FlashSaleActivity activity = activityMapper.findById(product.getActivityId());
                 if (activity != null) {
                     productVO.setStartTime(activity.getStartTime());
                     productVO.setEndTime(activity.getEndTime());
@@ -505,7 +648,7 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
                         canSeckill = now.before(activity.getEndTime());
                     }
                     
-                    log.info("商品ID: {}, 状态: {}, 剩余库存: {}, 活动状态: {}, 当前时间: {}, 开始时间: {}, 结束时间: {}, 可秒杀: {}", 
+                    log.debug("商品ID: {}, 状态: {}, 剩余库存: {}, 活动状态: {}, 当前时间: {}, 开始时间: {}, 结束时间: {}, 可秒杀: {}", 
                             product.getId(), product.getStatus(), productVO.getRemainingStock(), 
                             activity.getStatus(), now, activity.getStartTime(), activity.getEndTime(), canSeckill);
                     
@@ -542,42 +685,46 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
     }
     
     /**
-     * 获取商品基础信息
+     * 获取商品基础信息，超时或失败时返回null走降级
      */
-    private ProductInfo getProductInfo(Long productId) {
-        try {
-            // 调用商品服务获取商品信息
-            String url = "http://localhost:8082/api/product/detail/" + productId;
-            Map response = restTemplate.getForObject(url, Map.class);
-            
-            if (response != null && response.get("code").equals(200)) {
-                Map<String, Object> data = (Map<String, Object>) response.get("data");
-
-                ProductInfo productInfo = new ProductInfo();
-                productInfo.setName((String) data.get("name"));
-                productInfo.setMainImage((String) data.get("mainImage"));
-                
-                // 处理价格
-                Object priceObj = data.get("price");
-                if (priceObj instanceof Integer) {
-                    productInfo.setPrice(new BigDecimal((Integer) priceObj));
-                } else if (priceObj instanceof Double) {
-                    productInfo.setPrice(BigDecimal.valueOf((Double) priceObj));
-                } else if (priceObj instanceof String) {
-                    productInfo.setPrice(new BigDecimal((String) priceObj));
-                } else {
-                    productInfo.setPrice(new BigDecimal("0.00"));
-                }
-                
-                return productInfo;
-            }
-            
+    private ProductInfoDTO getProductInfo(Long productId) {
+        if (productId == null) {
             return null;
+        }
+        try {
+            return productInfoClient.getProductInfo(productId).join();
         } catch (Exception e) {
             log.warn("获取商品信息失败，productId：{}", productId, e);
             return null;
         }
     }
+
+    /**
+     * 发起批量获取商品基础信息的远程调用
+     */
+    private CompletableFuture<Map<Long, ProductInfoDTO>> fetchProductInfos(List<FlashSaleProduct> products) {
+        List<Long> productIds = products.stream()
+                .map(FlashSaleProduct::getProductId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        if (productIds.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+        return productInfoClient.getProductInfos(productIds);
+    }
+
+    /**
+     * 等待批量商品基础信息，超时或失败时返回空Map走降级
+     */
+    private Map<Long, ProductInfoDTO> joinProductInfos(CompletableFuture<Map<Long, ProductInfoDTO>> future) {
+        try {
+            return future.join();
+        } catch (Exception e) {
+            log.warn("批量获取商品信息失败", e);
+            return new HashMap<>();
+        }
+    }
     
     /**
      * 设置默认商品信息（降级处理）
@@ -607,26 +754,14 @@ public class FlashSaleProductServiceImpl implements FlashSaleProductService {
     }
     
     /**
-     * 商品基础信息内部类
-     */
-    @Getter
-    @Setter
-    private static class ProductInfo {
-        private String name;
-        private String mainImage;
-        private BigDecimal price;
-
-    }
-
-    /**
-     * 清除产品缓存
+     * 清除产品缓存，Redis库存只在未处于销售期时清除
      */
     private void clearProductCache(Long productId) {
         try {
             String productKey = SECKILL_PRODUCT_KEY + productId;
-            String stockKey = SECKILL_STOCK_KEY + productId;
             redisTemplate.delete(productKey);
-            redisTemplate.delete(stockKey);
+            stockService.invalidateStock(productId);
+            productDetailCacheService.evict(productId);
         } catch (Exception e) {
             log.error("清除商品缓存失败", e);
         }
@@ -0,0 +1,235 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.seckill.entity.SeckillOrder;
+import com.flashsale.seckill.mapper.SeckillOrderMapper;
+import com.flashsale.seckill.service.SeckillOrderWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 组提交订单写入实现类
+ * 写入线程从队列中取出订单，最多等待 {@link #LINGER_MILLIS} 毫秒或攒满 {@link #MAX_BATCH_SIZE} 条后批量插入；
+ * 整批失败时逐条重试，单条失败只影响对应的请求；
+ * 写入线程取出订单时先认领，调用方等待超时时抢先认领即取消写入，二者只有一方成功，超时回滚库存不会与订单写入并存
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class GroupCommitSeckillOrderWriter implements SeckillOrderWriter {
+
+    private static final int MAX_BATCH_SIZE = 200;
+    private static final long LINGER_MILLIS = 5;
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int WRITER_THREADS = 2;
+
+    @Autowired
+    private SeckillOrderMapper orderMapper;
+
+    /**
+     * 等待订单写入的超时时间
+     */
+    @Value("${seckill.order-writer.timeout-millis:3000}")
+    private long timeoutMillis;
+
+    private final BlockingQueue<PendingOrder> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Thread> writers = new ArrayList<>(WRITER_THREADS);
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < WRITER_THREADS; i++) {
+            Thread writer = new Thread(this::writeLoop, "seckill-order-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        for (Thread writer : writers) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 关闭时仍未写入的订单直接失败，由调用方回滚库存
+        List<PendingOrder> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (PendingOrder pending : remaining) {
+            pending.completeExceptionally(new IllegalStateException("订单写入服务已关闭"));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> submit(SeckillOrder order) {
+        PendingOrder pending = new PendingOrder(order);
+        if (!running || !queue.offer(pending)) {
+            pending.completeExceptionally(new IllegalStateException("订单写入繁忙，请稍后重试"));
+        }
+        return pending;
+    }
+
+    @Override
+    public Long await(CompletableFuture<Long> future) {
+        try {
+            try {
+                return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (future.cancel(false)) {
+                    throw new IllegalStateException("订单写入超时，请稍后重试");
+                }
+                // 写入线程已认领，订单是否写入由这次数据库写入决定，只能等待其结果
+                log.warn("订单写入超时但已开始写入，继续等待结果: timeout={}ms", timeoutMillis);
+                return future.join();
+            }
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (future.cancel(false)) {
+                throw new IllegalStateException("订单写入被中断");
+            }
+            return future.join();
+        }
+    }
+
+    @Override
+    public Long write(SeckillOrder order) {
+        return await(submit(order));
+    }
+
+    /**
+     * 写入线程主循环
+     */
+    private void writeLoop() {
+        List<PendingOrder> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // 在等待窗口内继续攒批
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LINGER_MILLIS);
+                while (batch.size() < MAX_BATCH_SIZE) {
+                    if (queue.drainTo(batch, MAX_BATCH_SIZE - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        break;
+                    }
+                    PendingOrder next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("订单写入线程异常", e);
+            } finally {
+                for (PendingOrder pending : batch) {
+                    if (!pending.isDone()) {
+                        pending.completeExceptionally(new IllegalStateException("订单写入失败"));
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 一条多行INSERT写入整批订单，失败时逐条重试以隔离问题订单
+     */
+    private void flush(List<PendingOrder> batch) {
+        // 跳过调用方已超时取消的订单
+        batch.removeIf(pending -> !pending.claim());
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<SeckillOrder> orders = new ArrayList<>(batch.size());
+        for (PendingOrder pending : batch) {
+            orders.add(pending.order);
+        }
+
+        try {
+            if (orders.size() == 1) {
+                orderMapper.insert(orders.get(0));
+            } else {
+                orderMapper.insertBatch(orders);
+            }
+            for (PendingOrder pending : batch) {
+                pending.complete(pending.order.getId());
+            }
+            log.debug("订单组提交完成: size={}", batch.size());
+            return;
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                batch.get(0).completeExceptionally(e);
+                return;
+            }
+            log.warn("订单批量写入失败，改为逐条写入: size={}", batch.size(), e);
+        }
+
+        for (PendingOrder pending : batch) {
+            try {
+                orderMapper.insert(pending.order);
+                pending.complete(pending.order.getId());
+            } catch (Exception e) {
+                log.error("保存订单失败: orderNo={}", pending.order.getOrderNo(), e);
+                pending.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 等待写入的订单，本身即写入结果；写入线程认领后不可再取消
+     */
+    private static class PendingOrder extends CompletableFuture<Long> {
+        private final SeckillOrder order;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PendingOrder(SeckillOrder order) {
+            this.order = order;
+        }
+
+        /**
+         * 写入线程认领，返回false表示已被取消
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return claim() && super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
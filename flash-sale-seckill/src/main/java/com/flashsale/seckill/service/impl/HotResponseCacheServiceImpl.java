@@ -0,0 +1,107 @@
+package com.flashsale.seckill.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.common.result.Result;
+import com.flashsale.seckill.service.HotResponseCacheService;
+import com.flashsale.seckill.service.SeckillService;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 热点查询响应缓存服务实现类
+ * 基于Caffeine：写入超过TTL后的首次访问触发后台刷新并继续返回旧值，同一key的加载和刷新只有一个在执行；
+ * 超过 {@link #STALE_FACTOR} 倍TTL未刷新的条目直接过期，避免长时间无人访问的key返回过旧的数据
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class HotResponseCacheServiceImpl implements HotResponseCacheService {
+
+    private static final int STALE_FACTOR = 10;
+    private static final int REFRESH_THREADS = 2;
+    private static final int REFRESH_QUEUE_CAPACITY = 1000;
+
+    @Autowired
+    private SeckillService seckillService;
+
+    @Autowired
+    @Qualifier("seckillObjectMapper")
+    private ObjectMapper objectMapper;
+
+    @Value("${seckill.response-cache.result-ttl-millis:500}")
+    private long resultTtlMillis;
+
+    @Value("${seckill.response-cache.stock-ttl-millis:200}")
+    private long stockTtlMillis;
+
+    @Value("${seckill.response-cache.max-size:100000}")
+    private long maxSize;
+
+    private ThreadPoolExecutor refreshExecutor;
+    private LoadingCache<String, byte[]> resultCache;
+    private LoadingCache<Long, byte[]> stockCache;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 刷新队列满时丢弃本次刷新，下次访问会再次触发
+        refreshExecutor = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE_CAPACITY),
+                r -> {
+                    Thread thread = new Thread(r, "hot-response-refresh-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+
+        resultCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(resultTtlMillis, TimeUnit.MILLISECONDS)
+                .expireAfterWrite(resultTtlMillis * STALE_FACTOR, TimeUnit.MILLISECONDS)
+                .executor(refreshExecutor)
+                .build(seckillId -> serialize(seckillService.getSeckillResult(seckillId)));
+        stockCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(stockTtlMillis, TimeUnit.MILLISECONDS)
+                .expireAfterWrite(stockTtlMillis * STALE_FACTOR, TimeUnit.MILLISECONDS)
+                .executor(refreshExecutor)
+                .build(productId -> serialize(seckillService.getSeckillStock(productId)));
+        log.info("热点响应缓存初始化完成，结果TTL: {}ms, 库存TTL: {}ms", resultTtlMillis, stockTtlMillis);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public byte[] getSeckillResult(String seckillId) {
+        return resultCache.get(seckillId);
+    }
+
+    @Override
+    public byte[] getSeckillStock(Long flashSaleProductId) {
+        return stockCache.get(flashSaleProductId);
+    }
+
+    /**
+     * 序列化完整响应
+     */
+    private byte[] serialize(Result<?> result) throws Exception {
+        return objectMapper.writeValueAsBytes(result);
+    }
+}
@@ -0,0 +1,206 @@
+package com.flashsale.seckill.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.common.result.Result;
+import com.flashsale.common.result.ResultCode;
+import com.flashsale.seckill.dto.ProductInfoDTO;
+import com.flashsale.seckill.service.ProductInfoClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 基于JDK HttpClient的商品服务客户端
+ * 请求异步发送不占用调用线程；进行中的查询按商品ID登记，同一商品的并发查询共用同一个future，
+ * 批量查询只为未在途的商品发起请求
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class HttpProductInfoClient implements ProductInfoClient {
+
+    /**
+     * 单次批量请求的商品数上限，与商品服务批量接口的限制一致
+     */
+    private static final int MAX_BATCH_SIZE = 200;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final TypeReference<Result<ProductInfoDTO>> SINGLE_TYPE = new TypeReference<>() {};
+    private static final TypeReference<Result<List<ProductInfoDTO>>> BATCH_TYPE = new TypeReference<>() {};
+
+    @Value("${seckill.product-client.base-url:http://localhost:8082}")
+    private String baseUrl;
+
+    @Value("${seckill.product-client.timeout-millis:1000}")
+    private long timeoutMillis;
+
+    private HttpClient httpClient;
+    private Duration timeout;
+
+    // 在途查询：商品ID -> 查询结果
+    private final Map<Long, CompletableFuture<ProductInfoDTO>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        timeout = Duration.ofMillis(timeoutMillis);
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+        log.info("商品服务客户端初始化完成，地址: {}, 超时: {}ms", baseUrl, timeoutMillis);
+    }
+
+    @Override
+    public CompletableFuture<ProductInfoDTO> getProductInfo(Long productId) {
+        if (productId == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<ProductInfoDTO> promise = new CompletableFuture<>();
+        CompletableFuture<ProductInfoDTO> existing = inFlight.putIfAbsent(productId, promise);
+        if (existing != null) {
+            return existing;
+        }
+
+        send("/api/product/detail/" + productId)
+                .thenApply(body -> parseSingle(body, productId))
+                .whenComplete((info, e) -> {
+                    inFlight.remove(productId, promise);
+                    if (e != null) {
+                        promise.completeExceptionally(e);
+                    } else {
+                        promise.complete(info);
+                    }
+                });
+        return promise;
+    }
+
+    @Override
+    public CompletableFuture<Map<Long, ProductInfoDTO>> getProductInfos(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+        Set<Long> distinctIds = productIds.stream()
+                .filter(id -> id != null)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        // 已在途的商品直接复用，其余由本次调用登记并负责查询
+        Map<Long, CompletableFuture<ProductInfoDTO>> futures = new HashMap<>(distinctIds.size() * 2);
+        Map<Long, CompletableFuture<ProductInfoDTO>> owned = new HashMap<>(distinctIds.size() * 2);
+        for (Long productId : distinctIds) {
+            CompletableFuture<ProductInfoDTO> promise = new CompletableFuture<>();
+            CompletableFuture<ProductInfoDTO> existing = inFlight.putIfAbsent(productId, promise);
+            if (existing != null) {
+                futures.put(productId, existing);
+            } else {
+                futures.put(productId, promise);
+                owned.put(productId, promise);
+            }
+        }
+
+        List<Long> ownedIds = new ArrayList<>(owned.keySet());
+        for (int from = 0; from < ownedIds.size(); from += MAX_BATCH_SIZE) {
+            List<Long> chunk = ownedIds.subList(from, Math.min(from + MAX_BATCH_SIZE, ownedIds.size()));
+            String ids = chunk.stream().map(String::valueOf).collect(Collectors.joining(","));
+            send("/api/product/batch?ids=" + ids)
+                    .thenApply(this::parseBatch)
+                    .whenComplete((infos, e) -> {
+                        for (Long productId : chunk) {
+                            CompletableFuture<ProductInfoDTO> promise = owned.get(productId);
+                            inFlight.remove(productId, promise);
+                            if (e != null) {
+                                promise.completeExceptionally(e);
+                            } else {
+                                promise.complete(infos.get(productId));
+                            }
+                        }
+                    });
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    Map<Long, ProductInfoDTO> result = new HashMap<>(futures.size() * 2);
+                    futures.forEach((productId, future) -> {
+                        ProductInfoDTO info = future.join();
+                        if (info != null) {
+                            result.put(productId, info);
+                        }
+                    });
+                    return result;
+                });
+    }
+
+    /**
+     * 异步发送GET请求，超时或非200状态时异常完成
+     */
+    private CompletableFuture<String> send(String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("商品服务返回HTTP " + response.statusCode() + ": " + path);
+                    }
+                    return response.body();
+                });
+    }
+
+    /**
+     * 解析单个商品响应，业务失败（如商品不存在）视为无数据
+     */
+    private ProductInfoDTO parseSingle(String body, Long productId) {
+        try {
+            Result<ProductInfoDTO> result = OBJECT_MAPPER.readValue(body, SINGLE_TYPE);
+            if (!ResultCode.SUCCESS.getCode().equals(result.getCode())) {
+                log.debug("商品服务未返回商品信息，productId: {}, message: {}", productId, result.getMessage());
+                return null;
+            }
+            return result.getData();
+        } catch (Exception e) {
+            throw new IllegalStateException("解析商品信息失败，productId: " + productId, e);
+        }
+    }
+
+    /**
+     * 解析批量商品响应
+     */
+    private Map<Long, ProductInfoDTO> parseBatch(String body) {
+        Result<List<ProductInfoDTO>> result;
+        try {
+            result = OBJECT_MAPPER.readValue(body, BATCH_TYPE);
+        } catch (Exception e) {
+            throw new IllegalStateException("解析批量商品信息失败", e);
+        }
+        if (!ResultCode.SUCCESS.getCode().equals(result.getCode())) {
+            throw new IllegalStateException("批量查询商品失败: " + result.getMessage());
+        }
+        Map<Long, ProductInfoDTO> infos = new HashMap<>();
+        if (result.getData() != null) {
+            for (ProductInfoDTO info : result.getData()) {
+                infos.put(info.getId(), info);
+            }
+        }
+        return infos;
+    }
+}
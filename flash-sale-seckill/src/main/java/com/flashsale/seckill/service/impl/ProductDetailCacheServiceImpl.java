@@ -0,0 +1,84 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.seckill.service.ProductDetailCacheService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀商品详情缓存服务实现类
+ * 本地缓存有效期较短，作为兜底；商品或活动变更时通过Redis发布订阅主动失效
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class ProductDetailCacheServiceImpl implements ProductDetailCacheService {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private static final String PRODUCT_DETAIL_KEY = "seckill:product:detail:";
+    private static final long REDIS_EXPIRE_MINUTES = 10;
+    private static final long LOCAL_EXPIRE_SECONDS = 30;
+    private static final long LOCAL_MAX_SIZE = 10_000;
+
+    private final Cache<Long, CachedProductDetail> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_MAX_SIZE)
+            .expireAfterWrite(LOCAL_EXPIRE_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    @Override
+    public CachedProductDetail get(Long flashSaleProductId) {
+        CachedProductDetail detail = localCache.getIfPresent(flashSaleProductId);
+        if (detail != null) {
+            return detail;
+        }
+
+        try {
+            Object value = redisTemplate.opsForValue().get(PRODUCT_DETAIL_KEY + flashSaleProductId);
+            if (value instanceof CachedProductDetail) {
+                detail = (CachedProductDetail) value;
+                localCache.put(flashSaleProductId, detail);
+                return detail;
+            }
+        } catch (Exception e) {
+            // Redis不可用时回源数据库
+            log.warn("读取商品详情缓存失败: productId={}", flashSaleProductId, e);
+        }
+        return null;
+    }
+
+    @Override
+    public void put(CachedProductDetail detail) {
+        Long id = detail.getProduct().getId();
+        localCache.put(id, detail);
+        try {
+            redisTemplate.opsForValue().set(PRODUCT_DETAIL_KEY + id, detail, REDIS_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            log.warn("写入商品详情缓存失败: productId={}", id, e);
+        }
+    }
+
+    @Override
+    public void evict(Long flashSaleProductId) {
+        localCache.invalidate(flashSaleProductId);
+        try {
+            redisTemplate.delete(PRODUCT_DETAIL_KEY + flashSaleProductId);
+            redisTemplate.convertAndSend(PRODUCT_CACHE_EVICT_CHANNEL, flashSaleProductId);
+        } catch (Exception e) {
+            // 广播失败时其他节点的本地缓存会在有效期后自动失效
+            log.error("清除商品详情缓存失败: productId={}", flashSaleProductId, e);
+        }
+        log.debug("清除商品详情缓存: productId={}", flashSaleProductId);
+    }
+
+    @Override
+    public void evictLocal(Long flashSaleProductId) {
+        localCache.invalidate(flashSaleProductId);
+    }
+}
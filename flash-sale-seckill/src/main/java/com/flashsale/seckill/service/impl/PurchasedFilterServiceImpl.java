@@ -0,0 +1,239 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.seckill.mapper.SeckillOrderMapper;
+import com.flashsale.seckill.service.PurchasedFilterService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 已购买过滤器服务实现类
+ * 位图前 2^bitsLog2 位为布隆过滤器，每个用户由ID派生 {@link #HASHES} 个位置；
+ * 紧随其后的一位是就绪标记，只有从数据库加载完历史订单后才置位，未就绪时一律按"可能已购买"处理。
+ * 下单记录无论过滤器是否就绪都写入，因此重建期间新写入的订单不会遗漏；
+ * 重建在后台线程执行（预热时或首次检查发现未就绪时提交），请求线程从不等待数据库全量查询
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class PurchasedFilterServiceImpl implements PurchasedFilterService {
+
+    private static final String FILTER_KEY_PREFIX = "seckill:purchased:filter:";
+    private static final String REBUILD_LOCK_PREFIX = "seckill:purchased:filter:lock:";
+    private static final long REBUILD_LOCK_SECONDS = 30;
+    private static final int HASHES = 3;
+
+    /**
+     * 单次脚本调用写入的最大用户数
+     */
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private static final int REBUILD_THREADS = 2;
+    private static final int REBUILD_QUEUE_CAPACITY = 1000;
+
+    /**
+     * 检查脚本：就绪标记未置位返回-1，所有位都已置位返回1，否则返回0
+     * KEYS[1]-位图key；ARGV[1]-就绪标记偏移，ARGV[2..]-位偏移
+     */
+    private static final DefaultRedisScript<Long> CHECK_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('getbit', KEYS[1], ARGV[1]) == 0 then " +
+        "    return -1 " +
+        "end " +
+        "for i = 2, #ARGV do " +
+        "    if redis.call('getbit', KEYS[1], ARGV[i]) == 0 then " +
+        "        return 0 " +
+        "    end " +
+        "end " +
+        "return 1",
+        Long.class);
+
+    /**
+     * 写入脚本：置位所有位置，ARGV[1]为1时同时置位就绪标记，key无过期时间时设置过期时间
+     * KEYS[1]-位图key；ARGV[1]-是否置就绪标记，ARGV[2]-就绪标记偏移，ARGV[3]-过期秒数，ARGV[4..]-位偏移
+     */
+    private static final DefaultRedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+        "for i = 4, #ARGV do " +
+        "    redis.call('setbit', KEYS[1], ARGV[i], 1) " +
+        "end " +
+        "if ARGV[1] == '1' then " +
+        "    redis.call('setbit', KEYS[1], ARGV[2], 1) " +
+        "end " +
+        "if redis.call('ttl', KEYS[1]) < 0 then " +
+        "    redis.call('expire', KEYS[1], ARGV[3]) " +
+        "end " +
+        "return 1",
+        Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private SeckillOrderMapper orderMapper;
+
+    /**
+     * 每个商品过滤器的位数（2的幂次），默认2^24位即2MB，100万用户时误判率约0.4%
+     */
+    @Value("${seckill.purchased-filter.bits-log2:24}")
+    private int bitsLog2;
+
+    /**
+     * 过滤器过期时间，过期后下次检查时从数据库重建
+     */
+    @Value("${seckill.purchased-filter.ttl-hours:24}")
+    private long ttlHours;
+
+    private ThreadPoolExecutor rebuildExecutor;
+
+    // 本节点排队或重建中的商品，避免热点商品未就绪期间每个请求都提交一次
+    private final Set<Long> pendingRebuilds = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        rebuildExecutor = new ThreadPoolExecutor(REBUILD_THREADS, REBUILD_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REBUILD_QUEUE_CAPACITY),
+                r -> {
+                    Thread thread = new Thread(r, "purchased-filter-rebuild-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (rebuildExecutor != null) {
+            rebuildExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean mightHavePurchased(Long flashSaleProductId, Long userId) {
+        List<String> args = new ArrayList<>(HASHES + 1);
+        args.add(String.valueOf(readyOffset()));
+        addOffsets(args, userId);
+
+        Long result;
+        try {
+            result = stringRedisTemplate.execute(CHECK_SCRIPT,
+                    Collections.singletonList(FILTER_KEY_PREFIX + flashSaleProductId), args.toArray());
+        } catch (Exception e) {
+            log.warn("读取已购买过滤器失败，回退数据库查询: productId={}", flashSaleProductId, e);
+            return true;
+        }
+
+        if (result == null || result < 0) {
+            // 未就绪：本次查数据库，同时提交后台重建（多节点只有一个执行）
+            rebuildAsync(flashSaleProductId);
+            return true;
+        }
+        return result == 1;
+    }
+
+    @Override
+    public void recordPurchase(Long flashSaleProductId, Long userId) {
+        try {
+            add(flashSaleProductId, Collections.singletonList(userId), false);
+        } catch (Exception e) {
+            // 漏记只会让过滤器对该用户误判为未购买，限购仍由Redis扣减脚本保证
+            log.error("记录已购买过滤器失败: productId={}, userId={}", flashSaleProductId, userId, e);
+        }
+    }
+
+    @Override
+    public boolean rebuild(Long flashSaleProductId) {
+        String lockKey = REBUILD_LOCK_PREFIX + flashSaleProductId;
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, "1", REBUILD_LOCK_SECONDS, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        List<Long> userIds = orderMapper.findPurchasedUserIds(flashSaleProductId);
+        for (int from = 0; from < userIds.size(); from += REBUILD_BATCH_SIZE) {
+            add(flashSaleProductId, userIds.subList(from, Math.min(from + REBUILD_BATCH_SIZE, userIds.size())), false);
+        }
+        // 历史订单全部写入后才标记就绪
+        add(flashSaleProductId, Collections.emptyList(), true);
+
+        log.info("已购买过滤器重建完成: productId={}, 用户数={}, 耗时={}ms", flashSaleProductId,
+                userIds.size(), System.currentTimeMillis() - start);
+        return true;
+    }
+
+    @Override
+    public void rebuildAsync(Long flashSaleProductId) {
+        if (!pendingRebuilds.add(flashSaleProductId)) {
+            return;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    rebuild(flashSaleProductId);
+                } catch (Exception e) {
+                    log.warn("重建已购买过滤器失败: productId={}", flashSaleProductId, e);
+                } finally {
+                    pendingRebuilds.remove(flashSaleProductId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 队列已满时放弃本次重建，下次检查会再次提交
+            pendingRebuilds.remove(flashSaleProductId);
+            log.warn("已购买过滤器重建队列已满: productId={}", flashSaleProductId);
+        }
+    }
+
+    private void add(Long flashSaleProductId, List<Long> userIds, boolean markReady) {
+        List<String> args = new ArrayList<>(3 + userIds.size() * HASHES);
+        args.add(markReady ? "1" : "0");
+        args.add(String.valueOf(readyOffset()));
+        args.add(String.valueOf(TimeUnit.HOURS.toSeconds(ttlHours)));
+        for (Long userId : userIds) {
+            addOffsets(args, userId);
+        }
+        stringRedisTemplate.execute(ADD_SCRIPT, Collections.singletonList(FILTER_KEY_PREFIX + flashSaleProductId),
+                args.toArray());
+    }
+
+    /**
+     * 双重哈希派生位置：h1 + i * h2
+     */
+    private void addOffsets(List<String> args, Long userId) {
+        long hash = mix(userId);
+        long h1 = hash >>> 32;
+        long h2 = (hash & 0xFFFFFFFFL) | 1;
+        long mask = (1L << bitsLog2) - 1;
+        for (int i = 0; i < HASHES; i++) {
+            args.add(String.valueOf((h1 + i * h2) & mask));
+        }
+    }
+
+    private long readyOffset() {
+        return 1L << bitsLog2;
+    }
+
+    /**
+     * SplitMix64 混淆，把连续的用户ID打散到整个位图
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
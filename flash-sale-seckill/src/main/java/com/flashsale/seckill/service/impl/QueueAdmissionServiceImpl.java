@@ -0,0 +1,103 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.common.queue.FairRateLimiter;
+import com.flashsale.common.result.Result;
+import com.flashsale.seckill.service.QueueAdmissionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 排队准入服务实现类
+ * 等待中的连接按"商品ID:用户ID"登记在本节点内存中，准入通知经Redis发布订阅广播到所有节点，
+ * 只有持有对应连接的节点会唤醒该用户；等待期间不访问Redis
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class QueueAdmissionServiceImpl implements QueueAdmissionService {
+
+    @Autowired
+    private FairRateLimiter fairRateLimiter;
+
+    private final Map<String, Queue<DeferredResult<Result<Object>>>> waiters = new ConcurrentHashMap<>();
+
+    @Override
+    public Result<Object> getQueueStatus(Long userId, Long flashSaleProductId) {
+        FairRateLimiter.QueueStatus status = fairRateLimiter.checkQueueStatus(userId, flashSaleProductId);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", status.getStatus());
+        response.put("position", status.getPosition());
+        response.put("sequence", status.getSequence());
+        response.put("canProceed", status.canProceed());
+        
+        String message;
+        switch (status.getStatus()) {
+            case "PROCESSING":
+                message = "正在处理您的请求";
+                break;
+            case "QUEUED":
+                message = "排队中，当前位置: " + status.getPosition();
+                break;
+            case "NOT_FOUND":
+                message = "未在队列中";
+                break;
+            default:
+                message = "未知状态";
+        }
+        response.put("message", message);
+        
+        return Result.success(response);
+    }
+
+    @Override
+    public DeferredResult<Result<Object>> awaitAdmission(Long userId, Long flashSaleProductId, long timeoutMillis) {
+        String waiterKey = waiterKey(flashSaleProductId, userId);
+        DeferredResult<Result<Object>> deferred = new DeferredResult<>(timeoutMillis);
+
+        // 先登记再查询状态，避免查询和登记之间的准入通知丢失
+        Queue<DeferredResult<Result<Object>>> queue = waiters.computeIfAbsent(waiterKey, k -> new ConcurrentLinkedQueue<>());
+        queue.add(deferred);
+        deferred.onCompletion(() -> removeWaiter(waiterKey, deferred));
+        deferred.onTimeout(() -> deferred.setResult(getQueueStatus(userId, flashSaleProductId)));
+
+        FairRateLimiter.QueueStatus status = fairRateLimiter.checkQueueStatus(userId, flashSaleProductId);
+        if (!"QUEUED".equals(status.getStatus())) {
+            deferred.setResult(getQueueStatus(userId, flashSaleProductId));
+        }
+        return deferred;
+    }
+
+    @Override
+    public void onAdmitted(Long userId, Long flashSaleProductId) {
+        Queue<DeferredResult<Result<Object>>> queue = waiters.remove(waiterKey(flashSaleProductId, userId));
+        if (queue == null) {
+            return;
+        }
+
+        Result<Object> status = getQueueStatus(userId, flashSaleProductId);
+        for (DeferredResult<Result<Object>> deferred : queue) {
+            deferred.setResult(status);
+        }
+        log.info("唤醒获准进入的排队用户: userId={}, productId={}, connections={}", userId, flashSaleProductId, queue.size());
+    }
+
+    private void removeWaiter(String waiterKey, DeferredResult<Result<Object>> deferred) {
+        waiters.computeIfPresent(waiterKey, (k, queue) -> {
+            queue.remove(deferred);
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    private String waiterKey(Long flashSaleProductId, Long userId) {
+        return flashSaleProductId + ":" + userId;
+    }
+}
@@ -0,0 +1,179 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.common.dto.SeckillDTO;
+import com.flashsale.common.id.IdGenerator;
+import com.flashsale.common.mq.SeckillExecutor;
+import com.flashsale.common.result.Result;
+import com.flashsale.common.result.ResultCode;
+import com.flashsale.seckill.entity.SeckillOrder;
+import com.flashsale.seckill.mq.PaymentMessageProducer;
+import com.flashsale.seckill.mq.StockDeductMessageProducer;
+import com.flashsale.seckill.service.FlashSaleProductService;
+import com.flashsale.seckill.service.SeckillOrderWriter;
+import com.flashsale.seckill.service.PurchasedFilterService;
+import com.flashsale.seckill.service.SeckillStockService;
+import com.flashsale.seckill.vo.FlashSaleProductVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀执行器实现类 - 异步秒杀的真实执行路径
+ * 同一商品的一批请求一次完成Redis库存预占，成功的请求交给组提交写入器批量写入订单
+ * @author 21311
+ */
+@Slf4j
+@Component
+public class SeckillExecutorImpl implements SeckillExecutor {
+
+    @Autowired
+    private FlashSaleProductService productService;
+
+    @Autowired
+    private SeckillStockService stockService;
+
+    @Autowired
+    private SeckillOrderWriter orderWriter;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private PurchasedFilterService purchasedFilterService;
+
+    @Autowired
+    private StockDeductMessageProducer stockDeductMessageProducer;
+
+    @Autowired
+    private PaymentMessageProducer paymentMessageProducer;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Override
+    public List<ExecuteResult> executeBatch(Long flashSaleProductId, List<SeckillDTO> requests) {
+        int size = requests.size();
+
+        // 1. 获取秒杀商品信息并检查是否可秒杀
+        Result<FlashSaleProductVO> productResult = productService.getProductDetail(flashSaleProductId);
+        if (!ResultCode.SUCCESS.getCode().equals(productResult.getCode()) || productResult.getData() == null) {
+            return Collections.nCopies(size, ExecuteResult.failure("获取秒杀商品信息失败"));
+        }
+        FlashSaleProductVO product = productResult.getData();
+        if (!Boolean.TRUE.equals(product.getCanSeckill())) {
+            return Collections.nCopies(size, ExecuteResult.failure("商品不可秒杀"));
+        }
+
+        // 2. 整批一次预占Redis库存
+        List<Long> userIds = new ArrayList<>(size);
+        List<Integer> quantities = new ArrayList<>(size);
+        List<String> requestIds = new ArrayList<>(size);
+        List<String> orderNos = new ArrayList<>(size);
+        for (SeckillDTO request : requests) {
+            userIds.add(request.getUserId());
+            quantities.add(request.getQuantity() != null ? request.getQuantity() : 1);
+            requestIds.add(request.getRequestId());
+            orderNos.add(idGenerator.nextNo(SeckillServiceImpl.ORDER_NO_PREFIX));
+        }
+        // 按请求ID扣减：重新投递的任务不会重复占用库存，并沿用首次扣减时记录的订单编号
+        List<SeckillStockService.DeductResult> deductResults = stockService.deductStockBatch(
+            product.getId(), userIds, quantities, product.getFlashSaleLimit(), requestIds, orderNos);
+
+        // 3. 为预占成功的请求创建订单
+        List<ExecuteResult> results = new ArrayList<>(Collections.nCopies(size, (ExecuteResult) null));
+        List<SeckillOrder> orders = new ArrayList<>();
+        List<Integer> orderIndexes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            switch (deductResults.get(i).getStatus()) {
+                case SUCCESS:
+                    SeckillDTO request = requests.get(i);
+                    request.setQuantity(quantities.get(i));
+                    orders.add(SeckillServiceImpl.createSeckillOrder(request, product,
+                        deductResults.get(i).getOrderNo()));
+                    orderIndexes.add(i);
+                    break;
+                case LIMIT_EXCEEDED:
+                    results.set(i, ExecuteResult.failure(ResultCode.SECKILL_REPEATED.getMessage()));
+                    break;
+                case INSUFFICIENT:
+                case SOLD_OUT:
+                    results.set(i, ExecuteResult.failure(ResultCode.PRODUCT_STOCK_NOT_ENOUGH.getMessage()));
+                    break;
+                default:
+                    results.set(i, ExecuteResult.failure("商品库存未就绪，请稍后重试"));
+            }
+        }
+
+        if (orders.isEmpty()) {
+            return results;
+        }
+
+        // 4. 提交到组提交写入器（与其他商品并发批次的订单合并写入），写入失败的订单逐个回滚Redis库存
+        List<CompletableFuture<Long>> writes = new ArrayList<>(orders.size());
+        for (SeckillOrder order : orders) {
+            writes.add(orderWriter.submit(order));
+        }
+
+        // 5. 同步库存、缓存结果、发送支付消息
+        int successCount = 0;
+        for (int j = 0; j < orders.size(); j++) {
+            SeckillOrder order = orders.get(j);
+            int index = orderIndexes.get(j);
+            try {
+                orderWriter.await(writes.get(j));
+            } catch (DuplicateKeyException e) {
+                // 同一请求的订单已由之前的投递写入（订单编号唯一），视为成功；库存和支付消息已随首次写入发出，不再重复发送
+                log.info("订单已存在，重复投递按成功处理: orderNo={}, requestId={}", order.getOrderNo(), requestIds.get(index));
+                redisTemplate.opsForValue().set(SeckillServiceImpl.SECKILL_RESULT_KEY + order.getOrderNo(),
+                    "SUCCESS", 24, TimeUnit.HOURS);
+                results.set(index, ExecuteResult.success(order.getOrderNo()));
+                successCount++;
+                continue;
+            } catch (Exception e) {
+                log.error("保存订单失败，开始库存回滚: orderNo={}", order.getOrderNo(), e);
+                stockService.rollbackStock(product.getId(), userIds.get(index), quantities.get(index),
+                    requestIds.get(index));
+                results.set(index, ExecuteResult.failure("订单创建失败"));
+                continue;
+            }
+            afterOrderCreated(product, order);
+            results.set(index, ExecuteResult.success(order.getOrderNo()));
+            successCount++;
+        }
+
+        log.info("异步批量秒杀完成 - 商品ID: {}, 请求数: {}, 成功: {}", product.getId(), size, successCount);
+        return results;
+    }
+
+    /**
+     * 订单创建后的后续处理，失败只记录日志不影响订单
+     */
+    private void afterOrderCreated(FlashSaleProductVO product, SeckillOrder order) {
+        purchasedFilterService.recordPurchase(product.getId(), order.getUserId());
+
+        try {
+            stockDeductMessageProducer.sendStockDeductMessage(product.getProductId(),
+                product.getId(), order.getQuantity(), order.getOrderNo(), order.getUserId());
+        } catch (Exception e) {
+            log.error("发送库存同步消息失败，需人工对账: orderNo={}", order.getOrderNo(), e);
+        }
+
+        redisTemplate.opsForValue().set(SeckillServiceImpl.SECKILL_RESULT_KEY + order.getOrderNo(),
+            "SUCCESS", 24, TimeUnit.HOURS);
+
+        try {
+            paymentMessageProducer.sendPaymentMessage(order.getOrderNo(), order.getUserId(),
+                order.getPaymentAmount(), (int) SeckillServiceImpl.ORDER_EXPIRE_MINUTES);
+        } catch (Exception e) {
+            log.warn("发送支付消息失败: orderNo={}", order.getOrderNo(), e);
+        }
+    }
+}
@@ -1,19 +1,26 @@
 package com.flashsale.seckill.service.impl;
 
 import com.flashsale.common.dto.SeckillDTO;
+import com.flashsale.common.id.IdGenerator;
 import com.flashsale.common.result.PageResult;
 import com.flashsale.common.result.Result;
 import com.flashsale.common.result.ResultCode;
 import com.flashsale.common.constants.UserRole;
-import com.flashsale.common.lock.DistributedLockService;
 import com.flashsale.common.security.IdempotencyService;
 import com.flashsale.common.security.AntiScalpingService;
 import com.flashsale.common.security.EnhancedTokenService;
+import com.flashsale.common.security.StatelessTokenService;
 import com.flashsale.seckill.entity.SeckillOrder;
 import com.flashsale.seckill.mapper.SeckillOrderMapper;
 import com.flashsale.seckill.mq.PaymentMessageProducer;
+import com.flashsale.seckill.mq.StockDeductMessageProducer;
 import com.flashsale.seckill.service.FlashSaleProductService;
+import com.flashsale.seckill.service.QueueAdmissionService;
 import com.flashsale.seckill.service.SeckillService;
+import com.flashsale.seckill.service.SeckillOrderWriter;
+import com.flashsale.seckill.service.PurchasedFilterService;
+import com.flashsale.seckill.service.SeckillStockService;
+import com.flashsale.seckill.service.StockQueryService;
 import com.flashsale.seckill.vo.FlashSaleProductVO;
 import com.flashsale.seckill.vo.SeckillOrderVO;
 import lombok.extern.slf4j.Slf4j;
@@ -21,7 +28,6 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.UUID;
@@ -43,6 +49,12 @@ public class SeckillServiceImpl implements SeckillService {
     @Autowired
     private SeckillOrderMapper orderMapper;
 
+    @Autowired
+    private SeckillOrderWriter orderWriter;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
     @Autowired
     private FlashSaleProductService productService;
 
@@ -53,7 +65,13 @@ public class SeckillServiceImpl implements SeckillService {
     private PaymentMessageProducer paymentMessageProducer;
 
     @Autowired
-    private DistributedLockService distributedLockService;
+    private SeckillStockService stockService;
+
+    @Autowired
+    private StockQueryService stockQueryService;
+
+    @Autowired
+    private StockDeductMessageProducer stockDeductMessageProducer;
 
     @Autowired
     private IdempotencyService idempotencyService;
@@ -64,26 +82,38 @@ public class SeckillServiceImpl implements SeckillService {
     @Autowired
     private EnhancedTokenService enhancedTokenService;
 
+    @Autowired
+    private StatelessTokenService statelessTokenService;
+
     @Autowired
     private SeckillOrderMapper seckillOrderMapper;
 
+    @Autowired
+    private PurchasedFilterService purchasedFilterService;
+
     @Autowired
     private com.flashsale.common.queue.FairRateLimiter fairRateLimiter;
 
+    @Autowired
+    private QueueAdmissionService queueAdmissionService;
+
     @Autowired
     private com.flashsale.common.mq.SeckillAsyncProcessor seckillAsyncProcessor;
 
-    private static final String SECKILL_RESULT_KEY = "seckill:result:";
+    static final String SECKILL_RESULT_KEY = "seckill:result:";
+    static final String ORDER_NO_PREFIX = "FS";
     private static final String SECKILL_TOKEN_KEY = "seckill:token:";
-    private static final String SECKILL_LOCK_KEY = "seckill:lock:product:";
-    private static final long ORDER_EXPIRE_MINUTES = 30;
+    static final long ORDER_EXPIRE_MINUTES = 30;
     
     // 限流配置
     private static final int MAX_CONCURRENT_PER_PRODUCT = 1000; // 每个商品最大并发数
     private static final int QUEUE_TIMEOUT_SECONDS = 300; // 队列超时时间（5分钟）
 
+    /**
+     * 不开启Spring事务：订单由组提交写入线程在自己的事务中插入，本方法内其余步骤只操作Redis和MQ；
+     * 写入失败或超时取消时回滚Redis库存，写入成功后订单即已提交，后续步骤失败不会撤销订单
+     */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public Result<String> doSeckill(SeckillDTO seckillDTO) {
         
         // 生成请求唯一标识用于幂等性控制
@@ -115,7 +145,7 @@ public class SeckillServiceImpl implements SeckillService {
                         status.getPosition(), status.getSequence());
                 
                 return Result.error("排队中，当前位置: " + status.getPosition() + 
-                                  "，请稍后刷新页面或等待系统通知");
+                                  "，请等待准入通知后重新提交");
             }
             
             // 如果直接进入处理状态，执行完整的秒杀逻辑
@@ -217,32 +247,7 @@ public class SeckillServiceImpl implements SeckillService {
      * 检查队列状态
      */
     public Result<Object> checkQueueStatus(Long userId, Long flashSaleProductId) {
-        com.flashsale.common.queue.FairRateLimiter.QueueStatus status = 
-            fairRateLimiter.checkQueueStatus(userId, flashSaleProductId);
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("status", status.getStatus());
-        response.put("position", status.getPosition());
-        response.put("sequence", status.getSequence());
-        response.put("canProceed", status.canProceed());
-        
-        String message;
-        switch (status.getStatus()) {
-            case "PROCESSING":
-                message = "正在处理您的请求";
-                break;
-            case "QUEUED":
-                message = "排队中，当前位置: " + status.getPosition();
-                break;
-            case "NOT_FOUND":
-                message = "未在队列中";
-                break;
-            default:
-                message = "未知状态";
-        }
-        response.put("message", message);
-        
-        return Result.success(response);
+        return queueAdmissionService.getQueueStatus(userId, flashSaleProductId);
     }
     
     /**
@@ -284,57 +289,61 @@ public class SeckillServiceImpl implements SeckillService {
             }
             FlashSaleProductVO flashSaleProduct = productVoResult.getData();
 
-            // 5. 使用分布式锁保证库存扣减的原子性
-            String lockKey = SECKILL_LOCK_KEY + flashSaleProduct.getId();
-            Result<String> result = distributedLockService.executeWithLock(lockKey, 1, 10, TimeUnit.SECONDS, () -> {
-                
-                // 再次检查库存（双重检查锁模式）
-                Result<Integer> stockResult = productService.getProductStock(flashSaleProduct.getId());
-                if (!stockResult.getCode().equals(ResultCode.SUCCESS.getCode()) || 
-                    stockResult.getData() == null || stockResult.getData() < seckillDTO.getQuantity()) {
-                    throw new RuntimeException("库存不足，剩余库存: " + 
-                        (stockResult.getData() != null ? stockResult.getData() : 0));
-                }
-                
-                // 6. 原子性扣减库存
-                Result<Boolean> decreaseResult = productService.decreaseStock(flashSaleProduct.getId(), seckillDTO.getQuantity());
-                if (!decreaseResult.getCode().equals(ResultCode.SUCCESS.getCode()) || !Boolean.TRUE.equals(decreaseResult.getData())) {
-                    throw new RuntimeException("库存扣减失败: " + decreaseResult.getMessage());
-                }
-
-                // 7. 创建订单
-                SeckillOrder order = createSeckillOrder(seckillDTO, flashSaleProduct);
-                
-                // 8. 保存订单到数据库
-                try {
-                    orderMapper.insert(order);
-                } catch (Exception e) {
-                    log.error("保存订单失败，开始库存回滚: orderNo={}", order.getOrderNo(), e);
-                    // 回滚库存
-                    productService.increaseStock(flashSaleProduct.getId(), seckillDTO.getQuantity());
-                    throw new RuntimeException("订单创建失败: " + e.getMessage());
-                }
-
-                // 9. 缓存秒杀结果
-                redisTemplate.opsForValue().set(SECKILL_RESULT_KEY + order.getOrderNo(), "SUCCESS", 24, TimeUnit.HOURS);
-                
-                // 10. 发送支付消息（异步）
-                try {
-                    paymentMessageProducer.sendPaymentMessage(order.getOrderNo(), order.getUserId(), 
-                        order.getPaymentAmount(), (int) ORDER_EXPIRE_MINUTES);
-                } catch (Exception e) {
-                    log.warn("发送支付消息失败: orderNo={}", order.getOrderNo(), e);
-                    // 支付消息发送失败不影响订单创建
-                }
-
-                log.info("秒杀成功 - 用户ID: {}, 商品ID: {}, 订单号: {}, 支付金额: {}", 
-                        seckillDTO.getUserId(), flashSaleProduct.getId(), order.getOrderNo(), order.getPaymentAmount());
-                
-                return Result.success(order.getOrderNo());
-            });
-            
-            processingSuccess = result.getCode().equals(ResultCode.SUCCESS.getCode());
-            return result;
+            // 5. Redis原子扣减库存（限购检查、库存检查、扣减、记录购买人一次完成，无需分布式锁）
+            SeckillStockService.DeductResult deductResult = stockService.deductStock(flashSaleProduct.getId(),
+                    seckillDTO.getUserId(), seckillDTO.getQuantity(), flashSaleProduct.getFlashSaleLimit());
+            switch (deductResult.getStatus()) {
+                case SUCCESS:
+                    break;
+                case LIMIT_EXCEEDED:
+                    return Result.error(ResultCode.SECKILL_REPEATED.getMessage());
+                case INSUFFICIENT:
+                case SOLD_OUT:
+                    return Result.error(ResultCode.PRODUCT_STOCK_NOT_ENOUGH.getMessage());
+                default:
+                    return Result.error("商品库存未就绪，请稍后重试");
+            }
+
+            // 6. 创建订单
+            SeckillOrder order = createSeckillOrder(seckillDTO, flashSaleProduct, idGenerator.nextNo(ORDER_NO_PREFIX));
+
+            // 7. 保存订单到数据库（与并发请求的订单组提交）
+            try {
+                orderWriter.write(order);
+            } catch (Exception e) {
+                log.error("保存订单失败，开始库存回滚: orderNo={}", order.getOrderNo(), e);
+                // 回滚Redis库存（数据库库存尚未同步，无需回滚）
+                stockService.rollbackStock(flashSaleProduct.getId(), seckillDTO.getUserId(), seckillDTO.getQuantity());
+                throw new RuntimeException("订单创建失败: " + e.getMessage());
+            }
+            purchasedFilterService.recordPurchase(flashSaleProduct.getId(), seckillDTO.getUserId());
+
+            // 8. 异步同步库存扣减到数据库
+            try {
+                stockDeductMessageProducer.sendStockDeductMessage(flashSaleProduct.getProductId(),
+                    flashSaleProduct.getId(), seckillDTO.getQuantity(), order.getOrderNo(), seckillDTO.getUserId());
+            } catch (Exception e) {
+                log.error("发送库存同步消息失败，需人工对账: orderNo={}", order.getOrderNo(), e);
+            }
+
+            // 9. 缓存秒杀结果
+            redisTemplate.opsForValue().set(SECKILL_RESULT_KEY + order.getOrderNo(), "SUCCESS", 24, TimeUnit.HOURS);
+
+            // 10. 发送支付消息（异步）
+            try {
+                paymentMessageProducer.sendPaymentMessage(order.getOrderNo(), order.getUserId(),
+                    order.getPaymentAmount(), (int) ORDER_EXPIRE_MINUTES);
+            } catch (Exception e) {
+                log.warn("发送支付消息失败: orderNo={}", order.getOrderNo(), e);
+                // 支付消息发送失败不影响订单创建
+            }
+
+            log.info("秒杀成功 - 用户ID: {}, 商品ID: {}, 订单号: {}, 支付金额: {}, 剩余库存: {}",
+                    seckillDTO.getUserId(), flashSaleProduct.getId(), order.getOrderNo(),
+                    order.getPaymentAmount(), deductResult.getRemaining());
+
+            processingSuccess = true;
+            return Result.success(order.getOrderNo());
             
         } catch (Exception e) {
             log.error("执行完整秒杀流程异常", e);
@@ -346,14 +355,11 @@ public class SeckillServiceImpl implements SeckillService {
     }
     
     /**
-     * 创建秒杀订单
+     * 创建秒杀订单（同步秒杀和异步批量秒杀共用）
      */
-    private SeckillOrder createSeckillOrder(SeckillDTO seckillDTO, FlashSaleProductVO flashSaleProduct) {
+    static SeckillOrder createSeckillOrder(SeckillDTO seckillDTO, FlashSaleProductVO flashSaleProduct, String orderNo) {
         SeckillOrder order = new SeckillOrder();
         
-        // 生成订单号
-        String orderNo = "FS" + System.currentTimeMillis() + 
-                        UUID.randomUUID().toString().replace("-", "").substring(0, 8);
         order.setOrderNo(orderNo);
         order.setUserId(seckillDTO.getUserId());
         order.setActivityId(flashSaleProduct.getActivityId());
@@ -389,7 +395,7 @@ public class SeckillServiceImpl implements SeckillService {
     /**
      * 计算支付金额（考虑用户等级和角色折扣）
      */
-    private BigDecimal calculatePaymentAmount(BigDecimal baseAmount, Integer userLevel, Integer userRole) {
+    private static BigDecimal calculatePaymentAmount(BigDecimal baseAmount, Integer userLevel, Integer userRole) {
         if (baseAmount == null) {
             return BigDecimal.ZERO;
         }
@@ -451,7 +457,13 @@ public class SeckillServiceImpl implements SeckillService {
                 return Result.error("不满足秒杀条件: " + checkResult.getMessage());
             }
 
-            // 2. 生成简单令牌（向后兼容）
+            // 2. 启用无状态令牌时签发不绑定IP的HMAC令牌，不写Redis
+            if (statelessTokenService.isEnabled()) {
+                return Result.success(statelessTokenService.issue(userId, flashSaleProductId, null,
+                        TimeUnit.HOURS.toSeconds(1)));
+            }
+
+            // 生成简单令牌（向后兼容）
             String token = userId + "_" + flashSaleProductId + "_" + System.currentTimeMillis();
             
             // 3. 缓存令牌
@@ -523,8 +535,9 @@ public class SeckillServiceImpl implements SeckillService {
                 return Result.error("商品不可秒杀");
             }
             
-            // 2. 检查是否已购买
-            Integer boughtCount = orderMapper.countUserBought(userId, flashSaleProductId);
+            // 2. 检查是否已购买：过滤器判定未购买时跳过数据库统计
+            Integer boughtCount = purchasedFilterService.mightHavePurchased(flashSaleProductId, userId)
+                    ? orderMapper.countUserBought(userId, flashSaleProductId) : Integer.valueOf(0);
             log.info("检查秒杀资格 - 用户已购买数量: {}, 限购数量: {}", boughtCount, product.getFlashSaleLimit());
             
             if (product.getFlashSaleLimit() != null && boughtCount != null && boughtCount >= product.getFlashSaleLimit()) {
@@ -582,8 +595,13 @@ public class SeckillServiceImpl implements SeckillService {
 
     @Override
     public Result<Void> preloadSeckillProducts(Long activityId) {
+        return preloadSeckillProducts(activityId, 1);
+    }
+
+    @Override
+    public Result<Void> preloadSeckillProducts(Long activityId, Integer bucketCount) {
         try {
-            return productService.preloadProductsToRedis(activityId);
+            return productService.preloadProductsToRedis(activityId, bucketCount);
         } catch (Exception e) {
             log.error("预热秒杀商品异常", e);
             return Result.error("预热失败：" + e.getMessage());
@@ -593,12 +611,11 @@ public class SeckillServiceImpl implements SeckillService {
     @Override
     public Result<Integer> getSeckillStock(Long flashSaleProductId) {
         try {
-            Result<FlashSaleProductVO> productResult = productService.getProductDetail(flashSaleProductId);
-            if (!productResult.getCode().equals(ResultCode.SUCCESS.getCode()) || productResult.getData() == null) {
+            Integer stock = stockQueryService.getStock(flashSaleProductId);
+            if (stock == null) {
                 return Result.error("商品不存在");
             }
-
-            return Result.success(productResult.getData().getRemainingStock());
+            return Result.success(stock);
         } catch (Exception e) {
             log.error("获取秒杀库存异常", e);
             return Result.error("获取库存失败：" + e.getMessage());
@@ -0,0 +1,935 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.common.lock.DistributedLockService;
+import com.flashsale.seckill.entity.FlashSaleActivity;
+import com.flashsale.seckill.entity.FlashSaleProduct;
+import com.flashsale.seckill.mapper.FlashSaleActivityMapper;
+import com.flashsale.seckill.mapper.FlashSaleProductMapper;
+import com.flashsale.seckill.service.SeckillStockService;
+import com.flashsale.seckill.service.SoldOutCacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 秒杀库存服务实现类
+ * 库存检查、限购检查、扣减和购买记录在一个Lua脚本中完成，一次往返、无需分布式锁；只有未预热时从数据库加载库存按商品加锁
+ * 超热商品可将库存拆分为多个分桶，每个分桶是独立的key，可分布在不同的Redis分片上
+ * 各节点本地缓存分桶数，扣减脚本同时校验Redis中的分桶数，重新预热改变分桶数后旧缓存在下一次扣减时即被发现并刷新
+ * 库存一旦加载到Redis，秒杀期间以Redis为准，数据库由写回消费者异步追平；
+ * 销售进行中不从数据库重新加载（数据库可能落后尚未写回的扣减），只在活动未开始或已结束时允许
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class SeckillStockServiceImpl implements SeckillStockService {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private FlashSaleProductMapper productMapper;
+
+    @Autowired
+    private FlashSaleActivityMapper activityMapper;
+
+    @Autowired
+    private SoldOutCacheService soldOutCacheService;
+
+    @Autowired
+    private DistributedLockService lockService;
+
+    private static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    private static final String SECKILL_BOUGHT_KEY = "seckill:bought:";
+    private static final String STOCK_BUCKET_KEY = "seckill:stock:bucket:";
+    private static final String STOCK_BUCKET_COUNT_KEY = "seckill:stock:bucket_count:";
+    private static final String STOCK_LOADED_KEY = "seckill:stock:loaded:";
+    private static final String DEDUCTED_REQUEST_KEY = "seckill:deducted:";
+    private static final long STOCK_EXPIRE_SECONDS = TimeUnit.HOURS.toSeconds(24);
+
+    /**
+     * 未预热时加载库存的锁（完整key为 seckill:lock:product:{id}），等待时间覆盖一次数据库查询即可
+     */
+    private static final String STOCK_LOAD_LOCK_PREFIX = "product:";
+    private static final long STOCK_LOAD_LOCK_WAIT_MILLIS = 3000;
+    private static final long STOCK_LOAD_LOCK_LEASE_MILLIS = 10000;
+
+    /**
+     * 已加载标记保留时间，标记存在说明Redis库存已经作为权威数据被扣减过
+     */
+    private static final long LOADED_MARK_EXPIRE_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    /**
+     * 最大分桶数量
+     */
+    private static final int MAX_BUCKET_COUNT = 64;
+
+    // 脚本返回码
+    private static final long CODE_NOT_LOADED = -1;
+    private static final long CODE_LIMIT_EXCEEDED = -2;
+    private static final long CODE_SOLD_OUT = -3;
+    private static final long CODE_BUCKETS_CHANGED = -4;
+    private static final long CODE_INSUFFICIENT = -5;
+    private static final long CODE_RELOAD_REFUSED = -6;
+
+    /**
+     * 本地缓存的分桶数量，扣减脚本发现与Redis不一致时刷新
+     */
+    private final Map<Long, Integer> bucketCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 扣减脚本：KEYS[1]-库存key，KEYS[2]-购买记录key，KEYS[3]-分桶数key；ARGV[1]-用户ID，ARGV[2]-数量，ARGV[3]-限购，ARGV[4]-过期秒数
+     * 库存已为0返回-3，库存有剩余但不足本次数量返回-5，商品已改为分桶模式时返回-4
+     */
+    private static final DefaultRedisScript<Long> DEDUCT_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[3]) == 1 then " +
+        "    return -4 " +
+        "end " +
+        "local stock = redis.call('get', KEYS[1]) " +
+        "if not stock then " +
+        "    return -1 " +
+        "end " +
+        "local quantity = tonumber(ARGV[2]) " +
+        "local limit = tonumber(ARGV[3]) " +
+        "if limit > 0 then " +
+        "    local bought = tonumber(redis.call('hget', KEYS[2], ARGV[1]) or '0') " +
+        "    if bought + quantity > limit then " +
+        "        return -2 " +
+        "    end " +
+        "end " +
+        "if tonumber(stock) <= 0 then " +
+        "    return -3 " +
+        "end " +
+        "if tonumber(stock) < quantity then " +
+        "    return -5 " +
+        "end " +
+        "local remaining = redis.call('decrby', KEYS[1], quantity) " +
+        "redis.call('hincrby', KEYS[2], ARGV[1], quantity) " +
+        "if redis.call('ttl', KEYS[2]) < 0 then " +
+        "    redis.call('expire', KEYS[2], ARGV[4]) " +
+        "end " +
+        "return remaining",
+        Long.class);
+
+    /**
+     * 批量扣减脚本：KEYS[1..3]同扣减脚本，KEYS[4]-已扣减请求Hash；ARGV[1]-限购，ARGV[2]-过期秒数，
+     * 之后每四个参数为一个请求的用户ID、数量、请求ID和订单编号
+     * 逐个请求判断限购和库存，最后一次性扣减总量；扣减成功时记录请求ID -> 订单编号，
+     * 请求ID已扣减过的请求不再扣减，返回首次记录的订单编号；
+     * 库存未加载时返回空数组，商品已改为分桶模式时返回{-4}
+     */
+    private static final DefaultRedisScript<List> BATCH_DEDUCT_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[3]) == 1 then " +
+        "    return {-4} " +
+        "end " +
+        "local stock = redis.call('get', KEYS[1]) " +
+        "if not stock then " +
+        "    return {} " +
+        "end " +
+        "stock = tonumber(stock) " +
+        "local limit = tonumber(ARGV[1]) " +
+        "local results = {} " +
+        "local deducted = 0 " +
+        "local n = (#ARGV - 2) / 4 " +
+        "for i = 1, n do " +
+        "    local userId = ARGV[4 * i - 1] " +
+        "    local quantity = tonumber(ARGV[4 * i]) " +
+        "    local requestId = ARGV[4 * i + 1] " +
+        "    local bought = tonumber(redis.call('hget', KEYS[2], userId) or '0') " +
+        "    local orderNo = redis.call('hget', KEYS[4], requestId) " +
+        "    if orderNo then " +
+        "        results[i] = orderNo " +
+        "    elseif limit > 0 and bought + quantity > limit then " +
+        "        results[i] = -2 " +
+        "    elseif stock <= 0 then " +
+        "        results[i] = -3 " +
+        "    elseif stock < quantity then " +
+        "        results[i] = -5 " +
+        "    else " +
+        "        stock = stock - quantity " +
+        "        deducted = deducted + quantity " +
+        "        redis.call('hincrby', KEYS[2], userId, quantity) " +
+        "        redis.call('hset', KEYS[4], requestId, ARGV[4 * i + 2]) " +
+        "        results[i] = stock " +
+        "    end " +
+        "end " +
+        "if deducted > 0 then " +
+        "    redis.call('decrby', KEYS[1], deducted) " +
+        "    if redis.call('ttl', KEYS[2]) < 0 then " +
+        "        redis.call('expire', KEYS[2], ARGV[2]) " +
+        "    end " +
+        "    if redis.call('ttl', KEYS[4]) < 0 then " +
+        "        redis.call('expire', KEYS[4], ARGV[2]) " +
+        "    end " +
+        "end " +
+        "return results",
+        List.class);
+
+    /**
+     * 回滚脚本：归还库存并撤销购买记录
+     */
+    private static final DefaultRedisScript<Long> ROLLBACK_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[1]) == 1 then " +
+        "    redis.call('incrby', KEYS[1], ARGV[2]) " +
+        "end " +
+        "local bought = redis.call('hincrby', KEYS[2], ARGV[1], -tonumber(ARGV[2])) " +
+        "if bought <= 0 then " +
+        "    redis.call('hdel', KEYS[2], ARGV[1]) " +
+        "end " +
+        "return bought",
+        Long.class);
+
+    /**
+     * 分桶模式限购占用脚本：KEYS[1]-用户所在分桶的购买记录key；ARGV同扣减脚本
+     */
+    private static final DefaultRedisScript<Long> RESERVE_QUOTA_SCRIPT = new DefaultRedisScript<>(
+        "local quantity = tonumber(ARGV[2]) " +
+        "local limit = tonumber(ARGV[3]) " +
+        "local bought = tonumber(redis.call('hget', KEYS[1], ARGV[1]) or '0') " +
+        "if limit > 0 and bought + quantity > limit then " +
+        "    return -2 " +
+        "end " +
+        "redis.call('hincrby', KEYS[1], ARGV[1], quantity) " +
+        "if redis.call('ttl', KEYS[1]) < 0 then " +
+        "    redis.call('expire', KEYS[1], ARGV[4]) " +
+        "end " +
+        "return bought + quantity",
+        Long.class);
+
+    /**
+     * 分桶模式限购释放脚本：KEYS[1]-购买记录key；ARGV[1]-用户ID，ARGV[2]-数量
+     */
+    private static final DefaultRedisScript<Long> RELEASE_QUOTA_SCRIPT = new DefaultRedisScript<>(
+        "local bought = redis.call('hincrby', KEYS[1], ARGV[1], -tonumber(ARGV[2])) " +
+        "if bought <= 0 then " +
+        "    redis.call('hdel', KEYS[1], ARGV[1]) " +
+        "end " +
+        "return bought",
+        Long.class);
+
+    /**
+     * 分桶扣减脚本：KEYS[1]-分桶库存key，KEYS[2]-分桶数key；ARGV[1]-数量，ARGV[2]-调用方缓存的分桶数
+     * 分桶已为0返回-3，不足本次数量返回-5，Redis中的分桶数与调用方不一致时返回-4
+     */
+    private static final DefaultRedisScript<Long> BUCKET_DEDUCT_SCRIPT = new DefaultRedisScript<>(
+        "if tonumber(redis.call('get', KEYS[2]) or '1') ~= tonumber(ARGV[2]) then " +
+        "    return -4 " +
+        "end " +
+        "local stock = redis.call('get', KEYS[1]) " +
+        "if not stock then " +
+        "    return -1 " +
+        "end " +
+        "if tonumber(stock) <= 0 then " +
+        "    return -3 " +
+        "end " +
+        "if tonumber(stock) < tonumber(ARGV[1]) then " +
+        "    return -5 " +
+        "end " +
+        "return redis.call('decrby', KEYS[1], ARGV[1])",
+        Long.class);
+
+    /**
+     * 分桶归还脚本：KEYS[1]-分桶库存key；ARGV[1]-数量
+     */
+    private static final DefaultRedisScript<Long> BUCKET_RETURN_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[1]) == 0 then " +
+        "    return -1 " +
+        "end " +
+        "return redis.call('incrby', KEYS[1], ARGV[1])",
+        Long.class);
+
+    /**
+     * 已扣减请求检查脚本：KEYS[1]-已扣减请求Hash；ARGV[1]-请求ID；返回首次扣减记录的订单编号，未扣减过返回null
+     */
+    private static final DefaultRedisScript<String> DEDUCTED_CHECK_SCRIPT = new DefaultRedisScript<>(
+        "return redis.call('hget', KEYS[1], ARGV[1])",
+        String.class);
+
+    /**
+     * 已扣减请求记录脚本：KEYS[1]-已扣减请求Hash；ARGV[1]-请求ID，ARGV[2]-订单编号，ARGV[3]-过期秒数
+     */
+    private static final DefaultRedisScript<Long> DEDUCTED_MARK_SCRIPT = new DefaultRedisScript<>(
+        "redis.call('hset', KEYS[1], ARGV[1], ARGV[2]) " +
+        "if redis.call('ttl', KEYS[1]) < 0 then " +
+        "    redis.call('expire', KEYS[1], ARGV[3]) " +
+        "end " +
+        "return 1",
+        Long.class);
+
+    /**
+     * 已扣减请求清除脚本：KEYS[1]-已扣减请求Hash；ARGV[1]-请求ID
+     */
+    private static final DefaultRedisScript<Long> DEDUCTED_CLEAR_SCRIPT = new DefaultRedisScript<>(
+        "return redis.call('hdel', KEYS[1], ARGV[1])",
+        Long.class);
+
+    /**
+     * 懒加载脚本：仅在未分桶且库存key不存在时写入，并写入已加载标记
+     * KEYS[1]-库存key，KEYS[2]-分桶数key，KEYS[3]-已加载标记key；ARGV[1]-库存，ARGV[2]-过期秒数，
+     * ARGV[3]-是否允许重新加载(1/0)，ARGV[4]-标记过期秒数
+     * 返回1-已写入，0-已存在，-4-商品为分桶模式（不得创建单key库存，否则与分桶库存重复售卖），
+     * -6-库存曾经加载过且不允许重新加载
+     */
+    private static final DefaultRedisScript<Long> LOAD_IF_ABSENT_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[2]) == 1 then " +
+        "    return -4 " +
+        "end " +
+        "if redis.call('exists', KEYS[1]) == 1 then " +
+        "    return 0 " +
+        "end " +
+        "if tonumber(ARGV[3]) == 0 and redis.call('exists', KEYS[3]) == 1 then " +
+        "    return -6 " +
+        "end " +
+        "redis.call('set', KEYS[1], ARGV[1], 'EX', ARGV[2]) " +
+        "redis.call('set', KEYS[3], 1, 'EX', ARGV[4]) " +
+        "return 1",
+        Long.class);
+
+    @Override
+    public void loadStock(FlashSaleProduct product) {
+        loadStock(product, 1);
+    }
+
+    @Override
+    public void loadStock(FlashSaleProduct product, int bucketCount) {
+        Long id = product.getId();
+        int stock = product.getFlashSaleStock() != null ? Math.max(product.getFlashSaleStock(), 0) : 0;
+        int buckets = Math.max(1, Math.min(bucketCount, MAX_BUCKET_COUNT));
+
+        // 销售进行中Redis库存为准，数据库可能还有未写回的扣减，不能用数据库值覆盖
+        if (isSaleLive(product) && isStockLoaded(id)) {
+            log.warn("秒杀进行中且库存已在Redis，跳过重新预热: productId={}", id);
+            return;
+        }
+
+        // 清理上一次预热遗留的分桶数据
+        Object previous = redisTemplate.opsForValue().get(STOCK_BUCKET_COUNT_KEY + id);
+        if (previous != null) {
+            int previousBuckets = Integer.parseInt(previous.toString());
+            List<String> staleKeys = new ArrayList<>();
+            for (int i = 0; i < previousBuckets; i++) {
+                staleKeys.add(bucketKey(id, i));
+                staleKeys.add(boughtKey(id, i));
+            }
+            redisTemplate.delete(staleKeys);
+        }
+        clearSoldOut(id);
+
+        if (buckets == 1) {
+            redisTemplate.delete(STOCK_BUCKET_COUNT_KEY + id);
+            redisTemplate.opsForValue().set(SECKILL_STOCK_KEY + id, stock, STOCK_EXPIRE_SECONDS, TimeUnit.SECONDS);
+            redisTemplate.expire(SECKILL_BOUGHT_KEY + id, STOCK_EXPIRE_SECONDS, TimeUnit.SECONDS);
+        } else {
+            // 库存平均分配到各分桶，余数分给前面的分桶
+            int base = stock / buckets;
+            int extra = stock % buckets;
+            for (int i = 0; i < buckets; i++) {
+                int bucketStock = base + (i < extra ? 1 : 0);
+                redisTemplate.opsForValue().set(bucketKey(id, i), bucketStock, STOCK_EXPIRE_SECONDS, TimeUnit.SECONDS);
+            }
+            // 先写分桶数再删除单key库存，其他节点的单key扣减和懒加载从此刻起都会转到分桶模式
+            redisTemplate.opsForValue().set(STOCK_BUCKET_COUNT_KEY + id, buckets, STOCK_EXPIRE_SECONDS, TimeUnit.SECONDS);
+            redisTemplate.delete(SECKILL_STOCK_KEY + id);
+        }
+
+        redisTemplate.opsForValue().set(STOCK_LOADED_KEY + id, 1, LOADED_MARK_EXPIRE_SECONDS, TimeUnit.SECONDS);
+
+        bucketCounts.put(id, buckets);
+        log.info("加载秒杀库存到Redis: productId={}, stock={}, buckets={}", id, stock, buckets);
+    }
+
+    @Override
+    public boolean invalidateStock(Long flashSaleProductId) {
+        FlashSaleProduct product = productMapper.findById(flashSaleProductId);
+        if (product != null && isSaleLive(product)) {
+            log.info("秒杀进行中，保留Redis库存: productId={}", flashSaleProductId);
+            return false;
+        }
+
+        List<String> keys = new ArrayList<>();
+        keys.add(SECKILL_STOCK_KEY + flashSaleProductId);
+        keys.add(STOCK_BUCKET_COUNT_KEY + flashSaleProductId);
+        keys.add(STOCK_LOADED_KEY + flashSaleProductId);
+        for (int i = 0; i < MAX_BUCKET_COUNT; i++) {
+            keys.add(bucketKey(flashSaleProductId, i));
+        }
+        redisTemplate.delete(keys);
+        bucketCounts.remove(flashSaleProductId);
+        clearSoldOut(flashSaleProductId);
+        log.info("清除Redis库存，下次扣减时从数据库加载: productId={}", flashSaleProductId);
+        return true;
+    }
+
+    @Override
+    public DeductResult deductStock(Long flashSaleProductId, Long userId, Integer quantity, Integer limit) {
+        // 分桶数变化时刷新本地缓存后重试一次
+        DeductResult result = tryDeduct(flashSaleProductId, userId, quantity, limit);
+        if (result == null) {
+            refreshBucketCount(flashSaleProductId);
+            result = tryDeduct(flashSaleProductId, userId, quantity, limit);
+        }
+        if (result == null) {
+            result = new DeductResult(DeductStatus.NOT_LOADED, 0);
+        }
+
+        // 只有库存确实为0时才标记售罄，购买数量超过剩余库存不影响其他请求
+        if (result.getStatus() == DeductStatus.SOLD_OUT) {
+            markSoldOut(flashSaleProductId);
+        }
+
+        log.debug("Redis库存扣减: productId={}, userId={}, quantity={}, result={}",
+                flashSaleProductId, userId, quantity, result);
+        return result;
+    }
+
+    /**
+     * 按本地缓存的分桶数扣减一次，分桶数已变化时返回null
+     */
+    private DeductResult tryDeduct(Long flashSaleProductId, Long userId, Integer quantity, Integer limit) {
+        int buckets = getBucketCount(flashSaleProductId);
+        if (buckets > 1) {
+            return executeBucketDeduct(flashSaleProductId, buckets, userId, quantity, limit);
+        }
+
+        DeductResult result = executeDeduct(flashSaleProductId, userId, quantity, limit);
+        if (result == null || result.getStatus() != DeductStatus.NOT_LOADED) {
+            return result;
+        }
+
+        // 库存未预热时从数据库加载一次（不覆盖已存在的值），然后重试
+        long loaded = loadStockIfAbsent(flashSaleProductId);
+        if (loaded == CODE_BUCKETS_CHANGED) {
+            return null;
+        }
+        return loaded >= 0 ? executeDeduct(flashSaleProductId, userId, quantity, limit) : result;
+    }
+
+    @Override
+    public List<DeductResult> deductStockBatch(Long flashSaleProductId, List<Long> userIds, List<Integer> quantities,
+                                               Integer limit, List<String> requestIds, List<String> orderNos) {
+        // 未提供请求ID的请求使用随机ID，不做重复扣减保护
+        List<String> ids = new ArrayList<>(userIds.size());
+        for (int i = 0; i < userIds.size(); i++) {
+            String requestId = requestIds != null ? requestIds.get(i) : null;
+            ids.add(requestId != null ? requestId : UUID.randomUUID().toString());
+        }
+
+        int buckets = getBucketCount(flashSaleProductId);
+
+        List<DeductResult> results;
+        if (buckets > 1) {
+            // 分桶模式下各用户落在不同分桶，逐个扣减
+            results = new ArrayList<>(userIds.size());
+            for (int i = 0; i < userIds.size(); i++) {
+                results.add(deductStockOnce(flashSaleProductId, userIds.get(i), quantities.get(i), limit, ids.get(i),
+                    orderNos.get(i)));
+            }
+            return results;
+        }
+
+        BatchOutcome outcome = executeBatchDeduct(flashSaleProductId, userIds, quantities, limit, ids, orderNos);
+        if (outcome.notLoaded) {
+            long loaded = loadStockIfAbsent(flashSaleProductId);
+            if (loaded == CODE_BUCKETS_CHANGED) {
+                outcome = BatchOutcome.BUCKETS_CHANGED;
+            } else if (loaded >= 0) {
+                outcome = executeBatchDeduct(flashSaleProductId, userIds, quantities, limit, ids, orderNos);
+            }
+        }
+        if (outcome.bucketsChanged) {
+            // 商品已改为分桶模式，刷新分桶数后逐个扣减
+            refreshBucketCount(flashSaleProductId);
+            results = new ArrayList<>(userIds.size());
+            for (int i = 0; i < userIds.size(); i++) {
+                results.add(deductStockOnce(flashSaleProductId, userIds.get(i), quantities.get(i), limit, ids.get(i),
+                    orderNos.get(i)));
+            }
+            return results;
+        }
+
+        results = outcome.results;
+        if (results == null) {
+            results = new ArrayList<>(userIds.size());
+            for (int i = 0; i < userIds.size(); i++) {
+                results.add(new DeductResult(DeductStatus.NOT_LOADED, 0));
+            }
+        }
+
+        if (results.stream().anyMatch(r -> r.getStatus() == DeductStatus.SOLD_OUT)) {
+            markSoldOut(flashSaleProductId);
+        }
+
+        log.debug("Redis批量库存扣减: productId={}, batchSize={}, buckets={}", flashSaleProductId, userIds.size(), buckets);
+        return results;
+    }
+
+    /**
+     * 按请求ID扣减一次（分桶模式使用）：已扣减过的请求返回首次记录的订单编号；扣减成功后再记录请求ID，
+     * 两步之间宕机时重新投递会再扣减一次（少卖），不会出现有记录而未扣减（超卖）
+     */
+    private DeductResult deductStockOnce(Long flashSaleProductId, Long userId, Integer quantity, Integer limit,
+                                         String requestId, String orderNo) {
+        List<String> deductedKey = Collections.singletonList(DEDUCTED_REQUEST_KEY + flashSaleProductId);
+        String deductedOrderNo = redisTemplate.execute(DEDUCTED_CHECK_SCRIPT, deductedKey, requestId);
+        if (deductedOrderNo != null) {
+            log.info("请求已扣减过库存，不再重复扣减: productId={}, requestId={}, orderNo={}",
+                    flashSaleProductId, requestId, deductedOrderNo);
+            return new DeductResult(DeductStatus.SUCCESS, -1, deductedOrderNo);
+        }
+
+        DeductResult result = deductStock(flashSaleProductId, userId, quantity, limit);
+        if (!result.isSuccess()) {
+            return result;
+        }
+        redisTemplate.execute(DEDUCTED_MARK_SCRIPT, deductedKey, requestId, orderNo, STOCK_EXPIRE_SECONDS);
+        return new DeductResult(DeductStatus.SUCCESS, result.getRemaining(), orderNo);
+    }
+
+    @Override
+    public void rollbackStock(Long flashSaleProductId, Long userId, Integer quantity) {
+        rollbackStock(flashSaleProductId, userId, quantity, null);
+    }
+
+    @Override
+    public void rollbackStock(Long flashSaleProductId, Long userId, Integer quantity, String requestId) {
+        // 先清除已扣减记录再归还库存：两步之间宕机只会少卖，不会让重新投递的请求不扣库存就下单
+        if (requestId != null) {
+            redisTemplate.execute(DEDUCTED_CLEAR_SCRIPT,
+                Collections.singletonList(DEDUCTED_REQUEST_KEY + flashSaleProductId), requestId);
+        }
+
+        int buckets = refreshBucketCount(flashSaleProductId);
+
+        if (buckets > 1) {
+            // 归还到用户所在分桶，并释放该分桶中的限购占用
+            int home = homeBucket(userId, buckets);
+            redisTemplate.execute(BUCKET_RETURN_SCRIPT,
+                Collections.singletonList(bucketKey(flashSaleProductId, home)), quantity.longValue());
+            redisTemplate.execute(RELEASE_QUOTA_SCRIPT,
+                Collections.singletonList(boughtKey(flashSaleProductId, home)), userId, quantity.longValue());
+        } else {
+            List<String> keys = Arrays.asList(SECKILL_STOCK_KEY + flashSaleProductId, SECKILL_BOUGHT_KEY + flashSaleProductId);
+            redisTemplate.execute(ROLLBACK_SCRIPT, keys, userId, quantity.longValue());
+        }
+
+        clearSoldOut(flashSaleProductId);
+        log.info("回滚Redis库存: productId={}, userId={}, quantity={}", flashSaleProductId, userId, quantity);
+    }
+
+    @Override
+    public void replenishStock(Long flashSaleProductId, Integer quantity) {
+        int buckets = refreshBucketCount(flashSaleProductId);
+        if (buckets <= 1) {
+            Long result = redisTemplate.execute(BUCKET_RETURN_SCRIPT,
+                Collections.singletonList(SECKILL_STOCK_KEY + flashSaleProductId), quantity.longValue());
+            clearSoldOut(flashSaleProductId);
+            log.info("补充Redis库存: productId={}, quantity={}, result={}", flashSaleProductId, quantity, result);
+            return;
+        }
+
+        // 与预热相同平均分配到各分桶，余数从随机分桶开始分配，避免补充的库存集中在少数分桶上被逐个探测
+        int base = quantity / buckets;
+        int extra = quantity % buckets;
+        int offset = ThreadLocalRandom.current().nextInt(buckets);
+        int missing = 0;
+        for (int i = 0; i < buckets; i++) {
+            int bucket = (offset + i) % buckets;
+            long share = base + (i < extra ? 1 : 0);
+            if (share == 0) {
+                continue;
+            }
+            Long result = redisTemplate.execute(BUCKET_RETURN_SCRIPT,
+                Collections.singletonList(bucketKey(flashSaleProductId, bucket)), share);
+            if (result == null || result < 0) {
+                missing += share;
+            }
+        }
+        clearSoldOut(flashSaleProductId);
+        if (missing > 0) {
+            log.warn("补充Redis库存时部分分桶不存在（可能正在重新预热），未补充: productId={}, missing={}",
+                    flashSaleProductId, missing);
+        }
+        log.info("补充Redis库存: productId={}, quantity={}, buckets={}", flashSaleProductId, quantity, buckets);
+    }
+
+    @Override
+    public Integer getStock(Long flashSaleProductId) {
+        int buckets = getBucketCount(flashSaleProductId);
+        if (buckets <= 1) {
+            Object stock = redisTemplate.opsForValue().get(SECKILL_STOCK_KEY + flashSaleProductId);
+            if (stock == null) {
+                bucketCounts.remove(flashSaleProductId);
+                return null;
+            }
+            return Integer.parseInt(stock.toString());
+        }
+
+        // 分桶模式下总库存为各分桶之和，一次MGET读取
+        List<String> keys = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            keys.add(bucketKey(flashSaleProductId, i));
+        }
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return null;
+        }
+
+        int total = 0;
+        boolean loaded = false;
+        for (Object value : values) {
+            if (value != null) {
+                total += Integer.parseInt(value.toString());
+                loaded = true;
+            }
+        }
+        if (!loaded) {
+            // 分桶可能已被重新预热删除，下次读取时重新获取分桶数
+            bucketCounts.remove(flashSaleProductId);
+            return null;
+        }
+        return total;
+    }
+
+    @Override
+    public Map<Long, Integer> getStocks(Collection<Long> flashSaleProductIds) {
+        Map<Long, Integer> stocks = new HashMap<>();
+        if (flashSaleProductIds == null || flashSaleProductIds.isEmpty()) {
+            return stocks;
+        }
+        List<Long> ids = flashSaleProductIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        resolveBucketCounts(ids);
+
+        // 每个key记录所属商品，分桶商品的多个分桶key累加
+        List<String> keys = new ArrayList<>(ids.size());
+        List<Long> owners = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            int buckets = bucketCounts.getOrDefault(id, 1);
+            if (buckets <= 1) {
+                keys.add(SECKILL_STOCK_KEY + id);
+                owners.add(id);
+            } else {
+                for (int i = 0; i < buckets; i++) {
+                    keys.add(bucketKey(id, i));
+                    owners.add(id);
+                }
+            }
+        }
+
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return stocks;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value != null) {
+                stocks.merge(owners.get(i), Integer.parseInt(value.toString()), Integer::sum);
+            }
+        }
+        for (Long id : ids) {
+            if (!stocks.containsKey(id)) {
+                bucketCounts.remove(id);
+            }
+        }
+        return stocks;
+    }
+
+    /**
+     * 执行扣减脚本，商品已改为分桶模式时返回null
+     * 参数以数值类型传入，经Jackson序列化后为纯数字，Lua中可直接tonumber
+     */
+    private DeductResult executeDeduct(Long flashSaleProductId, Long userId, Integer quantity, Integer limit) {
+        List<String> keys = Arrays.asList(SECKILL_STOCK_KEY + flashSaleProductId,
+            SECKILL_BOUGHT_KEY + flashSaleProductId, STOCK_BUCKET_COUNT_KEY + flashSaleProductId);
+
+        Long code = redisTemplate.execute(DEDUCT_SCRIPT, keys,
+            userId, quantity.longValue(), limitValue(limit), STOCK_EXPIRE_SECONDS);
+
+        if (code != null && code == CODE_BUCKETS_CHANGED) {
+            return null;
+        }
+        if (code == null || code == CODE_NOT_LOADED) {
+            return new DeductResult(DeductStatus.NOT_LOADED, 0);
+        }
+        if (code == CODE_LIMIT_EXCEEDED) {
+            return new DeductResult(DeductStatus.LIMIT_EXCEEDED, -1);
+        }
+        if (code == CODE_SOLD_OUT) {
+            return new DeductResult(DeductStatus.SOLD_OUT, 0);
+        }
+        if (code == CODE_INSUFFICIENT) {
+            return new DeductResult(DeductStatus.INSUFFICIENT, -1);
+        }
+        return new DeductResult(DeductStatus.SUCCESS, code);
+    }
+
+    /**
+     * 执行批量扣减脚本
+     */
+    private BatchOutcome executeBatchDeduct(Long flashSaleProductId, List<Long> userIds, List<Integer> quantities,
+                                            Integer limit, List<String> requestIds, List<String> orderNos) {
+        List<String> keys = Arrays.asList(SECKILL_STOCK_KEY + flashSaleProductId,
+            SECKILL_BOUGHT_KEY + flashSaleProductId, STOCK_BUCKET_COUNT_KEY + flashSaleProductId,
+            DEDUCTED_REQUEST_KEY + flashSaleProductId);
+
+        List<Object> args = new ArrayList<>(userIds.size() * 4 + 2);
+        args.add(limitValue(limit));
+        args.add(STOCK_EXPIRE_SECONDS);
+        for (int i = 0; i < userIds.size(); i++) {
+            args.add(userIds.get(i));
+            args.add(quantities.get(i).longValue());
+            args.add(requestIds.get(i));
+            args.add(orderNos.get(i));
+        }
+
+        List<?> codes = redisTemplate.execute(BATCH_DEDUCT_SCRIPT, keys, args.toArray());
+        if (codes != null && !codes.isEmpty() && codes.get(0) instanceof Number
+                && ((Number) codes.get(0)).longValue() == CODE_BUCKETS_CHANGED) {
+            return BatchOutcome.BUCKETS_CHANGED;
+        }
+        if (codes == null || codes.size() != userIds.size()) {
+            return BatchOutcome.NOT_LOADED;
+        }
+
+        List<DeductResult> results = new ArrayList<>(codes.size());
+        for (int i = 0; i < codes.size(); i++) {
+            Object value = codes.get(i);
+            if (value instanceof String) {
+                // 请求ID已扣减过，沿用首次记录的订单编号
+                results.add(new DeductResult(DeductStatus.SUCCESS, -1, (String) value));
+                continue;
+            }
+            long code = ((Number) value).longValue();
+            if (code == CODE_LIMIT_EXCEEDED) {
+                results.add(new DeductResult(DeductStatus.LIMIT_EXCEEDED, -1));
+            } else if (code == CODE_SOLD_OUT) {
+                results.add(new DeductResult(DeductStatus.SOLD_OUT, 0));
+            } else if (code == CODE_INSUFFICIENT) {
+                results.add(new DeductResult(DeductStatus.INSUFFICIENT, -1));
+            } else {
+                results.add(new DeductResult(DeductStatus.SUCCESS, code, orderNos.get(i)));
+            }
+        }
+        return new BatchOutcome(results, false, false);
+    }
+
+    /**
+     * 分桶扣减：先在用户所在分桶占用限购额度，再从用户所在分桶扣减，分桶为空时依次尝试相邻分桶
+     * 单次购买数量需由同一个分桶满足；所有分桶都为0时返回售罄，有分桶剩余但都不足本次数量时返回库存不足，
+     * 扣减失败时释放额度；分桶数已变化时释放额度并返回null
+     */
+    private DeductResult executeBucketDeduct(Long flashSaleProductId, int buckets, Long userId,
+                                             Integer quantity, Integer limit) {
+        int home = homeBucket(userId, buckets);
+        String quotaKey = boughtKey(flashSaleProductId, home);
+
+        Long quota = redisTemplate.execute(RESERVE_QUOTA_SCRIPT, Collections.singletonList(quotaKey),
+            userId, quantity.longValue(), limitValue(limit), STOCK_EXPIRE_SECONDS);
+        if (quota != null && quota == CODE_LIMIT_EXCEEDED) {
+            return new DeductResult(DeductStatus.LIMIT_EXCEEDED, -1);
+        }
+
+        boolean anyLoaded = false;
+        boolean anyRemaining = false;
+        for (int i = 0; i < buckets; i++) {
+            int bucket = (home + i) % buckets;
+            Long code = redisTemplate.execute(BUCKET_DEDUCT_SCRIPT,
+                Arrays.asList(bucketKey(flashSaleProductId, bucket), STOCK_BUCKET_COUNT_KEY + flashSaleProductId),
+                quantity.longValue(), (long) buckets);
+
+            if (code != null && code >= 0) {
+                return new DeductResult(DeductStatus.SUCCESS, code);
+            }
+            if (code != null && code == CODE_BUCKETS_CHANGED) {
+                redisTemplate.execute(RELEASE_QUOTA_SCRIPT, Collections.singletonList(quotaKey), userId, quantity.longValue());
+                return null;
+            }
+            if (code != null && (code == CODE_SOLD_OUT || code == CODE_INSUFFICIENT)) {
+                anyLoaded = true;
+                anyRemaining |= code == CODE_INSUFFICIENT;
+            }
+        }
+
+        redisTemplate.execute(RELEASE_QUOTA_SCRIPT, Collections.singletonList(quotaKey), userId, quantity.longValue());
+        if (anyRemaining) {
+            return new DeductResult(DeductStatus.INSUFFICIENT, -1);
+        }
+        return new DeductResult(anyLoaded ? DeductStatus.SOLD_OUT : DeductStatus.NOT_LOADED, 0);
+    }
+
+    /**
+     * 批量解析本地未缓存的分桶数，一次MGET读取
+     */
+    private void resolveBucketCounts(List<Long> flashSaleProductIds) {
+        List<Long> unknown = flashSaleProductIds.stream()
+            .filter(id -> !bucketCounts.containsKey(id))
+            .collect(Collectors.toList());
+        if (unknown.isEmpty()) {
+            return;
+        }
+        List<String> keys = unknown.stream().map(id -> STOCK_BUCKET_COUNT_KEY + id).collect(Collectors.toList());
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; i < unknown.size(); i++) {
+            Object value = values != null ? values.get(i) : null;
+            bucketCounts.put(unknown.get(i), value != null ? Integer.parseInt(value.toString()) : 1);
+        }
+    }
+
+    /**
+     * 获取商品的分桶数量（本地缓存，未命中时从Redis读取一次）
+     */
+    private int getBucketCount(Long flashSaleProductId) {
+        Integer cached = bucketCounts.get(flashSaleProductId);
+        return cached != null ? cached : refreshBucketCount(flashSaleProductId);
+    }
+
+    /**
+     * 从Redis重新读取分桶数量并更新本地缓存
+     */
+    private int refreshBucketCount(Long flashSaleProductId) {
+        Object value = redisTemplate.opsForValue().get(STOCK_BUCKET_COUNT_KEY + flashSaleProductId);
+        int buckets = value != null ? Integer.parseInt(value.toString()) : 1;
+        bucketCounts.put(flashSaleProductId, buckets);
+        return buckets;
+    }
+
+    /**
+     * 在本节点标记商品售罄
+     */
+    private void markSoldOut(Long flashSaleProductId) {
+        soldOutCacheService.markSoldOut(flashSaleProductId);
+    }
+
+    /**
+     * 清除售罄标记，并广播通知所有节点清除本地标记
+     */
+    private void clearSoldOut(Long flashSaleProductId) {
+        soldOutCacheService.clearSoldOut(flashSaleProductId);
+    }
+
+    private int homeBucket(Long userId, int buckets) {
+        return Math.floorMod(userId.hashCode(), buckets);
+    }
+
+    private long limitValue(Integer limit) {
+        return limit != null && limit > 0 ? limit : 0;
+    }
+
+    private String bucketKey(Long flashSaleProductId, int bucket) {
+        return STOCK_BUCKET_KEY + flashSaleProductId + ":" + bucket;
+    }
+
+    private String boughtKey(Long flashSaleProductId, int bucket) {
+        return SECKILL_BOUGHT_KEY + flashSaleProductId + ":" + bucket;
+    }
+
+    /**
+     * 从数据库加载库存到Redis（仅在未分桶且key不存在时写入）
+     * 销售进行中只允许首次加载；库存曾经加载过又丢失时拒绝，避免用落后的数据库值超卖
+     *
+     * @return 1-已写入，0-已存在，-1-商品不存在，-4-商品为分桶模式，-6-拒绝重新加载
+     */
+    private long loadStockIfAbsent(Long flashSaleProductId) {
+        // 冷启动时同一商品的大量请求同时发现未预热，只由一个线程查数据库，其余线程等锁后发现已加载直接重试扣减
+        String lockKey = STOCK_LOAD_LOCK_PREFIX + flashSaleProductId;
+        boolean locked;
+        try {
+            locked = lockService.tryLock(lockKey, STOCK_LOAD_LOCK_WAIT_MILLIS, STOCK_LOAD_LOCK_LEASE_MILLIS,
+                TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("获取库存加载锁失败: productId={}", flashSaleProductId, e);
+            locked = false;
+        }
+
+        try {
+            if (locked && Boolean.TRUE.equals(redisTemplate.hasKey(SECKILL_STOCK_KEY + flashSaleProductId))) {
+                return 0;
+            }
+            // 未拿到锁时仍直接加载，加载脚本不会覆盖已存在的库存
+            return doLoadStockIfAbsent(flashSaleProductId);
+        } finally {
+            if (locked) {
+                lockService.unlock(lockKey);
+            }
+        }
+    }
+
+    private long doLoadStockIfAbsent(Long flashSaleProductId) {
+        FlashSaleProduct product = productMapper.findById(flashSaleProductId);
+        if (product == null) {
+            return CODE_NOT_LOADED;
+        }
+
+        int stock = product.getFlashSaleStock() != null ? Math.max(product.getFlashSaleStock(), 0) : 0;
+        long allowReload = isSaleLive(product) ? 0 : 1;
+        Long code = redisTemplate.execute(LOAD_IF_ABSENT_SCRIPT,
+            Arrays.asList(SECKILL_STOCK_KEY + flashSaleProductId, STOCK_BUCKET_COUNT_KEY + flashSaleProductId,
+                STOCK_LOADED_KEY + flashSaleProductId),
+            stock, STOCK_EXPIRE_SECONDS, allowReload, LOADED_MARK_EXPIRE_SECONDS);
+        if (code != null && code == CODE_RELOAD_REFUSED) {
+            log.error("秒杀进行中Redis库存丢失，拒绝从数据库重新加载，需确认库存写回完成后手动预热: productId={}",
+                    flashSaleProductId);
+            return CODE_RELOAD_REFUSED;
+        }
+        log.info("库存未预热，从数据库加载: productId={}, stock={}, result={}", flashSaleProductId, stock, code);
+        return code != null ? code : CODE_NOT_LOADED;
+    }
+
+    /**
+     * Redis中是否已有该商品的库存（单key或分桶）
+     */
+    private boolean isStockLoaded(Long flashSaleProductId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(SECKILL_STOCK_KEY + flashSaleProductId))
+                || Boolean.TRUE.equals(redisTemplate.hasKey(STOCK_BUCKET_COUNT_KEY + flashSaleProductId));
+    }
+
+    /**
+     * 商品是否处于销售期：所属活动进行中且在活动时间内；未关联活动的商品随时可售，视为一直在销售期
+     */
+    private boolean isSaleLive(FlashSaleProduct product) {
+        if (product.getActivityId() == null) {
+            return true;
+        }
+        FlashSaleActivity activity = activityMapper.findById(product.getActivityId());
+        if (activity == null || !Integer.valueOf(1).equals(activity.getStatus())) {
+            return false;
+        }
+        Date now = new Date();
+        return (activity.getStartTime() == null || !now.before(activity.getStartTime()))
+                && (activity.getEndTime() == null || now.before(activity.getEndTime()));
+    }
+
+    /**
+     * 批量扣减脚本的执行结果
+     */
+    private static final class BatchOutcome {
+        private static final BatchOutcome NOT_LOADED = new BatchOutcome(null, true, false);
+        private static final BatchOutcome BUCKETS_CHANGED = new BatchOutcome(null, false, true);
+
+        private final List<DeductResult> results;
+        private final boolean notLoaded;
+        private final boolean bucketsChanged;
+
+        private BatchOutcome(List<DeductResult> results, boolean notLoaded, boolean bucketsChanged) {
+            this.results = results;
+            this.notLoaded = notLoaded;
+            this.bucketsChanged = bucketsChanged;
+        }
+    }
+}
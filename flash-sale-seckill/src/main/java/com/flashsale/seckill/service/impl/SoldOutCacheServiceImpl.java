@@ -0,0 +1,77 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.seckill.service.SoldOutCacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地售罄标记缓存服务实现类
+ * 标记只在本节点生效（每个节点在自己第一次扣减失败时得知售罄），清除通过Redis发布订阅广播
+ * 标记带有较短的有效期，避免广播丢失或与扣减失败交错时本地标记长期不一致
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class SoldOutCacheServiceImpl implements SoldOutCacheService {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 本地售罄标记有效期
+     */
+    private static final long SOLD_OUT_TTL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * 商品ID -> 标记售罄的时间
+     */
+    private final Map<Long, Long> soldOutProducts = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isSoldOut(Long flashSaleProductId) {
+        if (flashSaleProductId == null) {
+            return false;
+        }
+        Long markedAt = soldOutProducts.get(flashSaleProductId);
+        if (markedAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - markedAt > SOLD_OUT_TTL_NANOS) {
+            // 标记过期后放行请求，由Redis库存重新确认是否售罄
+            soldOutProducts.remove(flashSaleProductId, markedAt);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void markSoldOut(Long flashSaleProductId) {
+        if (soldOutProducts.put(flashSaleProductId, System.nanoTime()) == null) {
+            log.info("商品已售罄，本地标记: productId={}", flashSaleProductId);
+        }
+    }
+
+    @Override
+    public void clearSoldOut(Long flashSaleProductId) {
+        evictLocal(flashSaleProductId);
+        try {
+            redisTemplate.convertAndSend(SOLD_OUT_CLEAR_CHANNEL, flashSaleProductId);
+        } catch (Exception e) {
+            // 广播失败时其他节点的标记会在有效期后自动失效
+            log.error("广播售罄标记清除失败: productId={}", flashSaleProductId, e);
+        }
+    }
+
+    @Override
+    public void evictLocal(Long flashSaleProductId) {
+        if (soldOutProducts.remove(flashSaleProductId) != null) {
+            log.info("清除本地售罄标记: productId={}", flashSaleProductId);
+        }
+    }
+}
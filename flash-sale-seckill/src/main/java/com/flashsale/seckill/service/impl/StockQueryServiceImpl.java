@@ -0,0 +1,137 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.seckill.entity.FlashSaleProduct;
+import com.flashsale.seckill.mapper.FlashSaleProductMapper;
+import com.flashsale.seckill.service.SeckillStockService;
+import com.flashsale.seckill.service.StockQueryService;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 秒杀库存查询服务实现类
+ * 回源结果在本地短暂缓存；回源通过Caffeine异步缓存进行，同一商品在加载中时后续请求等待同一个future，
+ * 批量查询中的商品同样按key合并，秒杀期间库存key缺失也不会把查询放大到数据库
+ * @author 21311
+ */
+@Slf4j
+@Service
+public class StockQueryServiceImpl implements StockQueryService {
+
+    /**
+     * 回源缓存中表示商品不存在的值
+     */
+    private static final int NOT_EXIST = -1;
+
+    @Autowired
+    private SeckillStockService stockService;
+
+    @Autowired
+    private FlashSaleProductMapper productMapper;
+
+    @Value("${seckill.stock-query.db-fallback-ttl-millis:1000}")
+    private long dbFallbackTtlMillis;
+
+    private AsyncLoadingCache<Long, Integer> dbFallbackCache;
+
+    @PostConstruct
+    public void init() {
+        // 加载在调用线程上执行，并发的同key请求拿到同一个加载中的future
+        dbFallbackCache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(dbFallbackTtlMillis, TimeUnit.MILLISECONDS)
+                .executor(Runnable::run)
+                .buildAsync(new CacheLoader<Long, Integer>() {
+                    @Override
+                    public Integer load(Long flashSaleProductId) {
+                        return loadAll(Collections.singleton(flashSaleProductId)).get(flashSaleProductId);
+                    }
+
+                    @Override
+                    public Map<Long, Integer> loadAll(Set<? extends Long> flashSaleProductIds) {
+                        return loadFromDatabase(flashSaleProductIds);
+                    }
+                });
+    }
+
+    @Override
+    public Integer getStock(Long flashSaleProductId) {
+        if (flashSaleProductId == null) {
+            return null;
+        }
+        try {
+            Integer stock = stockService.getStock(flashSaleProductId);
+            if (stock != null) {
+                return Math.max(stock, 0);
+            }
+        } catch (Exception e) {
+            log.warn("读取Redis库存失败，回源数据库, 商品ID: {}", flashSaleProductId, e);
+        }
+
+        Integer stock = dbFallbackCache.get(flashSaleProductId).join();
+        return stock == null || stock == NOT_EXIST ? null : stock;
+    }
+
+    @Override
+    public Map<Long, Integer> getStocks(Collection<Long> flashSaleProductIds) {
+        Map<Long, Integer> stocks = new HashMap<>();
+        if (flashSaleProductIds == null || flashSaleProductIds.isEmpty()) {
+            return stocks;
+        }
+        List<Long> ids = flashSaleProductIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+
+        try {
+            stockService.getStocks(ids).forEach((id, stock) -> stocks.put(id, Math.max(stock, 0)));
+        } catch (Exception e) {
+            log.warn("批量读取Redis库存失败，回源数据库, 商品数: {}", ids.size(), e);
+        }
+
+        List<Long> missIds = new ArrayList<>();
+        for (Long id : ids) {
+            if (!stocks.containsKey(id)) {
+                missIds.add(id);
+            }
+        }
+        if (!missIds.isEmpty()) {
+            dbFallbackCache.getAll(missIds).join().forEach((id, stock) -> {
+                if (stock != null && stock != NOT_EXIST) {
+                    stocks.put(id, stock);
+                }
+            });
+        }
+        return stocks;
+    }
+
+    /**
+     * 从数据库计算剩余库存，一次IN查询
+     */
+    private Map<Long, Integer> loadFromDatabase(Set<? extends Long> flashSaleProductIds) {
+        Map<Long, Integer> stocks = new HashMap<>(flashSaleProductIds.size() * 2);
+        for (Long id : flashSaleProductIds) {
+            stocks.put(id, NOT_EXIST);
+        }
+        for (FlashSaleProduct product : productMapper.findByIds(new ArrayList<>(flashSaleProductIds))) {
+            int total = product.getFlashSaleStock() != null ? product.getFlashSaleStock() : 0;
+            int used = product.getStockUsed() != null ? product.getStockUsed() : 0;
+            stocks.put(product.getId(), Math.max(total - used, 0));
+        }
+        log.debug("Redis库存缺失，从数据库加载: {}", stocks);
+        return stocks;
+    }
+}
@@ -0,0 +1,138 @@
+package com.flashsale.seckill.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.common.mq.dto.StockDeductMessage;
+import com.flashsale.common.result.Result;
+import com.flashsale.seckill.config.SeckillRabbitMQConfig;
+import com.flashsale.seckill.service.FlashSaleProductService;
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 库存扣减同步监听器测试：按商品合并写回、成功确认、失败拒绝、合并未生效时逐条写回
+ * @author 21311
+ */
+class StockDeductListenerTest {
+
+    private static final Long PRODUCT_A = 1L;
+    private static final Long PRODUCT_B = 2L;
+
+    private final ObjectMapper objectMapper = new SeckillRabbitMQConfig().seckillObjectMapper();
+
+    private FlashSaleProductService productService;
+    private Channel channel;
+    private StockDeductListener listener;
+
+    @BeforeEach
+    void setUp() {
+        productService = mock(FlashSaleProductService.class);
+        channel = mock(Channel.class);
+        listener = new StockDeductListener();
+        ReflectionTestUtils.setField(listener, "productService", productService);
+        ReflectionTestUtils.setField(listener, "objectMapper", objectMapper);
+    }
+
+    @Test
+    void deductionsAreMergedPerProductAndAcked() throws Exception {
+        when(productService.syncStockDeduction(PRODUCT_A, 3)).thenReturn(Result.success(true));
+        when(productService.syncStockDeduction(PRODUCT_B, 2)).thenReturn(Result.success(true));
+
+        listener.onStockDeduct(Arrays.asList(
+                message(1, PRODUCT_A, 1), message(2, PRODUCT_B, 2), message(3, PRODUCT_A, 2)), channel);
+
+        verify(productService).syncStockDeduction(PRODUCT_A, 3);
+        verify(productService).syncStockDeduction(PRODUCT_B, 2);
+        verify(productService, never()).syncStockDeduction(PRODUCT_A, 1);
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+        verify(channel).basicAck(3, false);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void failedProductIsNackedWithoutAffectingOthers() throws Exception {
+        when(productService.syncStockDeduction(PRODUCT_A, 2)).thenThrow(new IllegalStateException("db down"));
+        when(productService.syncStockDeduction(PRODUCT_B, 1)).thenReturn(Result.success(true));
+
+        listener.onStockDeduct(Arrays.asList(
+                message(1, PRODUCT_A, 1), message(2, PRODUCT_A, 1), message(3, PRODUCT_B, 1)), channel);
+
+        verify(channel).basicNack(1, false, false);
+        verify(channel).basicNack(2, false, false);
+        verify(channel).basicAck(3, false);
+        verify(channel, never()).basicAck(1, false);
+        verify(channel, never()).basicAck(2, false);
+    }
+
+    @Test
+    void nullResultIsNacked() throws Exception {
+        when(productService.syncStockDeduction(PRODUCT_A, 1)).thenReturn(Result.error("同步失败"));
+
+        listener.onStockDeduct(Arrays.asList(message(1, PRODUCT_A, 1)), channel);
+
+        verify(channel).basicNack(1, false, false);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void unappliedMergeFallsBackToOneByOne() throws Exception {
+        // 数据库库存只够写回前两条
+        when(productService.syncStockDeduction(PRODUCT_A, 6)).thenReturn(Result.success(false));
+        when(productService.syncStockDeduction(PRODUCT_A, 1)).thenReturn(Result.success(true));
+        when(productService.syncStockDeduction(PRODUCT_A, 2)).thenReturn(Result.success(true));
+        when(productService.syncStockDeduction(PRODUCT_A, 3)).thenReturn(Result.success(false));
+
+        listener.onStockDeduct(Arrays.asList(
+                message(1, PRODUCT_A, 1), message(2, PRODUCT_A, 2), message(3, PRODUCT_A, 3)), channel);
+
+        verify(productService).syncStockDeduction(PRODUCT_A, 6);
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+        verify(channel).basicNack(3, false, false);
+        verify(channel, never()).basicAck(3, false);
+    }
+
+    @Test
+    void malformedMessagesAreNackedAndSkipped() throws Exception {
+        when(productService.syncStockDeduction(PRODUCT_A, 1)).thenReturn(Result.success(true));
+
+        Message notJson = rawMessage(1, "not json");
+        Message missingQuantity = message(2, PRODUCT_A, null);
+        listener.onStockDeduct(Arrays.asList(notJson, missingQuantity, message(3, PRODUCT_A, 1)), channel);
+
+        verify(channel).basicNack(1, false, false);
+        verify(channel).basicNack(2, false, false);
+        verify(channel).basicAck(3, false);
+        verify(productService).syncStockDeduction(PRODUCT_A, 1);
+        verifyNoMoreInteractions(productService);
+    }
+
+    private Message message(long deliveryTag, Long flashSaleProductId, Integer quantity) throws Exception {
+        StockDeductMessage deductMessage = new StockDeductMessage();
+        deductMessage.setFlashSaleProductId(flashSaleProductId);
+        deductMessage.setQuantity(quantity);
+        deductMessage.setOrderNo("order-" + deliveryTag);
+        return rawMessage(deliveryTag, objectMapper.writeValueAsString(deductMessage));
+    }
+
+    private static Message rawMessage(long deliveryTag, String body) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(deliveryTag);
+        return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,187 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.seckill.entity.SeckillOrder;
+import com.flashsale.seckill.mapper.SeckillOrderMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 组提交订单写入测试：批量写入、整批失败逐条重试、单条失败隔离、超时取消
+ * @author 21311
+ */
+class GroupCommitSeckillOrderWriterTest {
+
+    private final AtomicLong idSequence = new AtomicLong();
+
+    private SeckillOrderMapper orderMapper;
+    private GroupCommitSeckillOrderWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        orderMapper = mock(SeckillOrderMapper.class);
+        doAnswer(this::assignId).when(orderMapper).insert(any());
+        doAnswer(this::assignIds).when(orderMapper).insertBatch(anyList());
+
+        writer = new GroupCommitSeckillOrderWriter();
+        ReflectionTestUtils.setField(writer, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(writer, "timeoutMillis", 3000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.destroy();
+    }
+
+    @Test
+    void queuedOrdersAreWrittenInOneBatch() {
+        // 写入线程启动前提交，队列中的订单会被一次取出
+        List<CompletableFuture<Long>> futures = submitAll("A", "B", "C");
+        writer.init();
+
+        for (CompletableFuture<Long> future : futures) {
+            assertNotNull(writer.await(future));
+        }
+        verify(orderMapper, atLeastOnce()).insertBatch(anyList());
+        assertEquals(3, idSequence.get(), "每个订单只写入一次");
+    }
+
+    @Test
+    void failedBatchFallsBackToSingleInserts() {
+        doThrow(new IllegalStateException("batch failed")).when(orderMapper).insertBatch(anyList());
+        List<CompletableFuture<Long>> futures = submitAll("A", "B", "C");
+        writer.init();
+
+        for (CompletableFuture<Long> future : futures) {
+            assertNotNull(writer.await(future));
+        }
+        verify(orderMapper, times(3)).insert(any());
+    }
+
+    @Test
+    void singleFailureOnlyAffectsItsOwnOrder() {
+        doThrow(new IllegalStateException("batch failed")).when(orderMapper).insertBatch(anyList());
+        doThrow(new DuplicateKeyException("uk_order_no"))
+                .when(orderMapper).insert(argThat(order -> order != null && "B".equals(order.getOrderNo())));
+        List<CompletableFuture<Long>> futures = submitAll("A", "B", "C");
+        writer.init();
+
+        assertNotNull(writer.await(futures.get(0)));
+        assertThrows(DuplicateKeyException.class, () -> writer.await(futures.get(1)));
+        assertNotNull(writer.await(futures.get(2)));
+    }
+
+    @Test
+    void timedOutOrderIsCancelledAndNeverWritten() {
+        ReflectionTestUtils.setField(writer, "timeoutMillis", 50L);
+        CompletableFuture<Long> cancelled = writer.submit(order("A"));
+
+        // 写入线程未启动，订单一定未被认领，超时即取消
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> writer.await(cancelled));
+        assertTrue(e.getMessage().contains("超时"));
+        assertTrue(cancelled.isCancelled());
+
+        ReflectionTestUtils.setField(writer, "timeoutMillis", 3000L);
+        CompletableFuture<Long> next = writer.submit(order("B"));
+        writer.init();
+        assertNotNull(writer.await(next));
+
+        verify(orderMapper, never()).insert(argThat(order -> order != null && "A".equals(order.getOrderNo())));
+        verify(orderMapper, never()).insertBatch(anyList());
+    }
+
+    @Test
+    void timeoutAfterClaimWaitsForTheWrite() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return assignId(invocation);
+        }).when(orderMapper).insert(any());
+        ReflectionTestUtils.setField(writer, "timeoutMillis", 50L);
+        writer.init();
+
+        CompletableFuture<Long> future = writer.submit(order("A"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+
+        // 已认领的订单超时后不能取消，调用方拿到的是本次写入的结果
+        assertNotNull(writer.await(future));
+        assertFalse(future.isCancelled());
+        releaser.join();
+    }
+
+    @Test
+    void submitAfterShutdownFailsImmediately() {
+        writer.init();
+        writer.destroy();
+
+        CompletableFuture<Long> future = writer.submit(order("A"));
+        assertTrue(future.isCompletedExceptionally());
+        assertThrows(IllegalStateException.class, () -> writer.await(future));
+    }
+
+    private List<CompletableFuture<Long>> submitAll(String... orderNos) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (String orderNo : orderNos) {
+            futures.add(writer.submit(order(orderNo)));
+        }
+        assertEquals(orderNos.length, futures.size());
+        return futures;
+    }
+
+    private Object assignId(InvocationOnMock invocation) {
+        SeckillOrder order = invocation.getArgument(0);
+        order.setId(idSequence.incrementAndGet());
+        return 1;
+    }
+
+    private Object assignIds(InvocationOnMock invocation) {
+        List<SeckillOrder> orders = invocation.getArgument(0);
+        for (SeckillOrder order : orders) {
+            order.setId(idSequence.incrementAndGet());
+        }
+        return orders.size();
+    }
+
+    private static SeckillOrder order(String orderNo) {
+        SeckillOrder order = new SeckillOrder();
+        order.setOrderNo(orderNo);
+        return order;
+    }
+}
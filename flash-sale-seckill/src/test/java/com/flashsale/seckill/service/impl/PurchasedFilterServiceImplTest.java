@@ -0,0 +1,177 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.common.redis.RedisStandIn;
+import com.flashsale.seckill.mapper.SeckillOrderMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 已购买过滤器测试：未就绪放行并后台重建、重建后无漏判、重建期间的下单记录、重建互斥
+ * @author 21311
+ */
+class PurchasedFilterServiceImplTest {
+
+    private static final Long PRODUCT_ID = 7L;
+
+    private static RedisStandIn redis;
+
+    private SeckillOrderMapper orderMapper;
+    private PurchasedFilterServiceImpl service;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = RedisStandIn.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.flushAll();
+        orderMapper = mock(SeckillOrderMapper.class);
+        service = newService(redis.stringRedisTemplate());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    void notReadyFilterAnswersMaybeAndRebuildsInBackground() throws InterruptedException {
+        when(orderMapper.findPurchasedUserIds(PRODUCT_ID)).thenReturn(List.of(1L, 2L));
+
+        assertTrue(service.mightHavePurchased(PRODUCT_ID, 100L), "未就绪时必须回退数据库查询");
+
+        awaitReady(100L);
+        verify(orderMapper, times(1)).findPurchasedUserIds(PRODUCT_ID);
+        assertTrue(service.mightHavePurchased(PRODUCT_ID, 1L));
+        assertTrue(service.mightHavePurchased(PRODUCT_ID, 2L));
+    }
+
+    @Test
+    void rebuiltFilterHasNoFalseNegatives() {
+        // 超过单次脚本写入上限，覆盖分批写入
+        List<Long> buyers = new ArrayList<>();
+        for (long userId = 1; userId <= 2500; userId++) {
+            buyers.add(userId * 31);
+        }
+        when(orderMapper.findPurchasedUserIds(PRODUCT_ID)).thenReturn(buyers);
+
+        assertTrue(service.rebuild(PRODUCT_ID));
+
+        for (Long buyer : buyers) {
+            assertTrue(service.mightHavePurchased(PRODUCT_ID, buyer), "已购买用户被判为未购买: " + buyer);
+        }
+        int falsePositives = 0;
+        for (long userId = 1_000_000; userId < 1_001_000; userId++) {
+            if (service.mightHavePurchased(PRODUCT_ID, userId)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 50, "误判率过高: " + falsePositives + "/1000");
+    }
+
+    @Test
+    void purchasesRecordedBeforeRebuildAreKept() {
+        when(orderMapper.findPurchasedUserIds(PRODUCT_ID)).thenReturn(Collections.emptyList());
+
+        // 重建查询数据库之后写入的订单只存在于过滤器中
+        service.recordPurchase(PRODUCT_ID, 42L);
+        assertTrue(service.rebuild(PRODUCT_ID));
+
+        assertTrue(service.mightHavePurchased(PRODUCT_ID, 42L));
+        assertFalse(service.mightHavePurchased(PRODUCT_ID, 43L));
+
+        service.recordPurchase(PRODUCT_ID, 43L);
+        assertTrue(service.mightHavePurchased(PRODUCT_ID, 43L));
+    }
+
+    @Test
+    void concurrentRebuildsAreMutuallyExclusive() {
+        when(orderMapper.findPurchasedUserIds(PRODUCT_ID)).thenReturn(Collections.emptyList());
+        redis.stringRedisTemplate().opsForValue().set("seckill:purchased:filter:lock:" + PRODUCT_ID, "1");
+
+        assertFalse(service.rebuild(PRODUCT_ID), "其他节点持有重建锁时应放弃");
+        verify(orderMapper, never()).findPurchasedUserIds(anyLong());
+    }
+
+    @Test
+    void hotProductSubmitsOneRebuildAtATime() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderMapper.findPurchasedUserIds(PRODUCT_ID)).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return Collections.emptyList();
+        });
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(service.mightHavePurchased(PRODUCT_ID, (long) i));
+        }
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        awaitReady(1000L);
+        verify(orderMapper, times(1)).findPurchasedUserIds(PRODUCT_ID);
+    }
+
+    @Test
+    void redisFailureFallsBackToDatabase() {
+        StringRedisTemplate failing = mock(StringRedisTemplate.class);
+        when(failing.execute(any(), anyList(), any(Object[].class))).thenThrow(new IllegalStateException("redis down"));
+        PurchasedFilterServiceImpl failingService = newService(failing);
+        try {
+            assertTrue(failingService.mightHavePurchased(PRODUCT_ID, 1L));
+            failingService.recordPurchase(PRODUCT_ID, 1L);
+        } finally {
+            failingService.destroy();
+        }
+    }
+
+    private PurchasedFilterServiceImpl newService(StringRedisTemplate stringRedisTemplate) {
+        PurchasedFilterServiceImpl filterService = new PurchasedFilterServiceImpl();
+        ReflectionTestUtils.setField(filterService, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(filterService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(filterService, "bitsLog2", 16);
+        ReflectionTestUtils.setField(filterService, "ttlHours", 1L);
+        filterService.init();
+        return filterService;
+    }
+
+    /**
+     * 等待后台重建完成：未购买的用户被判为一定未购买即说明就绪标记已置位
+     */
+    private void awaitReady(Long notPurchasedUserId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.mightHavePurchased(PRODUCT_ID, notPurchasedUserId)) {
+            assertTrue(System.currentTimeMillis() < deadline, "后台重建未完成");
+            Thread.sleep(20);
+        }
+    }
+}
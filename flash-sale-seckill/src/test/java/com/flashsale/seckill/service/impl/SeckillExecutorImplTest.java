@@ -0,0 +1,214 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.common.dto.SeckillDTO;
+import com.flashsale.common.id.IdGenerator;
+import com.flashsale.common.mq.SeckillExecutor.ExecuteResult;
+import com.flashsale.common.redis.RedisStandIn;
+import com.flashsale.common.result.Result;
+import com.flashsale.seckill.entity.FlashSaleProduct;
+import com.flashsale.seckill.entity.SeckillOrder;
+import com.flashsale.seckill.mapper.FlashSaleActivityMapper;
+import com.flashsale.seckill.mapper.FlashSaleProductMapper;
+import com.flashsale.seckill.mq.PaymentMessageProducer;
+import com.flashsale.seckill.mq.StockDeductMessageProducer;
+import com.flashsale.seckill.service.FlashSaleProductService;
+import com.flashsale.seckill.service.PurchasedFilterService;
+import com.flashsale.seckill.service.SeckillOrderWriter;
+import com.flashsale.seckill.service.SoldOutCacheService;
+import com.flashsale.seckill.vo.FlashSaleProductVO;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 秒杀执行器测试：重复投递的请求沿用首次扣减记录的订单编号，订单只写入一次
+ * @author 21311
+ */
+class SeckillExecutorImplTest {
+
+    private static final Long PRODUCT_ID = 42L;
+    private static final int STOCK = 10;
+
+    private static RedisStandIn redis;
+
+    private SeckillStockServiceImpl stockService;
+    private UniqueOrderNoWriter orderWriter;
+    private StockDeductMessageProducer stockDeductMessageProducer;
+    private PaymentMessageProducer paymentMessageProducer;
+    private SeckillExecutorImpl executor;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = RedisStandIn.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.flushAll();
+
+        stockService = new SeckillStockServiceImpl();
+        ReflectionTestUtils.setField(stockService, "redisTemplate", redis.redisTemplate());
+        ReflectionTestUtils.setField(stockService, "productMapper", mock(FlashSaleProductMapper.class));
+        ReflectionTestUtils.setField(stockService, "activityMapper", mock(FlashSaleActivityMapper.class));
+        ReflectionTestUtils.setField(stockService, "soldOutCacheService", mock(SoldOutCacheService.class));
+
+        FlashSaleProductVO product = new FlashSaleProductVO();
+        product.setId(PRODUCT_ID);
+        product.setProductId(1000L);
+        product.setFlashSalePrice(new BigDecimal("9.90"));
+        product.setFlashSaleLimit(1);
+        product.setCanSeckill(true);
+        FlashSaleProductService productService = mock(FlashSaleProductService.class);
+        when(productService.getProductDetail(PRODUCT_ID)).thenReturn(Result.success(product));
+
+        AtomicLong sequence = new AtomicLong();
+        IdGenerator idGenerator = mock(IdGenerator.class);
+        when(idGenerator.nextNo(anyString())).thenAnswer(invocation -> invocation.getArgument(0) + "-" + sequence.incrementAndGet());
+
+        orderWriter = new UniqueOrderNoWriter();
+        stockDeductMessageProducer = mock(StockDeductMessageProducer.class);
+        paymentMessageProducer = mock(PaymentMessageProducer.class);
+
+        executor = new SeckillExecutorImpl();
+        ReflectionTestUtils.setField(executor, "productService", productService);
+        ReflectionTestUtils.setField(executor, "stockService", stockService);
+        ReflectionTestUtils.setField(executor, "orderWriter", orderWriter);
+        ReflectionTestUtils.setField(executor, "idGenerator", idGenerator);
+        ReflectionTestUtils.setField(executor, "purchasedFilterService", mock(PurchasedFilterService.class));
+        ReflectionTestUtils.setField(executor, "stockDeductMessageProducer", stockDeductMessageProducer);
+        ReflectionTestUtils.setField(executor, "paymentMessageProducer", paymentMessageProducer);
+        ReflectionTestUtils.setField(executor, "redisTemplate", redis.redisTemplate());
+    }
+
+    @Test
+    void redeliveredRequestReusesOrderNoAndInsertsOnce() {
+        loadStock(1);
+        assertRedeliveryInsertsOnce();
+    }
+
+    @Test
+    void redeliveredRequestInsertsOnceInBucketMode() {
+        loadStock(4);
+        assertRedeliveryInsertsOnce();
+    }
+
+    @Test
+    void redeliveryAfterLostInsertWritesTheRecordedOrderNo() {
+        loadStock(1);
+        // 首次投递扣减成功后宕机，订单未写入
+        stockService.deductStockBatch(PRODUCT_ID, Collections.singletonList(1L), Collections.singletonList(1), 1,
+                Collections.singletonList("req-1"), Collections.singletonList("FS-lost"));
+
+        ExecuteResult result = executor.executeBatch(PRODUCT_ID, Collections.singletonList(request(1L, "req-1"))).get(0);
+
+        assertTrue(result.isSuccess());
+        assertEquals("FS-lost", result.getOrderNo());
+        assertEquals(1, orderWriter.rows.size());
+        assertEquals(STOCK - 1, stockService.getStock(PRODUCT_ID));
+    }
+
+    @Test
+    void redeliveredRequestInsideALargerBatchInsertsOnlyNewOrders() {
+        loadStock(1);
+        String first = executor.executeBatch(PRODUCT_ID, Collections.singletonList(request(1L, "req-1")))
+                .get(0).getOrderNo();
+
+        List<ExecuteResult> results = executor.executeBatch(PRODUCT_ID,
+                Arrays.asList(request(2L, "req-2"), request(1L, "req-1"), request(3L, "req-3")));
+
+        assertTrue(results.stream().allMatch(ExecuteResult::isSuccess));
+        assertEquals(first, results.get(1).getOrderNo());
+        assertEquals(3, orderWriter.rows.size());
+        assertEquals(STOCK - 3, stockService.getStock(PRODUCT_ID));
+    }
+
+    private void assertRedeliveryInsertsOnce() {
+        ExecuteResult first = executor.executeBatch(PRODUCT_ID, Collections.singletonList(request(1L, "req-1"))).get(0);
+        ExecuteResult retry = executor.executeBatch(PRODUCT_ID, Collections.singletonList(request(1L, "req-1"))).get(0);
+
+        assertTrue(first.isSuccess());
+        assertTrue(retry.isSuccess(), "重复投递不应被判为超出限购: " + retry);
+        assertEquals(first.getOrderNo(), retry.getOrderNo());
+        assertEquals(1, orderWriter.rows.size());
+        assertEquals(STOCK - 1, stockService.getStock(PRODUCT_ID));
+        verify(stockDeductMessageProducer, times(1))
+                .sendStockDeductMessage(any(), any(), any(), anyString(), any());
+        verify(paymentMessageProducer, times(1)).sendPaymentMessage(anyString(), any(), any(), any());
+    }
+
+    private void loadStock(int buckets) {
+        FlashSaleProduct product = new FlashSaleProduct();
+        product.setId(PRODUCT_ID);
+        product.setFlashSaleStock(STOCK);
+        stockService.loadStock(product, buckets);
+    }
+
+    private static SeckillDTO request(Long userId, String requestId) {
+        SeckillDTO dto = new SeckillDTO();
+        dto.setUserId(userId);
+        dto.setFlashSaleProductId(PRODUCT_ID);
+        dto.setQuantity(1);
+        dto.setRequestId(requestId);
+        return dto;
+    }
+
+    /**
+     * 模拟订单表的 uk_order_no 唯一约束
+     */
+    private static final class UniqueOrderNoWriter implements SeckillOrderWriter {
+        private final Map<String, SeckillOrder> rows = new ConcurrentHashMap<>();
+
+        @Override
+        public CompletableFuture<Long> submit(SeckillOrder order) {
+            if (rows.putIfAbsent(order.getOrderNo(), order) != null) {
+                return CompletableFuture.failedFuture(new DuplicateKeyException(
+                        "Duplicate entry '" + order.getOrderNo() + "' for key 'uk_order_no'"));
+            }
+            return CompletableFuture.completedFuture((long) rows.size());
+        }
+
+        @Override
+        public Long await(CompletableFuture<Long> future) {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                throw (RuntimeException) e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public Long write(SeckillOrder order) {
+            return await(submit(order));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.common.redis.RedisStandIn;
+import com.flashsale.seckill.entity.FlashSaleProduct;
+import com.flashsale.seckill.mapper.FlashSaleActivityMapper;
+import com.flashsale.seckill.mapper.FlashSaleProductMapper;
+import com.flashsale.seckill.service.SeckillStockService.DeductResult;
+import com.flashsale.seckill.service.SoldOutCacheService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 库存扣减基准测试：不同分桶数下8线程并发扣减同一商品的吞吐
+ * 默认使用进程内Redis替身，它串行执行所有命令，结果反映的是分桶模式每次扣减多一次往返（限购额度）的开销；
+ * 分桶分散热点key的收益需要指定真实Redis（集群代理）测量：-Dbench.redis.host=... -Dbench.redis.port=...
+ * 不随 mvn test 执行，test-compile 后运行 main 方法（或 IDE 中直接运行）
+ * @author 21311
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(8)
+public class SeckillStockBenchmark {
+
+    private static final Long PRODUCT_ID = 1L;
+
+    @Param({"1", "4", "16"})
+    private int bucketCount;
+
+    private RedisStandIn redis;
+    private SeckillStockServiceImpl stockService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String host = System.getProperty("bench.redis.host");
+        redis = host != null
+                ? RedisStandIn.connect(host, Integer.getInteger("bench.redis.port", 6379))
+                : RedisStandIn.start();
+
+        stockService = new SeckillStockServiceImpl();
+        ReflectionTestUtils.setField(stockService, "redisTemplate", redis.redisTemplate());
+        ReflectionTestUtils.setField(stockService, "productMapper", Mockito.mock(FlashSaleProductMapper.class));
+        ReflectionTestUtils.setField(stockService, "activityMapper", Mockito.mock(FlashSaleActivityMapper.class));
+        ReflectionTestUtils.setField(stockService, "soldOutCacheService", Mockito.mock(SoldOutCacheService.class));
+
+        stockService.invalidateStock(PRODUCT_ID);
+        FlashSaleProduct product = new FlashSaleProduct();
+        product.setId(PRODUCT_ID);
+        product.setFlashSaleStock(Integer.MAX_VALUE / 2);
+        stockService.loadStock(product, bucketCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stockService.invalidateStock(PRODUCT_ID);
+        redis.close();
+    }
+
+    @Benchmark
+    public DeductResult deduct() {
+        long userId = ThreadLocalRandom.current().nextLong(1_000_000);
+        return stockService.deductStock(PRODUCT_ID, userId, 1, 0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SeckillStockBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
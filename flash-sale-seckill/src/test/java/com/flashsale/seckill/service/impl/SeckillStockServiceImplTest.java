@@ -0,0 +1,246 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.common.lock.LocalFirstDistributedLockService;
+import com.flashsale.common.lock.WatchdogRedisLockService;
+import com.flashsale.common.redis.RedisStandIn;
+import com.flashsale.seckill.entity.FlashSaleProduct;
+import com.flashsale.seckill.mapper.FlashSaleActivityMapper;
+import com.flashsale.seckill.mapper.FlashSaleProductMapper;
+import com.flashsale.seckill.service.SeckillStockService.DeductResult;
+import com.flashsale.seckill.service.SeckillStockService.DeductStatus;
+import com.flashsale.seckill.service.SoldOutCacheService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 分桶库存测试：分桶探测、限购额度占用与释放、回滚、补充、未预热时加载
+ * @author 21311
+ */
+class SeckillStockServiceImplTest {
+
+    private static final Long PRODUCT_ID = 7L;
+    private static final int BUCKETS = 4;
+
+    private static RedisStandIn redis;
+
+    private SoldOutCacheService soldOutCacheService;
+    private FlashSaleProductMapper productMapper;
+    private WatchdogRedisLockService remoteLockService;
+    private LocalFirstDistributedLockService lockService;
+    private SeckillStockServiceImpl stockService;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = RedisStandIn.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.flushAll();
+        soldOutCacheService = mock(SoldOutCacheService.class);
+        productMapper = mock(FlashSaleProductMapper.class);
+        remoteLockService = new WatchdogRedisLockService();
+        ReflectionTestUtils.setField(remoteLockService, "stringRedisTemplate", redis.stringRedisTemplate());
+        ReflectionTestUtils.setField(remoteLockService, "redisConnectionFactory", redis.connectionFactory());
+        lockService = new LocalFirstDistributedLockService();
+        ReflectionTestUtils.setField(lockService, "remoteLockService", remoteLockService);
+        stockService = newNode();
+    }
+
+    @AfterEach
+    void tearDown() {
+        remoteLockService.destroy();
+    }
+
+    @Test
+    void deductionWalksToNeighbourBucketsWhenHomeBucketIsEmpty() {
+        loadStock(stockService, BUCKETS, BUCKETS);
+
+        // 用户0、4、8、12的所属分桶都是0号分桶，只有第一个能在本分桶买到
+        for (long userId = 0; userId < 16; userId += BUCKETS) {
+            assertEquals(DeductStatus.SUCCESS, stockService.deductStock(PRODUCT_ID, userId, 1, 1).getStatus());
+        }
+        assertEquals(0, stockService.getStock(PRODUCT_ID));
+        assertEquals(DeductStatus.SOLD_OUT, stockService.deductStock(PRODUCT_ID, 16L, 1, 1).getStatus());
+        verify(soldOutCacheService).markSoldOut(PRODUCT_ID);
+    }
+
+    @Test
+    void quantityLargerThanEveryBucketIsInsufficientNotSoldOut() {
+        loadStock(stockService, BUCKETS, BUCKETS);
+
+        assertEquals(DeductStatus.INSUFFICIENT, stockService.deductStock(PRODUCT_ID, 1L, 2, 0).getStatus());
+        assertEquals(BUCKETS, stockService.getStock(PRODUCT_ID));
+        verify(soldOutCacheService, never()).markSoldOut(PRODUCT_ID);
+    }
+
+    @Test
+    void limitIsEnforcedAndQuotaReleasedWhenDeductionFails() {
+        loadStock(stockService, 1, BUCKETS);
+
+        assertEquals(DeductStatus.SUCCESS, stockService.deductStock(PRODUCT_ID, 1L, 1, 1).getStatus());
+        assertEquals(DeductStatus.LIMIT_EXCEEDED, stockService.deductStock(PRODUCT_ID, 1L, 1, 1).getStatus());
+
+        // 售罄时占用的额度要释放，补货后用户仍可购买
+        assertEquals(DeductStatus.SOLD_OUT, stockService.deductStock(PRODUCT_ID, 2L, 1, 1).getStatus());
+        stockService.replenishStock(PRODUCT_ID, 1);
+        assertEquals(DeductStatus.SUCCESS, stockService.deductStock(PRODUCT_ID, 2L, 1, 1).getStatus());
+    }
+
+    @Test
+    void rollbackReturnsStockAndQuota() {
+        loadStock(stockService, 8, BUCKETS);
+
+        DeductResult result = stockService.deductStock(PRODUCT_ID, 1L, 2, 2);
+        assertTrue(result.isSuccess());
+        assertEquals(6, stockService.getStock(PRODUCT_ID));
+
+        stockService.rollbackStock(PRODUCT_ID, 1L, 2);
+        assertEquals(8, stockService.getStock(PRODUCT_ID));
+        assertEquals(DeductStatus.SUCCESS, stockService.deductStock(PRODUCT_ID, 1L, 2, 2).getStatus());
+    }
+
+    @Test
+    void replenishedStockIsSpreadAcrossBuckets() {
+        loadStock(stockService, 0, BUCKETS);
+
+        stockService.replenishStock(PRODUCT_ID, 10);
+
+        int total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            int bucketStock = Integer.parseInt(String.valueOf(
+                    redis.redisTemplate().opsForValue().get("seckill:stock:bucket:" + PRODUCT_ID + ":" + i)));
+            assertTrue(bucketStock == 2 || bucketStock == 3, "分桶" + i + "库存: " + bucketStock);
+            total += bucketStock;
+        }
+        assertEquals(10, total);
+    }
+
+    @Test
+    void nodeWithStaleBucketCountSwitchesToBuckets() {
+        SeckillStockServiceImpl otherNode = newNode();
+        loadStock(stockService, 8, 1);
+        assertEquals(8, otherNode.getStock(PRODUCT_ID));
+
+        // 重新预热为分桶模式后，另一节点缓存的分桶数已过期
+        stockService.invalidateStock(PRODUCT_ID);
+        loadStock(stockService, 8, BUCKETS);
+
+        assertEquals(DeductStatus.SUCCESS, otherNode.deductStock(PRODUCT_ID, 1L, 1, 0).getStatus());
+        assertEquals(7, stockService.getStock(PRODUCT_ID));
+        assertNull(redis.redisTemplate().opsForValue().get("seckill:stock:" + PRODUCT_ID));
+    }
+
+    @Test
+    void concurrentDeductionsNeverOversell() throws Exception {
+        int stock = 100;
+        int threads = 8;
+        int usersPerThread = 40;
+        loadStock(stockService, stock, BUCKETS);
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                long firstUser = (long) t * usersPerThread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int sold = 0;
+                    for (long userId = firstUser; userId < firstUser + usersPerThread; userId++) {
+                        if (stockService.deductStock(PRODUCT_ID, userId, 1, 1).isSuccess()) {
+                            sold++;
+                        }
+                    }
+                    return sold;
+                }));
+            }
+            start.countDown();
+            int sold = 0;
+            for (Future<Integer> future : futures) {
+                sold += future.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(stock, sold);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, stockService.getStock(PRODUCT_ID));
+    }
+
+    @Test
+    void coldStartLoadsStockFromDatabaseOnce() throws Exception {
+        FlashSaleProduct product = new FlashSaleProduct();
+        product.setId(PRODUCT_ID);
+        product.setFlashSaleStock(100);
+        when(productMapper.findById(PRODUCT_ID)).thenAnswer(invocation -> {
+            // 放大并发请求同时发现未预热的窗口
+            Thread.sleep(50);
+            return product;
+        });
+        int threads = 8;
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<DeductResult>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                long userId = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return stockService.deductStock(PRODUCT_ID, userId, 1, 1);
+                }));
+            }
+            start.countDown();
+            for (Future<DeductResult> future : futures) {
+                assertEquals(DeductStatus.SUCCESS, future.get(30, TimeUnit.SECONDS).getStatus());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(productMapper, times(1)).findById(PRODUCT_ID);
+        assertEquals(100 - threads, stockService.getStock(PRODUCT_ID));
+    }
+
+    private SeckillStockServiceImpl newNode() {
+        SeckillStockServiceImpl service = new SeckillStockServiceImpl();
+        ReflectionTestUtils.setField(service, "redisTemplate", redis.redisTemplate());
+        ReflectionTestUtils.setField(service, "productMapper", productMapper);
+        ReflectionTestUtils.setField(service, "activityMapper", mock(FlashSaleActivityMapper.class));
+        ReflectionTestUtils.setField(service, "soldOutCacheService", soldOutCacheService);
+        ReflectionTestUtils.setField(service, "lockService", lockService);
+        return service;
+    }
+
+    private static void loadStock(SeckillStockServiceImpl service, int stock, int buckets) {
+        FlashSaleProduct product = new FlashSaleProduct();
+        product.setId(PRODUCT_ID);
+        product.setFlashSaleStock(stock);
+        service.loadStock(product, buckets);
+    }
+}
@@ -0,0 +1,123 @@
+package com.flashsale.seckill.service.impl;
+
+import com.flashsale.common.redis.RedisStandIn;
+import com.flashsale.seckill.config.SeckillRedisConfig;
+import com.flashsale.seckill.service.ActivityCatalogService;
+import com.flashsale.seckill.service.ProductDetailCacheService;
+import com.flashsale.seckill.service.QueueAdmissionService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 本地售罄标记测试：有效期、本地清除、跨节点广播清除
+ * @author 21311
+ */
+class SoldOutCacheServiceImplTest {
+
+    private static final Long PRODUCT_ID = 3L;
+
+    private static RedisStandIn redis;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = RedisStandIn.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.close();
+    }
+
+    @Test
+    void markedProductStaysSoldOutUntilCleared() {
+        SoldOutCacheServiceImpl service = newNode(redis.redisTemplate());
+
+        assertFalse(service.isSoldOut(PRODUCT_ID));
+        service.markSoldOut(PRODUCT_ID);
+        assertTrue(service.isSoldOut(PRODUCT_ID));
+        assertFalse(service.isSoldOut(PRODUCT_ID + 1));
+        assertFalse(service.isSoldOut(null));
+
+        service.clearSoldOut(PRODUCT_ID);
+        assertFalse(service.isSoldOut(PRODUCT_ID));
+    }
+
+    @Test
+    void markExpiresAfterTtl() {
+        SoldOutCacheServiceImpl service = newNode(redis.redisTemplate());
+        service.markSoldOut(PRODUCT_ID);
+
+        // 把标记时间拨回有效期之前
+        markedAt(service).put(PRODUCT_ID, System.nanoTime() - TimeUnit.SECONDS.toNanos(6));
+        assertFalse(service.isSoldOut(PRODUCT_ID));
+        assertFalse(markedAt(service).containsKey(PRODUCT_ID), "过期标记应被移除");
+
+        service.markSoldOut(PRODUCT_ID);
+        assertTrue(service.isSoldOut(PRODUCT_ID));
+    }
+
+    @Test
+    void clearIsBroadcastToOtherNodes() throws Exception {
+        SoldOutCacheServiceImpl nodeA = newNode(redis.redisTemplate());
+        SoldOutCacheServiceImpl nodeB = newNode(redis.redisTemplate());
+        RedisMessageListenerContainer container = new SeckillRedisConfig().seckillRedisMessageListenerContainer(
+                redis.connectionFactory(), redis.redisTemplate(), nodeB, mock(ProductDetailCacheService.class),
+                mock(QueueAdmissionService.class), mock(ActivityCatalogService.class));
+        container.afterPropertiesSet();
+        container.start();
+        try {
+            nodeA.markSoldOut(PRODUCT_ID);
+            nodeB.markSoldOut(PRODUCT_ID);
+
+            nodeA.clearSoldOut(PRODUCT_ID);
+
+            // 远小于标记有效期，确认是广播而不是过期清除了标记
+            long deadline = System.currentTimeMillis() + 2000;
+            while (nodeB.isSoldOut(PRODUCT_ID) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertFalse(nodeA.isSoldOut(PRODUCT_ID));
+            assertFalse(nodeB.isSoldOut(PRODUCT_ID), "其他节点的标记应由广播清除");
+        } finally {
+            container.stop();
+            container.destroy();
+        }
+    }
+
+    @Test
+    void localMarkIsClearedEvenIfBroadcastFails() {
+        @SuppressWarnings("unchecked")
+        RedisTemplate<String, Object> failing = mock(RedisTemplate.class);
+        doThrow(new IllegalStateException("redis down")).when(failing).convertAndSend(anyString(), any());
+        SoldOutCacheServiceImpl service = newNode(failing);
+
+        service.markSoldOut(PRODUCT_ID);
+        service.clearSoldOut(PRODUCT_ID);
+        assertFalse(service.isSoldOut(PRODUCT_ID));
+    }
+
+    private static SoldOutCacheServiceImpl newNode(RedisTemplate<String, Object> redisTemplate) {
+        SoldOutCacheServiceImpl service = new SoldOutCacheServiceImpl();
+        ReflectionTestUtils.setField(service, "redisTemplate", redisTemplate);
+        return service;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Long> markedAt(SoldOutCacheServiceImpl service) {
+        return (Map<Long, Long>) ReflectionTestUtils.getField(service, "soldOutProducts");
+    }
+}